@@ -0,0 +1,86 @@
+package org.cis120.othello;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for encoding and decoding a full game with the binary
+ * formats of GameCodec.java and MoveIndexCodec.java.
+ *
+ * Run with: mvn -P jmh compile exec:exec -Djmh.args=CodecBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    // a full game of random moves
+    private Othello game;
+
+    // game decoded into
+    private Othello target;
+
+    private ByteBuffer buffer;
+    private byte[] gameRecord;
+    private byte[] indexRecord;
+
+    @Setup
+    public void setUp() {
+        game = new Othello();
+        Random rnd = new Random(17);
+        while (!game.getGameOver()) {
+            long moves = game.getLegalMoves(game.getCurrentPlayer() ? 1 : 2);
+            for (int k = rnd.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            int sq = Long.numberOfTrailingZeros(moves);
+            game.playTurn(sq >>> 3, sq & 7);
+        }
+        target = new Othello();
+        buffer = ByteBuffer.allocate(GameCodec.MAX_SIZE);
+        gameRecord = GameCodec.encode(game);
+        indexRecord = MoveIndexCodec.encode(game);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeGameCodec() {
+        buffer.clear();
+        GameCodec.encode(game, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeMoveIndex() {
+        buffer.clear();
+        MoveIndexCodec.encode(game, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Othello decodeGameCodec() {
+        GameCodec.decode(gameRecord, target);
+        return target;
+    }
+
+    @Benchmark
+    public Othello decodeMoveIndex() {
+        MoveIndexCodec.decode(indexRecord, target);
+        return target;
+    }
+
+}
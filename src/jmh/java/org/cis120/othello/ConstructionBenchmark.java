@@ -0,0 +1,54 @@
+package org.cis120.othello;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for making and resetting Othello games: in memory, and
+ * through the constructor and reset that clear a save file.
+ *
+ * Run with: mvn -P jmh compile exec:exec -Djmh.args=ConstructionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+
+    // game reset by the reset benchmarks
+    private final Othello game = new Othello();
+
+    @Benchmark
+    public Othello newInMemory() {
+        return new Othello();
+    }
+
+    @Benchmark
+    public Othello newWithSaveFile() {
+        return new Othello("files/saveFile.txt");
+    }
+
+    @Benchmark
+    public Othello resetInMemory() {
+        game.reset();
+        return game;
+    }
+
+    @Benchmark
+    public Othello resetWithSaveFile() {
+        game.reset("files/saveFile.txt");
+        return game;
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.cis120.othello;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for the Othello move path: perft from the starting
+ * position (see Perft.java), and the single calls that playTurn is built
+ * from, measured on a midgame position.
+ *
+ * Run with: mvn -P jmh compile exec:exec
+ * (arguments for JMH go in -Djmh.args="...", e.g. -Djmh.args="perft -f 2")
+ *
+ * playTurnUndo should allocate nothing but the Position snapshot that
+ * playTurn and undo each publish (40 bytes), the same bound as
+ * GameTest.playTurnAndUndoDoNotAllocate: check that gc.alloc.rate.norm is
+ * about 80 B/op with -Djmh.args="playTurnUndo -prof gc".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    // moves leading to the midgame position (row, column pairs)
+    private static final int[][] OPENING = {
+        { 2, 3 }, { 2, 2 }, { 3, 2 }, { 4, 2 }, { 5, 3 }, { 2, 4 },
+        { 1, 3 }, { 5, 2 }, { 4, 5 }, { 5, 4 }
+    };
+
+    @Param({ "6" })
+    private int depth;
+
+    // game at the starting position
+    private Othello start;
+
+    // game at the midgame position
+    private Othello game;
+
+    // a legal move in the midgame position
+    private int moveRow;
+    private int moveColumn;
+
+    @Setup
+    public void setUp() {
+        start = new Othello();
+        game = new Othello();
+        for (int[] m : OPENING) {
+            game.playTurn(m[0], m[1]);
+        }
+        int color = game.getCurrentPlayer() ? 1 : 2;
+        int sq = Long.numberOfTrailingZeros(game.getLegalMoves(color));
+        moveRow = sq >>> 3;
+        moveColumn = sq & 7;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long perftBitboards() {
+        return Perft.perft(Bitboards.START_BLACK, Bitboards.START_WHITE, depth);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long perftPlayTurnUndo() {
+        return Perft.perft(start, depth);
+    }
+
+    @Benchmark
+    public Object canOvertake() {
+        int color = game.getCurrentPlayer() ? 1 : 2;
+        return game.canOvertake(moveRow, moveColumn, color);
+    }
+
+    @Benchmark
+    public void checkForMoves(Blackhole bh) {
+        // play and take back a move so that the cached moves are recomputed
+        game.playTurn(moveRow, moveColumn);
+        game.undo();
+        bh.consume(game.checkForMoves(1));
+        bh.consume(game.checkForMoves(2));
+    }
+
+    @Benchmark
+    public int checkWinner() {
+        return game.checkWinner();
+    }
+
+    @Benchmark
+    public void playTurnUndo(Blackhole bh) {
+        bh.consume(game.playTurn(moveRow, moveColumn));
+        game.undo();
+    }
+
+}
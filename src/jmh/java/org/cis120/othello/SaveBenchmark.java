@@ -0,0 +1,63 @@
+package org.cis120.othello;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the text save file: saving and resuming a game 40
+ * moves in.
+ *
+ * Run with: mvn -P jmh compile exec:exec -Djmh.args="SaveBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveBenchmark {
+
+    private File file;
+    private Othello game;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("othello", ".txt");
+        game = new Othello(file.getPath());
+        for (int i = 0; i < 40 && !game.getGameOver(); i++) {
+            long moves = game.getLegalMoves(game.getCurrentPlayer() ? 1 : 2);
+            int sq = Long.numberOfTrailingZeros(moves);
+            game.playTurn(sq >>> 3, sq & 7);
+        }
+        game.save(file.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void save() {
+        game.save(file.getPath());
+    }
+
+    @Benchmark
+    public void resume() {
+        game.resume(file.getPath());
+    }
+
+}
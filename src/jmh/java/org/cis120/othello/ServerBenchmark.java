@@ -0,0 +1,238 @@
+package org.cis120.othello;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a load test comparing the ways of hosting many sessions:
+ * GameServer.java (nio) and the modes of BlockingGameServer.java (virtual,
+ * thread, and pool:N for a pool of N platform threads). For each server it
+ * opens the given number of connections from this JVM, then:
+ * - measures how much memory the open sessions take (the resident size of
+ *   the process on Linux, which includes thread stacks, and the heap)
+ * - counts the sessions that reply to a first command within a second
+ * - sends a play or undo command to every answering session in turn and
+ *   times the round trip
+ * - sends a command to every answering session before reading the
+ *   replies, and reports the commands answered per second
+ *
+ * Both ends of every connection are in this JVM, so it needs two file
+ * descriptors per session.
+ *
+ * It is not a JMH benchmark, but lives with them so it is only built
+ * by the jmh profile. Build with: mvn -P jmh compile
+ *
+ * Usage: java -cp target/classes org.cis120.othello.ServerBenchmark
+ * sessions [server...]
+ */
+public class ServerBenchmark {
+
+    // time to wait for a reply before a session counts as not answering
+    private static final int TIMEOUT_MILLIS = 1000;
+
+    // number of play/undo rounds timed one session at a time
+    private static final int ROUNDS = 4;
+
+    // number of rounds sent to every session before reading the replies
+    private static final int PIPELINED_ROUNDS = 10;
+
+    private static final byte[] PLAY = "play f5\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UNDO = "undo\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: ServerBenchmark sessions [nio|virtual|thread|pool:N...]");
+            return;
+        }
+        int sessions = Integer.parseInt(args[0]);
+        List<String> servers = Arrays.asList("nio", "thread", "pool:200");
+        if (args.length > 1) {
+            servers = Arrays.asList(args).subList(1, args.length);
+        } else if (BlockingGameServer.hasVirtualThreads()) {
+            servers = Arrays.asList("nio", "virtual", "thread", "pool:200");
+        }
+
+        // the games print why they reject a move, which would only slow
+        // the servers down
+        PrintStream console = System.out;
+        System.setOut(System.err);
+        console.println(sessions + " sessions, " + Runtime.getRuntime().availableProcessors()
+                + " processors, virtual threads "
+                + (BlockingGameServer.hasVirtualThreads() ? "available" : "not available"));
+        console.println("server      connect ms  RSS MB  heap MB  answering  p50 us"
+                + "  p99 us  commands/sec");
+        for (String name : servers) {
+            console.println(run(name, sessions));
+        }
+    }
+
+    /**
+     * run starts a server, loads it with sessions and closes it.
+     *
+     * @param name     nio, virtual, thread or pool:N
+     * @param sessions number of connections
+     * @return line of results
+     */
+    static String run(String name, int sessions) throws Exception {
+        Closeable server;
+        int port;
+        if (name.equals("nio")) {
+            GameServer s = new GameServer(0, null, null, 1);
+            port = s.getPort();
+            server = s;
+            start(s);
+        } else {
+            BlockingGameServer.Mode mode;
+            int threads = 1;
+            if (name.startsWith("pool:")) {
+                mode = BlockingGameServer.Mode.POOL;
+                threads = Integer.parseInt(name.substring(5));
+            } else {
+                mode = BlockingGameServer.Mode.valueOf(name.toUpperCase());
+            }
+            BlockingGameServer s = new BlockingGameServer(0, mode, threads, null, null);
+            port = s.getPort();
+            server = s;
+            start(s);
+        }
+
+        long rssBefore = residentBytes();
+        long heapBefore = heapBytes();
+        long start = System.nanoTime();
+        Socket[] sockets = new Socket[sessions];
+        InputStream[] in = new InputStream[sessions];
+        OutputStream[] out = new OutputStream[sessions];
+        try {
+            for (int i = 0; i < sessions; i++) {
+                sockets[i] = new Socket("localhost", port);
+                sockets[i].setTcpNoDelay(true);
+                sockets[i].setSoTimeout(TIMEOUT_MILLIS);
+                in[i] = new BufferedInputStream(sockets[i].getInputStream(), 64);
+                out[i] = sockets[i].getOutputStream();
+            }
+            long connectMillis = (System.nanoTime() - start) / 1000000;
+
+            // a command to every session makes the servers set them up; a
+            // session that has not replied in time gets no more commands
+            for (int i = 0; i < sessions; i++) {
+                out[i].write(UNDO);
+            }
+            boolean[] answering = new boolean[sessions];
+            int answered = 0;
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while ((answered < sessions) && (System.currentTimeMillis() < deadline)) {
+                for (int i = 0; i < sessions; i++) {
+                    if (!answering[i] && (in[i].available() > 0)) {
+                        readLine(in[i]);
+                        answering[i] = true;
+                        answered++;
+                    }
+                }
+            }
+            long rss = residentBytes() - rssBefore;
+            long heap = heapBytes() - heapBefore;
+
+            long[] latencies = new long[ROUNDS * answered];
+            int k = 0;
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int i = 0; i < sessions; i++) {
+                    if (answering[i]) {
+                        long t = System.nanoTime();
+                        out[i].write((r % 2 == 0) ? PLAY : UNDO);
+                        readLine(in[i]);
+                        latencies[k++] = System.nanoTime() - t;
+                    }
+                }
+            }
+            Arrays.sort(latencies);
+
+            long commands = 0;
+            start = System.nanoTime();
+            for (int r = 0; r < PIPELINED_ROUNDS; r++) {
+                for (int i = 0; i < sessions; i++) {
+                    if (answering[i]) {
+                        out[i].write((r % 2 == 0) ? PLAY : UNDO);
+                    }
+                }
+                for (int i = 0; i < sessions; i++) {
+                    if (answering[i] && (readLine(in[i]) != null)) {
+                        commands++;
+                    }
+                }
+            }
+            long nanos = Math.max(1, System.nanoTime() - start);
+
+            return String.format(
+                    "%-10s %11d %7d %8d %10d %7d %7d %13d", name, connectMillis,
+                    rss >> 20, heap >> 20, answered,
+                    (answered == 0) ? 0 : latencies[latencies.length / 2] / 1000,
+                    (answered == 0) ? 0 : latencies[latencies.length * 99 / 100] / 1000,
+                    commands * 1000000000L / nanos
+            );
+        } finally {
+            for (Socket s : sockets) {
+                if (s != null) {
+                    s.close();
+                }
+            }
+            server.close();
+        }
+    }
+
+    // runs a server on a thread of its own
+    private static void start(Runnable server) {
+        Thread t = new Thread(server, "server");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // reads a reply line, or returns null if none came in time
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        try {
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    return null;
+                }
+                line.append((char) c);
+            }
+        } catch (SocketTimeoutException e) {
+            return null;
+        }
+        return line.toString();
+    }
+
+    // heap in use after a garbage collection
+    private static long heapBytes() {
+        System.gc();
+        Runtime r = Runtime.getRuntime();
+        return r.totalMemory() - r.freeMemory();
+    }
+
+    // resident size of the process, or 0 where it cannot be read
+    private static long residentBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return 1024 * Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.cis120.othello.ai;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for EndgameSolver.java at 20 empties: deciding whether a
+ * position is won (winLossDraw) and finding its exact score (score), each
+ * with an empty transposition table.
+ *
+ * Run with: mvn -P jmh compile exec:exec -Djmh.args="EndgameBenchmark"
+ *
+ * The positions come from games between computer players. winLossDraw
+ * should take well under a second on each of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class EndgameBenchmark {
+
+    // positions with 20 empties, {own, opp} with own to move
+    private static final long[][] POSITIONS = {
+        { 0x3f3b232f30201808L, 0x00041c100f1f2161L },
+        { 0x2000733b00002000L, 0x0e3c8c447efc1c7cL },
+        { 0x062c796076040000L, 0x3090869e89f93910L },
+        { 0x0001eb6562e40000L, 0x1818141a1c1b3d7cL },
+        { 0x0000000028140400L, 0xfe7cfcfcd0e8383eL },
+        { 0x2021c38597d78000L, 0x08183c7a68283c20L }
+    };
+
+    @Param({ "0", "1", "2", "3", "4", "5" })
+    private int position;
+
+    private TranspositionTable table;
+    private EndgameSolver solver;
+
+    @Setup
+    public void setUp() {
+        table = new TranspositionTable(20);
+        solver = new EndgameSolver(table);
+    }
+
+    // each solve starts without the results of the previous one
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @Benchmark
+    public int winLossDraw() {
+        return solver.winLossDraw(POSITIONS[position][0], POSITIONS[position][1]);
+    }
+
+    @Benchmark
+    public int score() {
+        return solver.score(POSITIONS[position][0], POSITIONS[position][1]);
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.cis120.othello.ai;
+
+import java.util.Random;
+
+import org.cis120.othello.Bitboards;
+
+/**
+ * This class measures how ParallelSearch.java scales with the number of
+ * threads. It searches the same set of midgame positions to a fixed depth
+ * with 1, 2, 4, ... threads (up to the number of processors, or the number
+ * given as the first argument) and prints the positions searched per
+ * second and the time taken compared to one thread.
+ *
+ * It is not a JMH benchmark, but lives with them so it is only built
+ * by the jmh profile. Build with: mvn -P jmh compile
+ *
+ * Usage: java -cp target/classes org.cis120.othello.ai.ParallelSearchBenchmark
+ * [maxThreads] [depth] [positions]
+ */
+public class ParallelSearchBenchmark {
+
+    public static void main(String[] args) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int depth = 11;
+        int count = 8;
+        if (args.length > 0) {
+            maxThreads = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            depth = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            count = Integer.parseInt(args[2]);
+        }
+
+        long[][] positions = midgamePositions(count, 20, new Random(120));
+
+        System.out.println("depth " + depth + ", " + count + " positions, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        System.out.println("threads        nodes     ms    nodes/sec  speedup");
+
+        // warm up the JIT so the first row is not penalised
+        run(1, depth, positions);
+
+        long baseMillis = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long[] r = run(threads, depth, positions);
+            long nodes = r[0];
+            long millis = Math.max(1, r[1]);
+            if (threads == 1) {
+                baseMillis = millis;
+            }
+            System.out.println(String.format(
+                    "%7d %12d %6d %12d %8.2f", threads, nodes, millis,
+                    nodes * 1000L / millis, (double) baseMillis / millis
+            ));
+        }
+    }
+
+    /**
+     * run searches every position with a fresh transposition table.
+     *
+     * @param threads   number of threads
+     * @param depth     search depth
+     * @param positions positions to search
+     * @return {nodes searched, milliseconds taken}
+     */
+    private static long[] run(int threads, int depth, long[][] positions) {
+        // one day is as good as no time limit
+        ParallelSearch search = new ParallelSearch(86400000L, depth, threads);
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (long[] p : positions) {
+            search.getTable().clear();
+            nodes += search.search(p[0], p[1], true).getNodes();
+        }
+        long millis = (System.nanoTime() - start) / 1000000L;
+        search.shutdown();
+        return new long[] { nodes, millis };
+    }
+
+    /**
+     * midgamePositions plays random moves from the starting position to
+     * build a set of test positions.
+     *
+     * @param count number of positions
+     * @param plies number of random moves to play for each position
+     * @param rnd   source of randomness
+     * @return array of {own, opp} bitboard pairs with own to move
+     */
+    private static long[][] midgamePositions(int count, int plies, Random rnd) {
+        long[][] positions = new long[count][];
+        for (int i = 0; i < count; i++) {
+            long own = Bitboards.START_BLACK;
+            long opp = Bitboards.START_WHITE;
+            for (int p = 0; p < plies; p++) {
+                long moves = Bitboards.legalMoves(own, opp);
+                if (moves == 0) {
+                    long t = own;
+                    own = opp;
+                    opp = t;
+                    continue;
+                }
+                // pick a random legal move
+                for (int k = rnd.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                int sq = Long.numberOfTrailingZeros(moves);
+                long f = Bitboards.flips(own, opp, sq);
+                long next = opp & ~f;
+                opp = own | f | (1L << sq);
+                own = next;
+            }
+            positions[i] = new long[] { own, opp };
+        }
+        return positions;
+    }
+
+}
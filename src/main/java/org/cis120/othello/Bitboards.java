@@ -0,0 +1,290 @@
+package org.cis120.othello;
+
+/**
+ * This class holds the bitboard move generator used by Othello.java.
+ *
+ * A board is represented by a pair of 64-bit longs, one for each color,
+ * where bit (8 * row + column) is set if that square holds a piece of the
+ * given color. Moves are generated with shift-and-mask operations in all
+ * eight directions at once instead of walking each ray square by square.
+ * The pieces a move overtakes are found from a table of the rays leading
+ * away from each square, where the end of the run of opponent pieces is
+ * the lowest or highest other square on the ray.
+ */
+public final class Bitboards {
+
+    // squares in the leftmost and rightmost columns
+    public static final long COLUMN_0 = 0x0101010101010101L;
+    public static final long COLUMN_7 = 0x8080808080808080L;
+
+    // starting position: (3, 4) and (4, 3) are black, (3, 3) and (4, 4) white
+    public static final long START_BLACK = (1L << 28) | (1L << 35);
+    public static final long START_WHITE = (1L << 27) | (1L << 36);
+
+    // squares away from the leftmost and rightmost columns; a run of
+    // pieces going sideways can only pass through these without wrapping
+    // around to the other side of a row
+    private static final long INNER_COLUMNS = ~(COLUMN_0 | COLUMN_7);
+
+    // squares from each square to the edge of the board in each
+    // direction, RAYS[8 * sq + d]: the first four directions go towards
+    // higher squares (right, down-left, down, down-right) and the last
+    // four towards lower ones
+    private static final long[] RAYS = new long[64 * 8];
+
+    static {
+        int[] dr = { 0, 1, 1, 1, 0, -1, -1, -1 };
+        int[] dc = { 1, -1, 0, 1, -1, 1, 0, -1 };
+        for (int sq = 0; sq < 64; sq++) {
+            for (int d = 0; d < 8; d++) {
+                int r = (sq >>> 3) + dr[d];
+                int c = (sq & 7) + dc[d];
+                while ((r >= 0) && (r < 8) && (c >= 0) && (c < 8)) {
+                    RAYS[(sq << 3) + d] |= 1L << square(r, c);
+                    r += dr[d];
+                    c += dc[d];
+                }
+            }
+        }
+    }
+
+    // no instances
+    private Bitboards() {
+    }
+
+    /**
+     * square converts a row and column into a square index from 0 to 63.
+     *
+     * @param r row of the square
+     * @param c column of the square
+     * @return square index
+     */
+    public static int square(int r, int c) {
+        return (r << 3) | c;
+    }
+
+    /**
+     * legalMoves returns every empty square where the player owning the
+     * pieces in own can play, i.e. where at least one opponent piece would
+     * be overtaken.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return bitboard of legal moves
+     */
+    public static long legalMoves(long own, long opp) {
+        long empty = ~(own | opp);
+        // opponent pieces that a run can pass through without wrapping
+        long inner = opp & INNER_COLUMNS;
+        long moves = movesUp(own, inner, empty, 1)
+                | movesDown(own, inner, empty, 1)
+                | movesUp(own, opp, empty, 8)
+                | movesDown(own, opp, empty, 8)
+                | movesUp(own, inner, empty, 9)
+                | movesDown(own, inner, empty, 9)
+                | movesUp(own, inner, empty, 7)
+                | movesDown(own, inner, empty, 7);
+        return moves;
+    }
+
+    // legal moves in a direction that shifts pieces towards higher squares
+    private static long movesUp(long own, long opp, long empty, int s) {
+        // opponent pieces directly next to one of our pieces
+        long t = (own << s) & opp;
+        // extend the run of opponent pieces (at most 6 long)
+        t |= (t << s) & opp;
+        t |= (t << s) & opp;
+        t |= (t << s) & opp;
+        t |= (t << s) & opp;
+        t |= (t << s) & opp;
+        // an empty square just past the run is a legal move
+        return (t << s) & empty;
+    }
+
+    // legal moves in a direction that shifts pieces towards lower squares
+    private static long movesDown(long own, long opp, long empty, int s) {
+        long t = (own >>> s) & opp;
+        t |= (t >>> s) & opp;
+        t |= (t >>> s) & opp;
+        t |= (t >>> s) & opp;
+        t |= (t >>> s) & opp;
+        t |= (t >>> s) & opp;
+        return (t >>> s) & empty;
+    }
+
+    /**
+     * flips returns the opponent pieces that would be overtaken if the
+     * player owning own played on the given square. Returns 0 if the move
+     * does not overtake anything.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @param sq  square index of the new piece
+     * @return bitboard of pieces that would be overtaken
+     */
+    public static long flips(long own, long opp, int sq) {
+        int r = sq << 3;
+        return flipsUp(own, opp, RAYS[r])
+                | flipsUp(own, opp, RAYS[r + 1])
+                | flipsUp(own, opp, RAYS[r + 2])
+                | flipsUp(own, opp, RAYS[r + 3])
+                | flipsDown(own, opp, RAYS[r + 4])
+                | flipsDown(own, opp, RAYS[r + 5])
+                | flipsDown(own, opp, RAYS[r + 6])
+                | flipsDown(own, opp, RAYS[r + 7]);
+    }
+
+    // flips along a ray going towards higher squares
+    private static long flipsUp(long own, long opp, long ray) {
+        // the first square on the ray that is not an opponent piece ends
+        // the run, which only counts if that square is one of our pieces
+        long end = ray & ~opp;
+        end &= -end;
+        if ((end & own) != 0) {
+            return ray & (end - 1);
+        }
+        return 0L;
+    }
+
+    // flips along a ray going towards lower squares
+    private static long flipsDown(long own, long opp, long ray) {
+        long end = Long.highestOneBit(ray & ~opp);
+        if ((end & own) != 0) {
+            return ray & -(end << 1);
+        }
+        return 0L;
+    }
+
+    /**
+     * play puts a piece on a board held as {black, white} and overtakes the
+     * given pieces, for replaying a move from the history of a game.
+     *
+     * @param board black and white pieces, updated in place
+     * @param color color of the move (1 for black or 2 for white)
+     * @param sq    square index of the new piece
+     * @param flips bitboard of the pieces the move overtakes
+     */
+    public static void play(long[] board, int color, int sq, long flips) {
+        board[color - 1] |= (1L << sq) | flips;
+        board[2 - color] &= ~flips;
+    }
+
+    /**
+     * undo takes back a move played on a board by play.
+     *
+     * @param board black and white pieces, updated in place
+     * @param color color of the move (1 for black or 2 for white)
+     * @param sq    square index of the piece to remove
+     * @param flips bitboard of the pieces the move overtook
+     */
+    public static void undo(long[] board, int color, int sq, long flips) {
+        board[color - 1] &= ~((1L << sq) | flips);
+        board[2 - color] |= flips;
+    }
+
+    /**
+     * count returns the number of pieces on a bitboard.
+     *
+     * @param b bitboard
+     * @return number of set bits
+     */
+    public static int count(long b) {
+        return Long.bitCount(b);
+    }
+
+    // number of symmetries of the board (rotations and reflections)
+    public static final int SYMMETRIES = 8;
+
+    /**
+     * flipVertical reflects a bitboard top to bottom, so row r moves to
+     * row 7 - r.
+     *
+     * @param b bitboard
+     * @return reflected bitboard
+     */
+    public static long flipVertical(long b) {
+        return Long.reverseBytes(b);
+    }
+
+    /**
+     * mirrorHorizontal reflects a bitboard left to right, so column c moves
+     * to column 7 - c.
+     *
+     * @param b bitboard
+     * @return reflected bitboard
+     */
+    public static long mirrorHorizontal(long b) {
+        b = ((b >>> 1) & 0x5555555555555555L) | ((b & 0x5555555555555555L) << 1);
+        b = ((b >>> 2) & 0x3333333333333333L) | ((b & 0x3333333333333333L) << 2);
+        return ((b >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((b & 0x0F0F0F0F0F0F0F0FL) << 4);
+    }
+
+    /**
+     * flipDiagonal reflects a bitboard in its main diagonal, so square
+     * (r, c) moves to (c, r).
+     *
+     * @param b bitboard
+     * @return reflected bitboard
+     */
+    public static long flipDiagonal(long b) {
+        long t = 0x0F0F0F0F00000000L & (b ^ (b << 28));
+        b ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (b ^ (b << 14));
+        b ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (b ^ (b << 7));
+        return b ^ t ^ (t >>> 7);
+    }
+
+    /**
+     * symmetry applies one of the 8 symmetries of the board to a bitboard:
+     * a reflection in the main diagonal if bit 2 of s is set, then a
+     * reflection top to bottom if bit 1 is set, then left to right if bit
+     * 0 is set. Symmetry 0 leaves the bitboard as it is.
+     *
+     * @param b bitboard
+     * @param s symmetry from 0 to 7
+     * @return transformed bitboard
+     */
+    public static long symmetry(long b, int s) {
+        if ((s & 4) != 0) {
+            b = flipDiagonal(b);
+        }
+        if ((s & 2) != 0) {
+            b = flipVertical(b);
+        }
+        if ((s & 1) != 0) {
+            b = mirrorHorizontal(b);
+        }
+        return b;
+    }
+
+    /**
+     * canonicalSymmetry picks the symmetry that gives a position its
+     * canonical form: the one with the smallest black bitboard, and then
+     * the smallest white bitboard. Positions that are symmetries of each
+     * other have the same canonical form.
+     *
+     * @param black bitboard of black pieces
+     * @param white bitboard of white pieces
+     * @return symmetry from 0 to 7, to pass to symmetry
+     */
+    public static int canonicalSymmetry(long black, long white) {
+        int best = 0;
+        long cb = black;
+        long cw = white;
+        for (int s = 1; s < SYMMETRIES; s++) {
+            long b = symmetry(black, s);
+            if (b > cb) {
+                continue;
+            }
+            long w = symmetry(white, s);
+            if ((b < cb) || (w < cw)) {
+                best = s;
+                cb = b;
+                cw = w;
+            }
+        }
+        return best;
+    }
+
+}
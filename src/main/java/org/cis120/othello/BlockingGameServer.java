@@ -0,0 +1,285 @@
+package org.cis120.othello;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.cis120.othello.ai.OpeningBook;
+import org.cis120.othello.ai.TranspositionTable;
+
+/**
+ * This class is a socket server like GameServer.java, hosting one game per
+ * connection with the same line protocol, but each session runs on a
+ * thread of its own with plain blocking reads and writes: it reads a
+ * command, runs it with its Engine.java (searches included) and writes
+ * the reply. A session reads into one small buffer, as in GameServer, so
+ * an idle session holds little besides its game and its thread.
+ *
+ * How sessions get their threads depends on the mode:
+ * - VIRTUAL: a new virtual thread per session, so idle sessions cost
+ *   little more than with GameServer. Virtual threads need Java 21 or
+ *   later; they are found at run time so the code still builds for
+ *   Java 8, and asking for them on an older JVM fails.
+ * - THREAD: a new platform thread per session.
+ * - POOL: a fixed pool of platform threads, so sessions past the size of
+ *   the pool wait until an earlier one ends.
+ *
+ * Usage: java org.cis120.othello.BlockingGameServer port virtual|thread|
+ * pool [-threads n] [-book file] [-saves dir]
+ */
+public final class BlockingGameServer implements Runnable, Closeable {
+
+    /**
+     * How sessions are given threads.
+     */
+    public enum Mode {
+        VIRTUAL, THREAD, POOL
+    }
+
+    // log base 2 of the entries of the shared transposition table (64MB)
+    private static final int TABLE_BITS = 22;
+
+    private final ServerSocket server;
+
+    // makes a thread for each session, or null in POOL mode
+    private final ThreadFactory factory;
+
+    // runs the sessions in POOL mode, or null
+    private final ExecutorService pool;
+
+    private final TranspositionTable table;
+    private final OpeningBook book;
+    private final String saveDirectory;
+
+    // sockets of the open sessions
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor opens the server socket. The server accepts connections
+     * once run is called.
+     *
+     * @param port          port to listen on, or 0 for any free port
+     * @param mode          how sessions are given threads
+     * @param threads       size of the pool in POOL mode
+     * @param book          opening book for go, or null for none
+     * @param saveDirectory directory games are saved in, or null for none
+     * @throws IllegalStateException if virtual threads are asked for but
+     *                               the JVM does not have them
+     */
+    public BlockingGameServer(
+            int port, Mode mode, int threads, OpeningBook book, String saveDirectory
+    ) {
+        if ((mode == null) || ((mode == Mode.POOL) && (threads <= 0))) {
+            throw new IllegalArgumentException();
+        }
+        this.book = book;
+        this.saveDirectory = saveDirectory;
+        this.table = new TranspositionTable(TABLE_BITS);
+        if (mode == Mode.VIRTUAL) {
+            this.factory = virtualThreadFactory();
+            this.pool = null;
+        } else if (mode == Mode.THREAD) {
+            this.factory = daemonThreadFactory();
+            this.pool = null;
+        } else {
+            this.factory = null;
+            this.pool = Executors.newFixedThreadPool(threads, daemonThreadFactory());
+        }
+        try {
+            this.server = new ServerSocket();
+            server.bind(new InetSocketAddress(port), 1024);
+        } catch (IOException e) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * hasVirtualThreads returns whether the JVM has virtual threads.
+     *
+     * @return true on Java 21 or later
+     */
+    public static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // makes a new virtual thread for every task, through reflection
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("virtual threads need Java 21 or later");
+            throw new IllegalStateException();
+        }
+    }
+
+    // makes platform threads that do not keep the JVM running
+    private static ThreadFactory daemonThreadFactory() {
+        return r -> {
+            Thread t = new Thread(r, "othello-session");
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // getter method for the port the server listens on
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    // getter method for the number of open sessions
+    public int getSessions() {
+        return sockets.size();
+    }
+
+    /**
+     * run accepts connections until the server is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                final Socket socket = server.accept();
+                sockets.add(socket);
+                Runnable session = () -> serve(socket);
+                if (pool != null) {
+                    pool.execute(session);
+                } else {
+                    factory.newThread(session).start();
+                }
+            }
+        } catch (SocketException e) {
+            // the server was closed
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } finally {
+            close();
+        }
+    }
+
+    // answers the commands of a session until it ends
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            Engine engine = new Engine(book, saveDirectory, table);
+
+            // bytes read so far, with the unread commands in [start, end)
+            byte[] buf = new byte[GameServer.LINE_SIZE];
+            int start = 0;
+            int end = 0;
+            while (true) {
+                int newline = start;
+                while ((newline < end) && (buf[newline] != '\n')) {
+                    newline++;
+                }
+                if (newline == end) {
+                    // no whole command yet: make room and wait for more
+                    System.arraycopy(buf, start, buf, 0, end - start);
+                    end -= start;
+                    start = 0;
+                    if (end == buf.length) {
+                        out.write("error command too long\n".getBytes(StandardCharsets.US_ASCII));
+                        break;
+                    }
+                    int n = in.read(buf, end, buf.length - end);
+                    if (n < 0) {
+                        break;
+                    }
+                    end += n;
+                    continue;
+                }
+                String line = new String(buf, start, newline - start, StandardCharsets.US_ASCII);
+                start = newline + 1;
+                String reply = engine.execute(line);
+                if (reply == null) {
+                    break;
+                }
+                out.write((reply + "\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the connection was lost
+        } finally {
+            sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.out.println("I/O exception occured");
+            }
+        }
+    }
+
+    /**
+     * close stops accepting connections and ends every session.
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+            // a thread blocked reading its socket wakes up when it closes
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("usage: BlockingGameServer port virtual|thread|pool "
+                    + "[-threads n] [-book file] [-saves dir]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        Mode mode = Mode.valueOf(args[1].toUpperCase());
+        int threads = 200;
+        OpeningBook book = null;
+        String saves = null;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-book")) {
+                book = new OpeningBook(args[i + 1]);
+            } else if (args[i].equals("-saves")) {
+                saves = args[i + 1];
+            }
+        }
+        // the games print why they reject a move, which would only slow
+        // the server down
+        System.setOut(System.err);
+        BlockingGameServer s = new BlockingGameServer(port, mode, threads, book, saves);
+        System.err.println("listening on port " + s.getPort() + " (" + args[1] + ")");
+        s.run();
+    }
+
+}
@@ -0,0 +1,147 @@
+package org.cis120.othello;
+
+import java.util.Arrays;
+
+/**
+ * This class turns the changes to an Othello game into short text lines
+ * for spectators, so a watched game is streamed as the moves made rather
+ * than as whole boards. Each call to poll sums up everything that changed
+ * since the last call in one line, which can then be sent unchanged to
+ * every spectator:
+ * - update T1 T2 ... S: the moves and undos since the last line, in order,
+ *   followed by black, white or over for the player to move. A move is
+ *   written as x or o for the color, the square (as in Engine.java), a
+ *   colon and the pieces it overtook as a bitboard in hexadecimal, so a
+ *   spectator can apply it without knowing the rules; an undo is u
+ *   followed by the move it takes back, so a spectator that started
+ *   watching after the move can still undo it.
+ * - position B W S N: the bitboards of black and white in hexadecimal, the
+ *   player to move as above and the number of moves played. It is sent
+ *   instead of an update when the game was replaced rather than played
+ *   (by new, position or resume), or when it would be shorter.
+ *
+ * The moves are read from the history of the game, which only the thread
+ * playing the game may change; poll has to be called by that thread too.
+ */
+public final class Broadcast {
+
+    // game being watched
+    private final Othello game;
+
+    // position the spectators have, as of the last line
+    private Position position;
+
+    // moves the spectators have applied, and how many there are
+    private int[] squares;
+    private int[] colors;
+    private long[] flips;
+    private int sent;
+
+    /**
+     * Constructor starts watching a game at its current position.
+     *
+     * @param game game to watch
+     */
+    public Broadcast(Othello game) {
+        if (game == null) {
+            System.out.println("Null input");
+            throw new IllegalArgumentException();
+        }
+        this.game = game;
+        this.squares = new int[64];
+        this.colors = new int[64];
+        this.flips = new long[64];
+        this.position = game.getPosition();
+        record(0);
+    }
+
+    /**
+     * keyframe returns a position line for the position the spectators
+     * have, for a spectator that starts watching or has fallen behind.
+     *
+     * @return position line
+     */
+    public String keyframe() {
+        return "position " + Long.toHexString(position.getBlackBoard()) + " "
+                + Long.toHexString(position.getWhiteBoard()) + " " + state(position)
+                + " " + position.getPly();
+    }
+
+    /**
+     * poll returns a line with the changes to the game since the last call,
+     * and brings the position the spectators have up to date.
+     *
+     * @return update or position line, or null if nothing changed
+     */
+    public String poll() {
+        Position p = game.getPosition();
+        if (p == position) {
+            return null;
+        }
+        int n = game.getNumTurns();
+
+        // moves already sent that are still part of the game
+        int common = 0;
+        while ((common < sent) && (common < n) && (squares[common] == game.getMoveSquare(common))
+                && (colors[common] == game.getMoveColor(common))
+                && (flips[common] == game.getMoveFlips(common))) {
+            common++;
+        }
+
+        // take back the other moves sent, then play the new ones, checking
+        // that they lead to the game's position
+        StringBuilder line = new StringBuilder("update");
+        long[] board = { position.getBlackBoard(), position.getWhiteBoard() };
+        for (int i = sent - 1; i >= common; i--) {
+            Bitboards.undo(board, colors[i], squares[i], flips[i]);
+            line.append(" u");
+            move(line, colors[i], squares[i], flips[i]);
+        }
+        for (int i = common; i < n; i++) {
+            game.replayMove(i, board);
+            line.append(' ');
+            move(line, game.getMoveColor(i), game.getMoveSquare(i), game.getMoveFlips(i));
+        }
+        line.append(' ').append(state(p));
+        record(common);
+        this.position = p;
+
+        String keyframe = keyframe();
+        if ((board[0] != p.getBlackBoard()) || (board[1] != p.getWhiteBoard())
+                || (line.length() >= keyframe.length())) {
+            return keyframe;
+        }
+        return line.toString();
+    }
+
+    // copies the moves of the game from the given turn on as the moves sent
+    private void record(int from) {
+        int n = game.getNumTurns();
+        if (n > squares.length) {
+            squares = Arrays.copyOf(squares, 2 * n);
+            colors = Arrays.copyOf(colors, 2 * n);
+            flips = Arrays.copyOf(flips, 2 * n);
+        }
+        for (int i = from; i < n; i++) {
+            squares[i] = game.getMoveSquare(i);
+            colors[i] = game.getMoveColor(i);
+            flips[i] = game.getMoveFlips(i);
+        }
+        this.sent = n;
+    }
+
+    // writes out a move as its color, square and overtaken pieces
+    private static void move(StringBuilder line, int color, int sq, long f) {
+        line.append((color == 1) ? 'x' : 'o').append(Engine.name(sq)).append(':')
+                .append(Long.toHexString(f));
+    }
+
+    // the player to move in a position, or over
+    private static String state(Position p) {
+        if (p.isGameOver()) {
+            return "over";
+        }
+        return p.getCurrentPlayer() ? "black" : "white";
+    }
+
+}
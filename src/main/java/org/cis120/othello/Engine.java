@@ -0,0 +1,418 @@
+package org.cis120.othello;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.cis120.othello.ai.AlphaBetaSearch;
+import org.cis120.othello.ai.ComputerPlayer;
+import org.cis120.othello.ai.OpeningBook;
+import org.cis120.othello.ai.SearchResult;
+import org.cis120.othello.ai.TranspositionTable;
+
+/**
+ * This class runs the Othello engine without a display, driven by text
+ * commands on standard input, one per line, with one line of reply on
+ * standard output for each. Unlike org.cis120.Game it loads no AWT or
+ * Swing classes, so it is ready as soon as the JVM is.
+ *
+ * Moves are written as a column letter and a row digit (a1 is row 0,
+ * column 0), and a board as 64 characters in row order: x for black, o
+ * for white and - for empty. Passes are made by the game itself, as in
+ * Othello.playTurn. The commands are:
+ * - isready: replies readyok
+ * - new: starts a new game
+ * - position startpos [moves m1 m2 ...]: the starting position, after
+ *   the given moves
+ * - position board B black|white: board B with the given player to move
+ * - play m: plays a move
+ * - undo: takes back the last move
+ * - moves: replies moves followed by the legal moves of the player to move
+ * - board: replies board B followed by black, white or over
+ * - score: replies score followed by the number of black and white pieces
+ * - go [movetime ms] [depth d]: searches the position (or looks it up in
+ *   the opening book) and replies bestmove m score s depth d nodes n time
+ *   t, or bestmove none if the game is over; the move is not played. A
+ *   searched score is in the units of Evaluator.java, while a book move
+ *   has depth 0 and the average final disc differential of its games as
+ *   the score
+ * - save name: saves the game as name.game in the save directory, in the
+ *   binary format of GameCodec.java
+ * - resume name: resumes the game saved as name
+ * - quit: exits
+ * Any other reply is ok, or error followed by a message. Save names are
+ * letters, digits, - and _, so a game can only be saved in the save
+ * directory, and saving is turned off when there is none.
+ *
+ * Usage: java org.cis120.othello.Engine [-book file] [-saves dir]
+ */
+public final class Engine {
+
+    // game being played
+    private final Othello game;
+
+    // opening book used by go, or null
+    private final OpeningBook book;
+
+    // directory games are saved in, or null
+    private final Path saveDirectory;
+
+    // table used by every search, made on the first go unless given
+    private TranspositionTable table;
+
+    // longest save name
+    private static final int MAX_NAME = 64;
+
+    /**
+     * Constructor sets up an engine at the starting position.
+     *
+     * @param book          opening book to use, or null for none
+     * @param saveDirectory directory to save games in, or null for none
+     */
+    public Engine(OpeningBook book, String saveDirectory) {
+        this(book, saveDirectory, null);
+    }
+
+    // constructor with a table that can be shared with other engines
+    Engine(OpeningBook book, String saveDirectory, TranspositionTable table) {
+        this.game = new Othello();
+        this.book = book;
+        this.saveDirectory = (saveDirectory == null) ? null : Paths.get(saveDirectory);
+        this.table = table;
+    }
+
+    // getter method for the game being played
+    Othello getGame() {
+        return game;
+    }
+
+    public static void main(String[] args) {
+        OpeningBook book = null;
+        String saves = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if ((i + 1 < args.length) && args[i].equals("-book")) {
+                book = new OpeningBook(args[i + 1]);
+            } else if ((i + 1 < args.length) && args[i].equals("-saves")) {
+                saves = args[i + 1];
+            } else {
+                System.out.println("usage: Engine [-book file] [-saves dir]");
+                return;
+            }
+        }
+
+        // the game prints why it rejects a move, which must not get mixed
+        // up with the replies
+        PrintStream out = System.out;
+        System.setOut(System.err);
+
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.US_ASCII)
+        );
+        new Engine(book, saves).run(in, out);
+    }
+
+    /**
+     * run answers commands until the input ends or a quit command.
+     *
+     * @param in  commands
+     * @param out replies
+     */
+    public void run(BufferedReader in, PrintStream out) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String reply = execute(line);
+                if (reply == null) {
+                    break;
+                }
+                out.println(reply);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * execute runs a single command.
+     *
+     * @param line command line
+     * @return reply, or null for quit
+     */
+    public String execute(String line) {
+        String[] words = line.trim().split("\\s+");
+        switch (words[0]) {
+            case "":
+                return "error empty command";
+            case "quit":
+                return null;
+            case "isready":
+                return "readyok";
+            case "new":
+                game.reset();
+                return "ok";
+            case "position":
+                return position(words);
+            case "play":
+                if (words.length != 2) {
+                    return "error usage: play move";
+                }
+                return play(words[1]);
+            case "undo":
+                if (game.getNumTurns() == 0) {
+                    return "error no moves to undo";
+                }
+                game.undo();
+                return "ok";
+            case "moves":
+                return moves();
+            case "board":
+                return board();
+            case "score":
+                return "score " + Bitboards.count(game.getBlackBoard()) + " "
+                        + Bitboards.count(game.getWhiteBoard());
+            case "go":
+                return go(words);
+            case "save":
+            case "resume":
+                if (words.length != 2) {
+                    return "error usage: " + words[0] + " name";
+                }
+                return saveOrResume(words[0].equals("save"), words[1]);
+            default:
+                return "error unknown command " + words[0];
+        }
+    }
+
+    // sets up a position from the starting position or a board
+    private String position(String[] words) {
+        if ((words.length >= 2) && words[1].equals("startpos")) {
+            if ((words.length > 2) && !words[2].equals("moves")) {
+                return "error usage: position startpos [moves m1 m2 ...]";
+            }
+            // play the moves on a copy so a bad move leaves the game as it was
+            Othello o = new Othello();
+            for (int i = 3; i < words.length; i++) {
+                int sq = square(words[i]);
+                if ((sq < 0) || !o.playTurn(sq >>> 3, sq & 7)) {
+                    return "error illegal move " + words[i];
+                }
+            }
+            game.restore(
+                    o.getBlackBoard(), o.getWhiteBoard(), o.getCurrentPlayer(),
+                    o.getGameOver(), history(o), colors(o), o.getNumTurns()
+            );
+            return "ok";
+        }
+        if ((words.length == 4) && words[1].equals("board")) {
+            String cells = words[2];
+            boolean p1 = words[3].equals("black");
+            if ((cells.length() != 64) || (!p1 && !words[3].equals("white"))) {
+                return "error usage: position board B black|white";
+            }
+            long b = 0L;
+            long w = 0L;
+            for (int sq = 0; sq < 64; sq++) {
+                char c = cells.charAt(sq);
+                if (c == 'x') {
+                    b |= 1L << sq;
+                } else if (c == 'o') {
+                    w |= 1L << sq;
+                } else if (c != '-') {
+                    return "error invalid board";
+                }
+            }
+            // a player with no moves passes straight away
+            boolean over = false;
+            long own = p1 ? b : w;
+            long opp = p1 ? w : b;
+            if (Bitboards.legalMoves(own, opp) == 0) {
+                if (Bitboards.legalMoves(opp, own) != 0) {
+                    p1 = !p1;
+                } else {
+                    over = true;
+                }
+            }
+            game.load(b, w, p1, over, new int[0], new int[0], new long[64], 0);
+            return "ok";
+        }
+        return "error usage: position startpos [moves ...] | position board B black|white";
+    }
+
+    // squares of the moves of a game
+    private static byte[] history(Othello o) {
+        byte[] squares = new byte[o.getNumTurns()];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = (byte) o.getMoveSquare(i);
+        }
+        return squares;
+    }
+
+    // colors of the moves of a game
+    private static byte[] colors(Othello o) {
+        byte[] colors = new byte[o.getNumTurns()];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = (byte) o.getMoveColor(i);
+        }
+        return colors;
+    }
+
+    // plays a move for the player to move
+    private String play(String move) {
+        int sq = square(move);
+        if (sq < 0) {
+            return "error invalid move " + move;
+        }
+        if (game.getGameOver() || !game.playTurn(sq >>> 3, sq & 7)) {
+            return "error illegal move " + move;
+        }
+        return "ok";
+    }
+
+    // lists the legal moves of the player to move
+    private String moves() {
+        StringBuilder reply = new StringBuilder("moves");
+        if (!game.getGameOver()) {
+            long moves = game.getLegalMoves(game.getCurrentPlayer() ? 1 : 2);
+            while (moves != 0) {
+                reply.append(' ').append(name(Long.numberOfTrailingZeros(moves)));
+                moves &= moves - 1;
+            }
+        }
+        return reply.toString();
+    }
+
+    // writes out the board and the player to move
+    private String board() {
+        StringBuilder reply = new StringBuilder("board ");
+        long b = game.getBlackBoard();
+        long w = game.getWhiteBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            long bit = 1L << sq;
+            reply.append(((b & bit) != 0) ? 'x' : ((w & bit) != 0) ? 'o' : '-');
+        }
+        if (game.getGameOver()) {
+            reply.append(" over");
+        } else {
+            reply.append(game.getCurrentPlayer() ? " black" : " white");
+        }
+        return reply.toString();
+    }
+
+    // searches the position for the best move
+    private String go(String[] words) {
+        long millis = ComputerPlayer.DEFAULT_TIME_MILLIS;
+        int depth = ComputerPlayer.DEFAULT_MAX_DEPTH;
+        try {
+            for (int i = 1; i < words.length; i += 2) {
+                if (i + 1 == words.length) {
+                    return "error usage: go [movetime ms] [depth d]";
+                }
+                if (words[i].equals("movetime")) {
+                    millis = Long.parseLong(words[i + 1]);
+                } else if (words[i].equals("depth")) {
+                    depth = Integer.parseInt(words[i + 1]);
+                } else {
+                    return "error usage: go [movetime ms] [depth d]";
+                }
+            }
+        } catch (NumberFormatException e) {
+            return "error usage: go [movetime ms] [depth d]";
+        }
+        if ((millis <= 0) || (depth <= 0)) {
+            return "error usage: go [movetime ms] [depth d]";
+        }
+        if (game.getGameOver()) {
+            return "bestmove none";
+        }
+
+        if (table == null) {
+            table = new TranspositionTable(20);
+        }
+        ComputerPlayer player = new ComputerPlayer(
+                new AlphaBetaSearch(millis, depth, table), book
+        );
+        SearchResult r = player.chooseMove(game);
+        if (r.getMove() < 0) {
+            return "bestmove none";
+        }
+        return "bestmove " + name(r.getMove()) + " score " + r.getScore()
+                + " depth " + r.getDepth() + " nodes " + r.getNodes()
+                + " time " + r.getMillis();
+    }
+
+    // saves or resumes the game under a name in the save directory
+    private String saveOrResume(boolean save, String name) {
+        if (saveDirectory == null) {
+            return "error saving is turned off";
+        }
+        if (!validName(name)) {
+            return "error invalid name " + name;
+        }
+        Path file = saveDirectory.resolve(name + ".game");
+        if (!save && !Files.isRegularFile(file)) {
+            return "error no saved game " + name;
+        }
+        try {
+            if (save) {
+                game.saveBinary(file.toString());
+            } else {
+                game.resumeBinary(file.toString());
+            }
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            return "error cannot " + (save ? "save " : "resume ") + name;
+        }
+        return "ok";
+    }
+
+    // whether a save name only has letters, digits, - and _
+    private static boolean validName(String name) {
+        if (name.isEmpty() || (name.length() > MAX_NAME)) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))
+                    || ((c >= '0') && (c <= '9')) || (c == '-') || (c == '_'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * square reads a move such as f5.
+     *
+     * @param move column letter and row digit
+     * @return square index, or -1 if the move cannot be read
+     */
+    static int square(String move) {
+        if (move.length() != 2) {
+            return -1;
+        }
+        char a = Character.toLowerCase(move.charAt(0));
+        char b = move.charAt(1);
+        if ((a < 'a') || (a > 'h') || (b < '1') || (b > '8')) {
+            return -1;
+        }
+        return Bitboards.square(b - '1', a - 'a');
+    }
+
+    /**
+     * name writes a square as a move such as f5.
+     *
+     * @param sq square index
+     * @return column letter and row digit
+     */
+    static String name(int sq) {
+        return new String(new char[] {(char) ('a' + (sq & 7)), (char) ('1' + (sq >>> 3))});
+    }
+
+}
@@ -0,0 +1,354 @@
+package org.cis120.othello;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * This class stores any number of games in a single archive file, one
+ * fixed-size record per game, and reads them through memory-mapped
+ * buffers. Each record holds a game in the binary format of GameCodec.java,
+ * padded with zeros to RECORD_SIZE bytes, so game number id starts at byte
+ * HEADER_SIZE + id * RECORD_SIZE: finding a game takes no index lookups,
+ * and scanning the archive reads the file front to back.
+ *
+ * The file starts with a header:
+ * - 2 bytes: the magic number 'O' 'A'
+ * - 1 byte: the format version (VERSION)
+ * - 1 byte: unused
+ * - 4 bytes: the size of a record (RECORD_SIZE)
+ * - 8 bytes: the number of games in the archive
+ *
+ * A mapped buffer can hold at most 2GB, so the records are mapped in
+ * segments of a fixed number of records each, on first use. An archive
+ * opened for writing maps whole segments ahead of the last game and cuts
+ * the file back to its exact length when it is closed.
+ */
+public final class GameArchive implements Closeable {
+
+    // magic number at the start of the file
+    public static final byte MAGIC_0 = 'O';
+    public static final byte MAGIC_1 = 'A';
+
+    // current format version
+    public static final byte VERSION = 1;
+
+    // size of the file header before the first record
+    public static final int HEADER_SIZE = 16;
+
+    // size of a record: the largest game record rounded up to 8 bytes
+    public static final int RECORD_SIZE = (GameCodec.MAX_SIZE + 7) & ~7;
+
+    // number of records in a mapped segment (88MB)
+    static final int SEGMENT_RECORDS = 1 << 20;
+
+    // offset of the game count in the header
+    private static final int COUNT_OFFSET = 8;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int segmentRecords;
+
+    // segments mapped so far, null until first used
+    private final ArrayList<MappedByteBuffer> segments;
+
+    // number of games in the archive
+    private long count;
+
+    // index given the positions of every appended game, or null
+    private PositionIndex index;
+
+    /**
+     * Constructor opens an archive file, creating an empty archive if the
+     * file is empty or does not exist and the archive is opened for writing.
+     *
+     * @param fileName name of the archive file
+     * @param writable whether games can be appended
+     * @throws IllegalArgumentException if the file cannot be opened or is
+     *                                  not an archive
+     */
+    public GameArchive(String fileName, boolean writable) {
+        this(fileName, writable, SEGMENT_RECORDS);
+    }
+
+    // constructor with a given segment size, so tests can cross segments
+    GameArchive(String fileName, boolean writable, int segmentRecords) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        if (segmentRecords <= 0
+                || (long) segmentRecords * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        this.writable = writable;
+        this.segmentRecords = segmentRecords;
+        this.segments = new ArrayList<MappedByteBuffer>();
+
+        try {
+            this.file = new RandomAccessFile(fileName, writable ? "rw" : "r");
+        } catch (FileNotFoundException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        this.channel = file.getChannel();
+
+        try {
+            if (channel.size() == 0 && writable) {
+                this.count = 0;
+                writeHeader();
+            } else {
+                readHeader();
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            closeQuietly();
+            System.out.println("not a game archive: " + fileName);
+            throw e;
+        }
+    }
+
+    // checks the header of an existing file and reads the game count
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+        header.flip();
+        if ((header.get() != MAGIC_0) || (header.get() != MAGIC_1)
+                || (header.get() != VERSION)) {
+            throw new IllegalArgumentException();
+        }
+        header.get();
+        if (header.getInt() != RECORD_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        long n = header.getLong();
+        if ((n < 0) || (HEADER_SIZE + n * RECORD_SIZE > channel.size())) {
+            throw new IllegalArgumentException();
+        }
+        this.count = n;
+    }
+
+    // writes the header with the current game count
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) 0);
+        header.putInt(RECORD_SIZE).putLong(count);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * size returns the number of games in the archive.
+     *
+     * @return number of games
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * setPositionIndex sets an index that the positions of every game
+     * appended from now on are added to. Games already in the archive can
+     * be added with PositionIndex.addArchive.
+     *
+     * @param index index to update, or null for none
+     */
+    public void setPositionIndex(PositionIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * append adds a game to the end of the archive, and its positions to
+     * the position index if there is one.
+     *
+     * @param o game to add
+     * @return id of the added game
+     * @throws IllegalStateException    if the archive is not writable
+     * @throws IllegalArgumentException if the game cannot be encoded or
+     *                                  indexed
+     */
+    public long append(Othello o) {
+        if (!writable) {
+            throw new IllegalStateException();
+        }
+        long id = count;
+        ByteBuffer out = segment(id).duplicate();
+        int start = offset(id);
+        out.position(start);
+        GameCodec.encode(o, out);
+        // clear the rest of the record
+        while (out.position() < start + RECORD_SIZE) {
+            out.put((byte) 0);
+        }
+        // the game is only stored once the index has taken it too, so that
+        // a game either of them rejects is in neither
+        if (index != null) {
+            index.addGame(o);
+        }
+        count++;
+        return id;
+    }
+
+    /**
+     * read replaces the state of a game with a game from the archive.
+     *
+     * @param id id of the game
+     * @param o  game to read into
+     * @throws IllegalArgumentException if there is no game with that id or
+     *                                  its record is not valid
+     */
+    public void read(long id, Othello o) {
+        GameCodec.decode(record(id), o);
+    }
+
+    /**
+     * record returns a read-only buffer over the record of a game, for
+     * reading fields (such as the bitboards at offset 5 and 13) without
+     * replaying the game.
+     *
+     * @param id id of the game
+     * @return buffer holding the RECORD_SIZE bytes of the record
+     * @throws IllegalArgumentException if there is no game with that id
+     */
+    public ByteBuffer record(long id) {
+        checkId(id);
+        ByteBuffer in = segment(id).asReadOnlyBuffer();
+        int start = offset(id);
+        in.limit(start + RECORD_SIZE).position(start);
+        return in.slice();
+    }
+
+    /**
+     * forEach passes the record of every game to a visitor in id order.
+     * The same buffer is reused for each record, positioned at its start
+     * with the limit at its end, so the visitor must not keep it.
+     *
+     * @param visitor function given each record
+     */
+    public void forEach(Consumer<ByteBuffer> visitor) {
+        long id = 0;
+        while (id < count) {
+            ByteBuffer in = segment(id).asReadOnlyBuffer();
+            long end = Math.min(count, id - (id % segmentRecords) + segmentRecords);
+            for (; id < end; id++) {
+                int start = offset(id);
+                in.limit(start + RECORD_SIZE).position(start);
+                visitor.accept(in);
+            }
+        }
+    }
+
+    /**
+     * flush writes the games appended so far and the header to the disk.
+     */
+    public void flush() {
+        if (!writable) {
+            return;
+        }
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        try {
+            writeHeader();
+            channel.force(false);
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * close flushes the archive, cuts the file back to the end of the last
+     * game and closes it.
+     */
+    @Override
+    public void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+            if (writable) {
+                channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } finally {
+            segments.clear();
+            closeQuietly();
+        }
+    }
+
+    // closes the file, ignoring errors
+    private void closeQuietly() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+        }
+    }
+
+    // checks that a game with the given id is in the archive
+    private void checkId(long id) {
+        if ((id < 0) || (id >= count)) {
+            System.out.println("invalid game id: " + id);
+            throw new IllegalArgumentException();
+        }
+    }
+
+    // offset of a record within its segment
+    private int offset(long id) {
+        return (int) (id % segmentRecords) * RECORD_SIZE;
+    }
+
+    // returns the segment holding a record, mapping it on first use
+    private MappedByteBuffer segment(long id) {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException();
+        }
+        int k = (int) (id / segmentRecords);
+        while (segments.size() <= k) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(k);
+        if (segment == null) {
+            long start = HEADER_SIZE + (long) k * segmentRecords * RECORD_SIZE;
+            long length = (long) segmentRecords * RECORD_SIZE;
+            try {
+                if (writable) {
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+                } else {
+                    length = Math.min(length, channel.size() - start);
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                }
+            } catch (IOException e) {
+                System.out.println("I/O exception occured");
+                throw new UncheckedIOException(e);
+            }
+            segments.set(k, segment);
+        }
+        return segment;
+    }
+
+}
@@ -0,0 +1,169 @@
+package org.cis120.othello;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class reads and writes Othello games in a compact binary format,
+ * used by Othello.saveBinary and Othello.resumeBinary, so that a finished
+ * game takes about 80 bytes instead of the hundreds of lines of the text
+ * save file.
+ *
+ * A record is laid out as follows (numbers are big-endian):
+ * - 2 bytes: the magic number 'O' 'T'
+ * - 1 byte: the format version (VERSION)
+ * - 1 byte: flags, bit 0 set if it is player 1's (black's) turn and bit 1
+ *   set if the game is over
+ * - 1 byte: the number of moves n
+ * - 8 bytes: the bitboard of black pieces
+ * - 8 bytes: the bitboard of white pieces
+ * - n bytes: one per move in order, holding the square index (8 * row +
+ *   column) of the added piece in the low 6 bits and WHITE_MOVE set if it
+ *   was white's move
+ *
+ * The pieces each move overtook are not stored: they are recomputed by
+ * replaying the moves from the starting position when the record is read,
+ * which also checks the moves against the stored bitboards. Games whose
+ * board was changed through the board cells rather than by playing moves
+ * cannot be read back.
+ */
+public final class GameCodec {
+
+    // magic number at the start of every record
+    public static final byte MAGIC_0 = 'O';
+    public static final byte MAGIC_1 = 'T';
+
+    // current format version
+    public static final byte VERSION = 1;
+
+    // size of the header before the moves
+    public static final int HEADER_SIZE = 21;
+
+    // largest record a game can produce (one move per square)
+    public static final int MAX_SIZE = HEADER_SIZE + 64;
+
+    // bits of the flags byte
+    private static final int PLAYER_1_TO_MOVE = 1;
+    private static final int GAME_OVER = 2;
+
+    // bit of a move byte set for white's moves
+    public static final int WHITE_MOVE = 0x40;
+
+    // no instances
+    private GameCodec() {
+    }
+
+    /**
+     * size returns the number of bytes a game takes when encoded.
+     *
+     * @param o game to encode
+     * @return size of the record in bytes
+     */
+    public static int size(Othello o) {
+        return HEADER_SIZE + o.getNumTurns();
+    }
+
+    /**
+     * encode writes a game as a new record.
+     *
+     * @param o game to encode
+     * @return the record
+     */
+    public static byte[] encode(Othello o) {
+        byte[] data = new byte[size(o)];
+        encode(o, ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * encode writes a game at the current position of a buffer, moving
+     * the position past the record.
+     *
+     * @param o   game to encode
+     * @param out buffer with at least size(o) bytes remaining
+     */
+    public static void encode(Othello o, ByteBuffer out) {
+        int n = o.getNumTurns();
+        if (n > 0xFF) {
+            throw new IllegalArgumentException();
+        }
+        int flags = 0;
+        if (o.getCurrentPlayer()) {
+            flags |= PLAYER_1_TO_MOVE;
+        }
+        if (o.getGameOver()) {
+            flags |= GAME_OVER;
+        }
+        out.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) flags).put((byte) n);
+        out.putLong(o.getBlackBoard());
+        out.putLong(o.getWhiteBoard());
+        for (int i = 0; i < n; i++) {
+            int move = o.getMoveSquare(i);
+            if (o.getMoveColor(i) == 2) {
+                move |= WHITE_MOVE;
+            }
+            out.put((byte) move);
+        }
+    }
+
+    /**
+     * decode reads a record into a game, replacing its state.
+     *
+     * @param data record to read
+     * @param o    game to read into
+     * @throws IllegalArgumentException if the data is not a valid record
+     */
+    public static void decode(byte[] data, Othello o) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        decode(in, o);
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * decode reads a record at the current position of a buffer into a
+     * game, replacing its state and moving the position past the record.
+     *
+     * @param in buffer holding the record
+     * @param o  game to read into
+     * @throws IllegalArgumentException if the data is not a valid record
+     */
+    public static void decode(ByteBuffer in, Othello o) {
+        try {
+            if ((in.get() != MAGIC_0) || (in.get() != MAGIC_1)) {
+                throw new IllegalArgumentException();
+            }
+            if (in.get() != VERSION) {
+                throw new IllegalArgumentException();
+            }
+            int flags = in.get();
+            int n = in.get() & 0xFF;
+            long black = in.getLong();
+            long white = in.getLong();
+            if ((black & white) != 0) {
+                throw new IllegalArgumentException();
+            }
+
+            byte[] squares = new byte[n];
+            byte[] colors = new byte[n];
+            for (int i = 0; i < n; i++) {
+                int move = in.get();
+                squares[i] = (byte) (move & 0x3F);
+                if ((move & WHITE_MOVE) != 0) {
+                    colors[i] = 2;
+                } else {
+                    colors[i] = 1;
+                }
+            }
+            o.restore(
+                    black, white, (flags & PLAYER_1_TO_MOVE) != 0,
+                    (flags & GAME_OVER) != 0, squares, colors, n
+            );
+        } catch (BufferUnderflowException e) {
+            // the record was cut short
+            throw new IllegalArgumentException();
+        }
+    }
+
+}
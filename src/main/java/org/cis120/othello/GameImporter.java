@@ -0,0 +1,539 @@
+package org.cis120.othello;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class imports games from Othello game databases and replays each
+ * of them through an Othello game on a number of worker threads, checking
+ * that every move is legal. Two formats are read:
+ * - WTHOR (.wtb) databases: a 16-byte header followed by a 68-byte record
+ *   per game, whose last 60 bytes are the moves as 10 * row + column
+ *   (both from 1 to 8) and 0 after the last move
+ * - move strings: one game per line such as "f5d6c3d3c4", with the column
+ *   as a letter from a to h and the row as a digit from 1 to 8; spaces
+ *   are ignored, "--" and "pa" mark passes, and lines that are empty or
+ *   start with '#' are skipped
+ *
+ * The input is streamed: the calling thread reads the games into batches
+ * of BATCH_GAMES games and hands them to the workers through a bounded
+ * queue, and the batches are reused, so the memory used does not depend on
+ * the size of the database. Games are numbered from 0 in the order they
+ * are read, and a Listener is told the outcome of each game, from the
+ * worker threads and in no particular order. Interrupting the calling
+ * thread stops the import with an UncheckedIOException caused by an
+ * InterruptedIOException, and leaves the thread interrupted.
+ */
+public final class GameImporter {
+
+    /**
+     * Receives the games of an import. The methods are called from the
+     * worker threads, so they must be thread-safe.
+     */
+    public interface Listener {
+
+        /**
+         * gameImported is called with each game whose moves are all legal,
+         * after they have been played. The game is reused for the next game
+         * replayed on the same thread, so it must not be kept.
+         *
+         * @param index number of the game in the input
+         * @param game  the game after its last move
+         */
+        void gameImported(long index, Othello game);
+
+        /**
+         * gameRejected is called with each game that has a move that cannot
+         * be read or is not legal.
+         *
+         * @param index  number of the game in the input
+         * @param ply    number of the move that was rejected, from 0
+         * @param reason why the move was rejected
+         */
+        void gameRejected(long index, int ply, String reason);
+    }
+
+    /**
+     * Totals of an import.
+     */
+    public static final class Summary {
+        private final long imported;
+        private final long rejected;
+        private final long nanos;
+
+        private Summary(long imported, long rejected, long nanos) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.nanos = nanos;
+        }
+
+        // getter method for the number of games read
+        public long getGames() {
+            return imported + rejected;
+        }
+
+        // getter method for the number of legal games
+        public long getImported() {
+            return imported;
+        }
+
+        // getter method for the number of rejected games
+        public long getRejected() {
+            return rejected;
+        }
+
+        // getter method for the time the import took, in nanoseconds
+        public long getNanos() {
+            return nanos;
+        }
+
+        // getter method for the number of games read per second
+        public long getGamesPerSecond() {
+            return getGames() * 1000000000L / Math.max(1, nanos);
+        }
+    }
+
+    // number of games handed to a worker at a time
+    static final int BATCH_GAMES = 1024;
+
+    // slots for the moves of a game: at most 60 moves and an end marker
+    private static final int GAME_SLOTS = 61;
+
+    // move codes other than squares
+    private static final byte END = -1;
+    private static final byte UNREADABLE = 64;
+    private static final byte TOO_LONG = 65;
+
+    // sizes of the WTHOR header and of a WTHOR game record
+    static final int WTHOR_HEADER_SIZE = 16;
+    static final int WTHOR_RECORD_SIZE = 68;
+
+    // offset of the moves in a WTHOR game record
+    private static final int WTHOR_MOVES = 8;
+
+    // number of worker threads
+    private final int threads;
+
+    /**
+     * Constructor sets up an importer.
+     *
+     * @param threads number of worker threads
+     */
+    public GameImporter(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * importFile imports a database file, read as WTHOR if its name ends
+     * in .wtb and as move strings otherwise.
+     *
+     * @param fileName name of the database file
+     * @param listener told the outcome of each game
+     * @return totals of the import
+     */
+    public Summary importFile(String fileName, Listener listener) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        try {
+            if (fileName.toLowerCase().endsWith(".wtb")) {
+                InputStream in = new FileInputStream(fileName);
+                try {
+                    return importWthor(in, listener);
+                } finally {
+                    in.close();
+                }
+            } else {
+                Reader in = new InputStreamReader(
+                        new FileInputStream(fileName), StandardCharsets.US_ASCII
+                );
+                try {
+                    return importMoveStrings(in, listener);
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * importWthor imports the games of a WTHOR database.
+     *
+     * @param in       stream holding the database
+     * @param listener told the outcome of each game
+     * @return totals of the import
+     * @throws IllegalArgumentException if the stream is not an 8 x 8 WTHOR
+     *                                  database
+     */
+    public Summary importWthor(InputStream in, Listener listener) {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        final byte[] record = new byte[WTHOR_RECORD_SIZE];
+        try {
+            data.readFully(record, 0, WTHOR_HEADER_SIZE);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+        // byte 12 is the board size, 0 meaning 8
+        if ((record[12] != 0) && (record[12] != 8)) {
+            System.out.println("not an 8 x 8 database");
+            throw new IllegalArgumentException();
+        }
+
+        return run(new Source() {
+            @Override
+            public boolean next(byte[] moves, int base) throws IOException {
+                int n = data.read(record);
+                if (n < 0) {
+                    return false;
+                }
+                if (n < WTHOR_RECORD_SIZE) {
+                    try {
+                        data.readFully(record, n, WTHOR_RECORD_SIZE - n);
+                    } catch (EOFException e) {
+                        System.out.println("truncated game record");
+                        throw new IllegalArgumentException();
+                    }
+                }
+                for (int i = 0; i < 60; i++) {
+                    int m = record[WTHOR_MOVES + i];
+                    int r = m / 10;
+                    int c = m % 10;
+                    if (m == 0) {
+                        moves[base + i] = END;
+                        return true;
+                    } else if ((r < 1) || (r > 8) || (c < 1) || (c > 8)) {
+                        moves[base + i] = UNREADABLE;
+                        return true;
+                    }
+                    moves[base + i] = (byte) Bitboards.square(r - 1, c - 1);
+                }
+                moves[base + 60] = END;
+                return true;
+            }
+        }, listener);
+    }
+
+    /**
+     * importMoveStrings imports games written as move strings, one per
+     * line.
+     *
+     * @param in       reader holding the games
+     * @param listener told the outcome of each game
+     * @return totals of the import
+     */
+    public Summary importMoveStrings(Reader in, Listener listener) {
+        final BufferedReader br = new BufferedReader(in);
+        return run(new Source() {
+            @Override
+            public boolean next(byte[] moves, int base) throws IOException {
+                String line = br.readLine();
+                while ((line != null) && skipLine(line)) {
+                    line = br.readLine();
+                }
+                if (line == null) {
+                    return false;
+                }
+                parseMoves(line, moves, base);
+                return true;
+            }
+        }, listener);
+    }
+
+    // whether a line holds no game
+    private static boolean skipLine(String line) {
+        String s = line.trim();
+        return s.isEmpty() || (s.charAt(0) == '#');
+    }
+
+    // reads the moves of a line into the slots of a game
+    private static void parseMoves(String line, byte[] moves, int base) {
+        int n = 0;
+        int i = 0;
+        int length = line.length();
+        while (i < length) {
+            char a = Character.toLowerCase(line.charAt(i));
+            if (Character.isWhitespace(a)) {
+                i++;
+                continue;
+            }
+            if (i + 1 >= length) {
+                moves[base + n] = UNREADABLE;
+                return;
+            }
+            char b = Character.toLowerCase(line.charAt(i + 1));
+            i += 2;
+            if (((a == '-') && (b == '-')) || ((a == 'p') && (b == 'a'))) {
+                // passes are made by the game itself
+                continue;
+            }
+            if (n == GAME_SLOTS - 1) {
+                moves[base + n] = TOO_LONG;
+                return;
+            }
+            if ((a < 'a') || (a > 'h') || (b < '1') || (b > '8')) {
+                moves[base + n] = UNREADABLE;
+                return;
+            }
+            moves[base + n] = (byte) Bitboards.square(b - '1', a - 'a');
+            n++;
+        }
+        moves[base + n] = END;
+    }
+
+    /**
+     * Reads games from the input, one at a time.
+     */
+    private interface Source {
+
+        /**
+         * next reads the moves of the next game into GAME_SLOTS slots,
+         * ending them with END unless a move cannot be read.
+         *
+         * @param moves array to write the moves to
+         * @param base  index of the first slot
+         * @return false if there are no more games
+         */
+        boolean next(byte[] moves, int base) throws IOException;
+    }
+
+    /**
+     * Moves of a number of games, passed from the reading thread to the
+     * workers.
+     */
+    private static final class Batch {
+        private final byte[] moves = new byte[BATCH_GAMES * GAME_SLOTS];
+        private long first;
+        private int count;
+    }
+
+    // runs an import, reading on this thread and replaying on the workers
+    private Summary run(Source source, final Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException();
+        }
+        long start = System.nanoTime();
+
+        // two batches per worker: one being replayed and one waiting
+        final BlockingQueue<Batch> free = new ArrayBlockingQueue<Batch>(2 * threads);
+        final BlockingQueue<Batch> full = new ArrayBlockingQueue<Batch>(2 * threads + threads);
+        for (int i = 0; i < 2 * threads; i++) {
+            free.add(new Batch());
+        }
+        final Batch done = new Batch();
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Othello game = new Othello();
+                    while (true) {
+                        Batch b;
+                        try {
+                            b = full.take();
+                        } catch (InterruptedException e) {
+                            // stop replaying, but keep handing batches back
+                            // so that the reading thread does not wait forever
+                            failure.compareAndSet(null, interrupted());
+                            continue;
+                        }
+                        if (b == done) {
+                            return;
+                        }
+                        if (failure.get() == null) {
+                            try {
+                                int legal = replay(b, game, listener);
+                                imported.addAndGet(legal);
+                                rejected.addAndGet(b.count - legal);
+                            } catch (RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                        free.add(b);
+                    }
+                }
+            }, "importer-" + t);
+            workers[t].setDaemon(true);
+            workers[t].start();
+        }
+
+        boolean interrupted = false;
+        try {
+            long index = 0;
+            boolean more = true;
+            while (more && (failure.get() == null)) {
+                Batch b = free.take();
+                b.first = index;
+                b.count = 0;
+                while (b.count < BATCH_GAMES) {
+                    more = source.next(b.moves, b.count * GAME_SLOTS);
+                    if (!more) {
+                        break;
+                    }
+                    b.count++;
+                }
+                index += b.count;
+                full.add(b);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            failure.compareAndSet(null, interrupted());
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            failure.compareAndSet(null, new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            for (int t = 0; t < threads; t++) {
+                full.add(done);
+            }
+            // the workers stop soon after a failure, so wait for them
+            // even if interrupted, and pass the interrupt on afterwards
+            for (Thread w : workers) {
+                while (w.isAlive()) {
+                    try {
+                        w.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return new Summary(imported.get(), rejected.get(), System.nanoTime() - start);
+    }
+
+    // failure of an import stopped by an interrupt
+    private static UncheckedIOException interrupted() {
+        return new UncheckedIOException(new InterruptedIOException("import interrupted"));
+    }
+
+    // replays the games of a batch, returning the number that were legal
+    private static int replay(Batch b, Othello game, Listener listener) {
+        int legal = 0;
+        for (int g = 0; g < b.count; g++) {
+            int base = g * GAME_SLOTS;
+            long index = b.first + g;
+            game.reset();
+            String reason = null;
+            int ply = 0;
+            for (; ply < GAME_SLOTS; ply++) {
+                int sq = b.moves[base + ply];
+                if (sq == END) {
+                    break;
+                } else if (sq == UNREADABLE) {
+                    reason = "unreadable move";
+                } else if (sq == TOO_LONG) {
+                    reason = "too many moves";
+                } else if (game.getGameOver()) {
+                    reason = "move after the end of the game";
+                } else {
+                    int color = game.getCurrentPlayer() ? 1 : 2;
+                    if ((game.getLegalMoves(color) & (1L << sq)) == 0) {
+                        reason = "illegal move";
+                    } else {
+                        game.playTurn(sq >>> 3, sq & 7);
+                    }
+                }
+                if (reason != null) {
+                    break;
+                }
+            }
+            if (reason == null) {
+                listener.gameImported(index, game);
+                legal++;
+            } else {
+                listener.gameRejected(index, ply, reason);
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * main imports a database file and prints the totals and the speed.
+     *
+     * @param args the file name, then optionally the number of threads
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("usage: GameImporter file [threads]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+
+        final AtomicLong blackWins = new AtomicLong();
+        final AtomicLong whiteWins = new AtomicLong();
+        final AtomicLong draws = new AtomicLong();
+        Summary s = new GameImporter(threads).importFile(args[0], new Listener() {
+            @Override
+            public void gameImported(long index, Othello game) {
+                int black = Long.bitCount(game.getBlackBoard());
+                int white = Long.bitCount(game.getWhiteBoard());
+                if (black > white) {
+                    blackWins.incrementAndGet();
+                } else if (white > black) {
+                    whiteWins.incrementAndGet();
+                } else {
+                    draws.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void gameRejected(long index, int ply, String reason) {
+                System.out.println("game " + index + ", move " + (ply + 1) + ": " + reason);
+            }
+        });
+
+        System.out.println(String.format(
+                "%d games: %d imported, %d rejected in %d ms (%d games/sec)",
+                s.getGames(), s.getImported(), s.getRejected(), s.getNanos() / 1000000,
+                s.getGamesPerSecond()
+        ));
+        System.out.println(String.format(
+                "black wins %d, white wins %d, draws %d", blackWins.get(), whiteWins.get(),
+                draws.get()
+        ));
+    }
+
+}
@@ -4,6 +4,10 @@ package org.cis120.othello;
  * This class constructs a GamePiece, which consists of a color (either none,
  * black, or white), and coordinates for its position on the 2D board used
  * in Othello.java, with x representing rows and y representing columns.
+ *
+ * Two game pieces are equal if they are on the same square, whatever their
+ * colors, and they are ordered by square index (8 * row + column), the
+ * same index used by the bitboards in Bitboards.java.
  */
 public class GamePiece implements Comparable<GamePiece> {
 
@@ -50,6 +54,11 @@ public class GamePiece implements Comparable<GamePiece> {
         return this.y;
     }
 
+    // getter method for the square index (8 * row + column)
+    public int getSquare() {
+        return (this.x << 3) | this.y;
+    }
+
     // getter method for color
     public boolean isEmpty() {
         return (this.color == 0);
@@ -79,8 +88,8 @@ public class GamePiece implements Comparable<GamePiece> {
             return false;
         }
         GamePiece that = (GamePiece) o;
-        // equal if they have the same hash code
-        return (this.hashCode() == that.hashCode());
+        // equal if they are on the same square
+        return (this.getSquare() == that.getSquare());
 
     }
 
@@ -93,27 +102,19 @@ public class GamePiece implements Comparable<GamePiece> {
      */
     @Override
     public int compareTo(GamePiece g) {
-
-        // check hash codes
-        if (this.hashCode() == g.hashCode()) {
-            return 0;
-        } else if (this.hashCode() < g.hashCode()) {
-            return -1;
-        } else {
-            return 1;
-        }
-
+        // compare squares, which lie between 0 and 63
+        return this.getSquare() - g.getSquare();
     }
 
     /**
-     * Overriding the compareTo function
+     * Overriding the hashCode function
      *
-     * @return Returns an int representing the hashcode of a Game Piece object
+     * @return Returns the square index of the Game Piece, which is different
+     *         for every square on the board
      */
     @Override
     public int hashCode() {
-        int tmp = y + ((x + 1) / 2);
-        return x + (tmp * tmp);
+        return getSquare();
     }
 
 }
@@ -0,0 +1,662 @@
+package org.cis120.othello;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.cis120.othello.ai.OpeningBook;
+import org.cis120.othello.ai.TranspositionTable;
+
+/**
+ * This class is a socket server hosting any number of independent Othello
+ * games, one per connection. Each connection is a session with its own
+ * Engine.java, and speaks the same line protocol as the engine does on
+ * standard input: one command per line, one reply line per command, in
+ * order. Closing the connection or sending quit ends the session.
+ *
+ * All connections are served by a single thread with a java.nio Selector,
+ * so a session costs its game and two small buffers rather than a thread.
+ * Commands are run on that thread as soon as their line is read, except
+ * for go, which can take its whole time budget: searches run on a fixed
+ * pool of search threads sharing one transposition table, and the session
+ * reads no further commands until its search has replied. Likewise a
+ * session with more than REPLY_BACKLOG bytes of replies waiting reads and
+ * runs no further commands until the client has read them.
+ *
+ * A session can also watch the game of another, as a spectator. Besides
+ * the engine commands, the server answers:
+ * - game: replies game followed by the number of the session's game
+ * - watch n: starts watching game n, replying with a position line of
+ *   Broadcast.java; from then on the session is also sent an update or
+ *   position line whenever the game changes, and ended when its session
+ *   ends
+ * - unwatch: stops watching
+ * Updates are made on the selector thread after the commands that have
+ * arrived are run, one line per changed game however many moves it took,
+ * and that line is copied to the output of every spectator. The outputs
+ * are written a few dozen at a time, between turns of the select loop,
+ * so a game with many spectators does not hold up the other sessions. A
+ * spectator that has too much output waiting gets no updates until it has
+ * caught up, and then a position line.
+ *
+ * Usage: java org.cis120.othello.GameServer port [-book file] [-saves dir]
+ * [-threads n]
+ */
+public final class GameServer implements Runnable, Closeable {
+
+    // size of the input buffer of a session, and so the longest command
+    static final int LINE_SIZE = 1024;
+
+    // initial size of the output buffer of a session
+    private static final int OUTPUT_SIZE = 256;
+
+    // log base 2 of the entries of the shared transposition table (64MB)
+    private static final int TABLE_BITS = 22;
+
+    // output a spectator may have waiting before it stops getting updates
+    private static final int SPECTATOR_BACKLOG = 64 * 1024;
+
+    // output a session may have waiting before its commands stop being
+    // read and run, so a client that does not read its replies cannot
+    // make them pile up without limit
+    static final int REPLY_BACKLOG = 64 * 1024;
+
+    // most spectators written to in one turn of the select loop
+    private static final int UPDATE_WRITES = 64;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService searches;
+    private final TranspositionTable table;
+    private final OpeningBook book;
+    private final String saveDirectory;
+
+    // sessions whose search has finished, to be picked up by the selector
+    private final ConcurrentLinkedQueue<Session> searched;
+
+    // open sessions by the number of their game, and the next number
+    private final HashMap<Integer, Session> games;
+    private int nextGame;
+
+    // watched sessions that ran commands since the last updates were made
+    private final ArrayList<Session> changed;
+
+    // spectators given updates that are not yet written, in order
+    private final ArrayDeque<Session> updated;
+
+    // number of open sessions
+    private volatile int sessions;
+
+    // largest output buffer any session has needed, in bytes
+    private volatile int largestOutput = OUTPUT_SIZE;
+
+    // set by close to stop the selector thread
+    private volatile boolean closed;
+
+    // whether the selector thread is running
+    private volatile boolean running;
+
+    /**
+     * Constructor opens the server socket. The server accepts connections
+     * once run is called.
+     *
+     * @param port          port to listen on, or 0 for any free port
+     * @param book          opening book for go, or null for none
+     * @param saveDirectory directory games are saved in, or null for none
+     * @param threads       number of threads running searches
+     */
+    public GameServer(int port, OpeningBook book, String saveDirectory, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.book = book;
+        this.saveDirectory = saveDirectory;
+        this.table = new TranspositionTable(TABLE_BITS);
+        this.searched = new ConcurrentLinkedQueue<Session>();
+        this.games = new HashMap<Integer, Session>();
+        this.nextGame = 1;
+        this.changed = new ArrayList<Session>();
+        this.updated = new ArrayDeque<Session>();
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port), 1024);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+        this.searches = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "othello-search");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // getter method for the port the server listens on
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    // getter method for the number of open sessions
+    public int getSessions() {
+        return sessions;
+    }
+
+    // getter method for the largest output buffer of a session, for testing
+    int getLargestOutput() {
+        return largestOutput;
+    }
+
+    /**
+     * run serves connections until the server is closed.
+     */
+    @Override
+    public void run() {
+        running = true;
+        try {
+            while (!closed) {
+                if (updated.isEmpty()) {
+                    selector.select();
+                } else {
+                    // updates are still to be written: only look for work
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session s = (Session) key.attachment();
+                        if (key.isReadable()) {
+                            s.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            s.write();
+                        }
+                    }
+                }
+                Session s;
+                while ((s = searched.poll()) != null) {
+                    s.searchDone();
+                }
+                broadcast();
+                writeUpdates();
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } finally {
+            running = false;
+            shutDown();
+        }
+    }
+
+    // takes every waiting connection
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                // such as too many open files: try again on the next select
+                System.out.println("I/O exception occured");
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                Session s = new Session(key, channel, nextGame++);
+                key.attach(s);
+                games.put(s.id, s);
+                sessions++;
+            } catch (IOException e) {
+                // the client went away while connecting; only it is dropped
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    System.out.println("I/O exception occured");
+                }
+            }
+        }
+    }
+
+    /**
+     * broadcast adds the changes to every watched game since the last call
+     * to the output of its spectators, to be written by writeUpdates.
+     */
+    private void broadcast() {
+        for (Session host : changed) {
+            host.changed = false;
+            if (host.broadcast == null) {
+                // no spectators left
+                continue;
+            }
+            String line = host.broadcast.poll();
+            if (line == null) {
+                continue;
+            }
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+            for (Session spectator : host.spectators) {
+                if (spectator.behind) {
+                    continue;
+                }
+                if (spectator.out.position() > SPECTATOR_BACKLOG) {
+                    spectator.behind = true;
+                    continue;
+                }
+                spectator.send(bytes);
+                if (!spectator.updated) {
+                    spectator.updated = true;
+                    updated.add(spectator);
+                }
+            }
+        }
+        changed.clear();
+    }
+
+    /**
+     * writeUpdates writes the output of up to UPDATE_WRITES spectators
+     * given updates, leaving the others for the next turns of the select
+     * loop, so that the commands of other sessions are run in between
+     * however many spectators a game has.
+     */
+    private void writeUpdates() {
+        for (int i = 0; (i < UPDATE_WRITES) && !updated.isEmpty(); i++) {
+            Session spectator = updated.poll();
+            spectator.updated = false;
+            if (spectator.key.isValid()) {
+                spectator.interest();
+            }
+        }
+    }
+
+    /**
+     * close stops the server and ends every session.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (running) {
+            // the selector thread shuts down when it wakes up
+            selector.wakeup();
+        } else {
+            shutDown();
+        }
+    }
+
+    // closes every connection, the server socket and the selector
+    private synchronized void shutDown() {
+        if (!selector.isOpen()) {
+            return;
+        }
+        searches.shutdownNow();
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+        }
+        sessions = 0;
+    }
+
+    /**
+     * A connection and its game.
+     */
+    private final class Session {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private final Engine engine;
+
+        // number of the game, for spectators
+        private final int id;
+
+        // bytes read but not yet run as commands
+        private final ByteBuffer in;
+
+        // replies not yet written, ready for writing into the buffer
+        private ByteBuffer out;
+
+        // command being searched on a search thread, and its reply
+        private String searching;
+        private volatile String reply;
+
+        // whether the session ends once its replies are written
+        private boolean closing;
+
+        // spectators of the game and the updates made for them, or null
+        private ArrayList<Session> spectators;
+        private Broadcast broadcast;
+
+        // whether the session is in the list of changed games
+        private boolean changed;
+
+        // session whose game this session watches, or null
+        private Session watching;
+
+        // whether the session is in the list of updated spectators
+        private boolean updated;
+
+        // whether updates were left out because too much output was waiting
+        private boolean behind;
+
+        private Session(SelectionKey key, SocketChannel channel, int id) {
+            this.key = key;
+            this.channel = channel;
+            this.id = id;
+            this.engine = new Engine(book, saveDirectory, table);
+            this.in = ByteBuffer.allocate(LINE_SIZE);
+            this.out = ByteBuffer.allocate(OUTPUT_SIZE);
+        }
+
+        // reads what has arrived and runs the complete commands in it
+        private void read() {
+            int n;
+            try {
+                n = channel.read(in);
+            } catch (IOException e) {
+                end();
+                return;
+            }
+            if (n < 0) {
+                end();
+                return;
+            }
+            runCommands();
+        }
+
+        // runs the buffered commands until one has to wait for a search or
+        // too many replies are waiting
+        private void runCommands() {
+            int start = 0;
+            int end = in.position();
+            for (int i = 0; (i < end) && (searching == null) && !closing && !backlogged(); i++) {
+                if (in.get(i) != '\n') {
+                    continue;
+                }
+                String line = new String(in.array(), start, i - start, StandardCharsets.US_ASCII);
+                start = i + 1;
+                String[] words = line.trim().split("\\s+");
+                if (words[0].equals("go")) {
+                    search(line);
+                } else if (words[0].equals("game")) {
+                    reply("game " + id);
+                } else if (words[0].equals("watch") || words[0].equals("unwatch")) {
+                    reply(watch(words));
+                } else {
+                    String r = engine.execute(line);
+                    if (r == null) {
+                        closing = true;
+                    } else {
+                        reply(r);
+                    }
+                    if ((spectators != null) && !changed) {
+                        changed = true;
+                        GameServer.this.changed.add(this);
+                    }
+                }
+            }
+            // keep the rest of the input for later
+            in.flip().position(start);
+            in.compact();
+            if (!in.hasRemaining() && (searching == null) && !closing && !backlogged()) {
+                reply("error command too long");
+                closing = true;
+            }
+            interest();
+        }
+
+        // starts or stops watching a game
+        private String watch(String[] words) {
+            if (words[0].equals("unwatch")) {
+                if (words.length != 1) {
+                    return "error usage: unwatch";
+                }
+                stopWatching();
+                return "ok";
+            }
+            if (words.length != 2) {
+                return "error usage: watch game";
+            }
+            Session host = null;
+            try {
+                host = games.get(Integer.parseInt(words[1]));
+            } catch (NumberFormatException e) {
+                // not a game number
+            }
+            if (host == null) {
+                return "error no game " + words[1];
+            }
+            stopWatching();
+            if (host.spectators == null) {
+                // a search only reads the game, so it can be running
+                host.spectators = new ArrayList<Session>();
+                host.broadcast = new Broadcast(host.engine.getGame());
+            }
+            host.spectators.add(this);
+            watching = host;
+            behind = false;
+            return host.broadcast.keyframe();
+        }
+
+        // stops watching, dropping the updates of a game left unwatched
+        private void stopWatching() {
+            if (watching == null) {
+                return;
+            }
+            watching.spectators.remove(this);
+            if (watching.spectators.isEmpty()) {
+                watching.spectators = null;
+                watching.broadcast = null;
+            }
+            watching = null;
+        }
+
+        // runs a search on a search thread
+        private void search(final String line) {
+            searching = line;
+            searches.execute(() -> {
+                String r;
+                try {
+                    r = engine.execute(line);
+                } catch (RuntimeException e) {
+                    r = "error search failed";
+                }
+                reply = r;
+                searched.add(this);
+                selector.wakeup();
+            });
+        }
+
+        // sends the reply of a finished search and runs the next commands
+        private void searchDone() {
+            searching = null;
+            if (!key.isValid()) {
+                return;
+            }
+            reply(reply);
+            runCommands();
+        }
+
+        // adds a reply to the output
+        private void reply(String r) {
+            reserve(r.length() + 1);
+            for (int i = 0; i < r.length(); i++) {
+                out.put((byte) r.charAt(i));
+            }
+            out.put((byte) '\n');
+        }
+
+        // adds a line that is already encoded to the output
+        private void send(byte[] line) {
+            reserve(line.length);
+            out.put(line);
+        }
+
+        // grows the output buffer to take the given number of bytes
+        private void reserve(int length) {
+            if (out.remaining() < length) {
+                ByteBuffer bigger = ByteBuffer.allocate(
+                        Math.max(2 * out.capacity(), out.position() + length)
+                );
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+                largestOutput = Math.max(largestOutput, out.capacity());
+            }
+        }
+
+        // writes as much of the output as the socket takes, running the
+        // commands held back once the replies have drained
+        private void write() {
+            if (!flush()) {
+                return;
+            }
+            if ((in.position() > 0) && (searching == null) && !closing && !backlogged()) {
+                runCommands();
+            } else {
+                interest();
+            }
+        }
+
+        // whether too many replies are waiting to run more commands
+        private boolean backlogged() {
+            return out.position() > REPLY_BACKLOG;
+        }
+
+        // writes what the socket takes, returning false if the session ended
+        private boolean flush() {
+            out.flip();
+            try {
+                channel.write(out);
+            } catch (IOException e) {
+                out.compact();
+                end();
+                return false;
+            }
+            out.compact();
+            return true;
+        }
+
+        // chooses what the selector waits for, ending a finished session
+        private void interest() {
+            // try straight away, and wait only if the socket is full
+            if ((out.position() > 0) && !flush()) {
+                return;
+            }
+            if (behind && (out.position() == 0) && (watching != null)) {
+                // caught up: start again from the position as last updated
+                behind = false;
+                reply(watching.broadcast.keyframe());
+                if (!flush()) {
+                    return;
+                }
+            }
+            boolean pending = out.position() > 0;
+            if (closing && !pending) {
+                end();
+                return;
+            }
+            int ops = 0;
+            if (pending) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            if ((searching == null) && !closing && !backlogged()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        // closes the connection
+        private void end() {
+            if (!key.isValid()) {
+                return;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("I/O exception occured");
+            }
+            sessions--;
+            games.remove(id);
+            stopWatching();
+            if (spectators != null) {
+                for (Session spectator : spectators) {
+                    spectator.watching = null;
+                    spectator.behind = false;
+                    spectator.reply("ended");
+                    if (spectator.key.isValid()) {
+                        spectator.interest();
+                    }
+                }
+                spectators = null;
+                broadcast = null;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: GameServer port [-book file] [-saves dir] [-threads n]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        OpeningBook book = null;
+        String saves = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-book")) {
+                book = new OpeningBook(args[i + 1]);
+            } else if (args[i].equals("-saves")) {
+                saves = args[i + 1];
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            }
+        }
+        // the games print why they reject a move, which would only slow
+        // the server down
+        System.setOut(System.err);
+        GameServer s = new GameServer(port, book, saveDirectory(saves), threads);
+        System.err.println("listening on port " + s.getPort());
+        s.run();
+    }
+
+    // checks the save directory given on the command line
+    private static String saveDirectory(String saves) {
+        if ((saves != null) && !new File(saves).isDirectory()) {
+            System.out.println("File Not Found: " + saves);
+            throw new IllegalArgumentException();
+        }
+        return saves;
+    }
+
+}
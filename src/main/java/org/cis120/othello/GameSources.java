@@ -0,0 +1,74 @@
+package org.cis120.othello;
+
+import java.util.function.Consumer;
+
+/**
+ * This class reads the stored games that the command line tools learn
+ * from (PositionExporter.java, ai/OpeningBook.java). A source is either a
+ * GameArchive file (ending in .archive) or a game database read by
+ * GameImporter.
+ */
+public final class GameSources {
+
+    // no instances
+    private GameSources() {
+    }
+
+    /**
+     * forEachGame passes every game of the sources on a command line to a
+     * consumer.
+     *
+     * Games of a database are read by several threads, so the consumer
+     * has to be thread-safe. The game passed to it may be reused for the
+     * next game once it returns.
+     *
+     * @param args     command line arguments
+     * @param from     index of the first source in args
+     * @param consumer called with each game
+     */
+    public static void forEachGame(String[] args, int from, Consumer<Othello> consumer) {
+        if ((args == null) || (consumer == null)) {
+            System.out.println("Null input");
+            throw new IllegalArgumentException();
+        }
+        for (int i = from; i < args.length; i++) {
+            forEachGame(args[i], consumer);
+        }
+    }
+
+    /**
+     * forEachGame passes every game of a source to a consumer, as above.
+     *
+     * @param source   name of an archive or database file
+     * @param consumer called with each game
+     */
+    public static void forEachGame(String source, Consumer<Othello> consumer) {
+        if ((source == null) || (consumer == null)) {
+            System.out.println("Null input");
+            throw new IllegalArgumentException();
+        }
+        if (source.endsWith(".archive")) {
+            GameArchive archive = new GameArchive(source, false);
+            Othello o = new Othello();
+            for (long id = 0; id < archive.size(); id++) {
+                archive.read(id, o);
+                consumer.accept(o);
+            }
+            archive.close();
+        } else {
+            int threads = Runtime.getRuntime().availableProcessors();
+            new GameImporter(threads).importFile(source, new GameImporter.Listener() {
+                @Override
+                public void gameImported(long index, Othello game) {
+                    consumer.accept(game);
+                }
+
+                @Override
+                public void gameRejected(long index, int ply, String reason) {
+                    System.out.println("game " + index + ", move " + (ply + 1) + ": " + reason);
+                }
+            });
+        }
+    }
+
+}
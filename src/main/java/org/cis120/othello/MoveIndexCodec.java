@@ -0,0 +1,236 @@
+package org.cis120.othello;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class writes Othello games in a compressed binary format for
+ * archiving, about 25 bytes for a full game. Instead of the square of each
+ * move, it stores the index of the move in the list of legal moves at that
+ * ply (in square order), so the game can only be read back by replaying it
+ * from the starting position.
+ *
+ * A record holds:
+ * - 1 byte: the number of moves n
+ * - the n move indices as a bit string, first bit first, padded with zero
+ *   bits to a whole number of bytes
+ *
+ * An index out of k legal moves takes about log2(k) bits, using a
+ * truncated binary code: with b = floor(log2(k)) and u = 2^(b+1) - k, the
+ * first u indices take b bits and the others b + 1 bits. Forced moves
+ * (k = 1) take no bits at all. Passes are not stored, since whether a
+ * player has to pass follows from the position.
+ *
+ * Only games played from the starting position can be written, and the
+ * side to move and whether the game is over are worked out while
+ * replaying, the same way playTurn does.
+ */
+public final class MoveIndexCodec {
+
+    // largest number of moves in a game
+    private static final int MAX_MOVES = 60;
+
+    // largest record a game can produce (at most 6 bits per move)
+    public static final int MAX_SIZE = 1 + (MAX_MOVES * 6 + 7) / 8;
+
+    // no instances
+    private MoveIndexCodec() {
+    }
+
+    /**
+     * encode writes a game as a new record.
+     *
+     * @param o game to encode
+     * @return the record
+     * @throws IllegalArgumentException if the game was not played from the
+     *                                  starting position
+     */
+    public static byte[] encode(Othello o) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_SIZE);
+        encode(o, out);
+        byte[] data = new byte[out.position()];
+        out.flip();
+        out.get(data);
+        return data;
+    }
+
+    /**
+     * encode writes a game at the current position of a buffer, moving the
+     * position past the record.
+     *
+     * @param o   game to encode
+     * @param out buffer with at least MAX_SIZE bytes remaining
+     * @throws IllegalArgumentException if the game was not played from the
+     *                                  starting position
+     */
+    public static void encode(Othello o, ByteBuffer out) {
+        int n = o.getNumTurns();
+        if (n > MAX_MOVES) {
+            throw new IllegalArgumentException();
+        }
+        out.put((byte) n);
+
+        long black = Bitboards.START_BLACK;
+        long white = Bitboards.START_WHITE;
+        boolean p1 = true;
+        boolean over = false;
+        long bits = 0L;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int sq = o.getMoveSquare(i);
+            int color = o.getMoveColor(i);
+            if (over || (color != (p1 ? 1 : 2))) {
+                throw new IllegalArgumentException();
+            }
+            long own = p1 ? black : white;
+            long opp = p1 ? white : black;
+            long moves = Bitboards.legalMoves(own, opp);
+            long placed = 1L << sq;
+            if ((moves & placed) == 0) {
+                throw new IllegalArgumentException();
+            }
+
+            // index of the move among the legal moves, in square order
+            int index = Long.bitCount(moves & (placed - 1));
+            int k = Long.bitCount(moves);
+            int b = 31 - Integer.numberOfLeadingZeros(k);
+            int u = (1 << (b + 1)) - k;
+            int code;
+            int length;
+            if (index < u) {
+                code = index;
+                length = b;
+            } else {
+                code = index + u;
+                length = b + 1;
+            }
+            bits = (bits << length) | code;
+            count += length;
+            while (count >= 8) {
+                count -= 8;
+                out.put((byte) (bits >>> count));
+            }
+
+            long f = Bitboards.flips(own, opp, sq);
+            own |= placed | f;
+            opp &= ~f;
+            black = p1 ? own : opp;
+            white = p1 ? opp : own;
+
+            // the other player moves next unless they have to pass
+            if (Bitboards.legalMoves(opp, own) != 0) {
+                p1 = !p1;
+            } else if (Bitboards.legalMoves(own, opp) == 0) {
+                over = true;
+            }
+        }
+        if (count > 0) {
+            out.put((byte) (bits << (8 - count)));
+        }
+
+        // the moves have to lead to the game as it is
+        if ((black != o.getBlackBoard()) || (white != o.getWhiteBoard())
+                || (p1 != o.getCurrentPlayer()) || (over != o.getGameOver())) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * decode reads a record into a game, replacing its state.
+     *
+     * @param data record to read
+     * @param o    game to read into
+     * @throws IllegalArgumentException if the data is not a valid record
+     */
+    public static void decode(byte[] data, Othello o) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        decode(in, o);
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * decode reads a record at the current position of a buffer into a
+     * game, replacing its state and moving the position past the record.
+     *
+     * @param in buffer holding the record
+     * @param o  game to read into
+     * @throws IllegalArgumentException if the data is not a valid record
+     */
+    public static void decode(ByteBuffer in, Othello o) {
+        try {
+            int n = in.get() & 0xFF;
+            if (n > MAX_MOVES) {
+                throw new IllegalArgumentException();
+            }
+            byte[] squares = new byte[n];
+            byte[] colors = new byte[n];
+
+            long black = Bitboards.START_BLACK;
+            long white = Bitboards.START_WHITE;
+            boolean p1 = true;
+            boolean over = false;
+            int bits = 0;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                long own = p1 ? black : white;
+                long opp = p1 ? white : black;
+                long moves = Bitboards.legalMoves(own, opp);
+                if (over) {
+                    throw new IllegalArgumentException();
+                }
+
+                int k = Long.bitCount(moves);
+                int b = 31 - Integer.numberOfLeadingZeros(k);
+                int u = (1 << (b + 1)) - k;
+                // read b bits, then one more if they are not below u
+                if (count < b) {
+                    bits = (bits << 8) | (in.get() & 0xFF);
+                    count += 8;
+                }
+                count -= b;
+                int index = (bits >>> count) & ((1 << b) - 1);
+                if (index >= u) {
+                    if (count == 0) {
+                        bits = (bits << 8) | (in.get() & 0xFF);
+                        count += 8;
+                    }
+                    count--;
+                    index = ((index << 1) | ((bits >>> count) & 1)) - u;
+                }
+                bits &= (1 << count) - 1;
+
+                // the index-th legal move in square order
+                for (int j = 0; j < index; j++) {
+                    moves &= moves - 1;
+                }
+                int sq = Long.numberOfTrailingZeros(moves);
+                squares[i] = (byte) sq;
+                colors[i] = (byte) (p1 ? 1 : 2);
+
+                long placed = 1L << sq;
+                long f = Bitboards.flips(own, opp, sq);
+                own |= placed | f;
+                opp &= ~f;
+                black = p1 ? own : opp;
+                white = p1 ? opp : own;
+
+                if (Bitboards.legalMoves(opp, own) != 0) {
+                    p1 = !p1;
+                } else if (Bitboards.legalMoves(own, opp) == 0) {
+                    over = true;
+                }
+            }
+            // the padding bits are zero
+            if (bits != 0) {
+                throw new IllegalArgumentException();
+            }
+            o.restore(black, white, p1, over, squares, colors, n);
+        } catch (BufferUnderflowException e) {
+            // the record was cut short
+            throw new IllegalArgumentException();
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.cis120.othello;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class keeps a write-ahead journal of an Othello game, used by
+ * Othello.startJournal and Othello.resumeJournal. Instead of rewriting the
+ * whole game on every save, each successful playTurn and undo appends a
+ * single byte to the journal file, so saving a move takes the same time
+ * however long the game is.
+ *
+ * The journal file holds a snapshot of the game in the binary format of
+ * GameCodec.java, followed by one byte per change made after the snapshot:
+ * a move byte as in GameCodec (the square, with WHITE_MOVE set for white's
+ * moves), or UNDO. Every COMPACT_INTERVAL changes the journal is compacted:
+ * a new snapshot of the game is written to a temporary file which then
+ * replaces the journal, so the journal never grows far past the size of
+ * the game. A game is recovered by reading the snapshot and replaying the
+ * changes after it.
+ *
+ * Changes are written to the file straight away, so they survive the
+ * program crashing; they are forced to the disk when the journal is
+ * compacted or closed.
+ */
+final class MoveJournal implements Closeable {
+
+    // journal byte for an undo
+    static final int UNDO = 0x80;
+
+    // number of changes appended before the journal is compacted
+    static final int COMPACT_INTERVAL = 256;
+
+    private final Path path;
+    private final Path tmpPath;
+
+    // open journal file, appending after the snapshot and changes so far
+    private FileChannel channel;
+
+    // buffer for the byte being appended
+    private final ByteBuffer change;
+
+    // number of changes appended since the last snapshot
+    private int appended;
+
+    /**
+     * Constructor sets up a journal for a file, without writing to it.
+     *
+     * @param fileName name of the journal file
+     */
+    MoveJournal(String fileName) {
+        this.path = Paths.get(fileName);
+        this.tmpPath = Paths.get(fileName + ".tmp");
+        this.change = ByteBuffer.allocate(1);
+    }
+
+    /**
+     * compact replaces the journal with a snapshot of the game.
+     *
+     * @param o game to write
+     */
+    void compact(Othello o) {
+        try {
+            closeChannel();
+            FileChannel tmp = FileChannel.open(
+                    tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING
+            );
+            try {
+                ByteBuffer snapshot = ByteBuffer.wrap(GameCodec.encode(o));
+                while (snapshot.hasRemaining()) {
+                    tmp.write(snapshot);
+                }
+                tmp.force(false);
+            } finally {
+                tmp.close();
+            }
+            try {
+                Files.move(
+                        tmpPath, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE
+                );
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.channel = FileChannel.open(
+                    path, StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            );
+            this.appended = 0;
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * moveMade appends a move to the journal.
+     *
+     * @param sq    square of the added piece
+     * @param color of the added piece
+     * @param o     game the move was played in
+     */
+    void moveMade(int sq, int color, Othello o) {
+        if (color == 2) {
+            append(sq | GameCodec.WHITE_MOVE, o);
+        } else {
+            append(sq, o);
+        }
+    }
+
+    /**
+     * undoMade appends an undo to the journal.
+     *
+     * @param o game the move was undone in
+     */
+    void undoMade(Othello o) {
+        append(UNDO, o);
+    }
+
+    // appends a change, compacting the journal every COMPACT_INTERVAL changes
+    private void append(int b, Othello o) {
+        if (channel == null) {
+            throw new IllegalStateException();
+        }
+        change.clear();
+        change.put(0, (byte) b);
+        try {
+            while (change.hasRemaining()) {
+                channel.write(change);
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+        this.appended++;
+        if (this.appended >= COMPACT_INTERVAL) {
+            compact(o);
+        }
+    }
+
+    /**
+     * close forces the journal to the disk and closes it.
+     */
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+            closeChannel();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // closes the journal file if it is open
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * replay replaces the state of a game with the game in a journal file:
+     * the snapshot, followed by the changes made after it.
+     *
+     * @param fileName name of the journal file
+     * @param o        game to read into, which must not have a journal
+     * @return false if the journal file is empty
+     * @throws IllegalArgumentException if the file does not exist or is not
+     *                                  a valid journal
+     */
+    static boolean replay(String fileName, Othello o) {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(Paths.get(fileName));
+        } catch (NoSuchFileException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+        if (data.length == 0) {
+            return false;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(data);
+        GameCodec.decode(in, o);
+        while (in.hasRemaining()) {
+            int b = in.get() & 0xFF;
+            if (b == UNDO) {
+                if (o.getNumTurns() == 0) {
+                    throw new IllegalArgumentException();
+                }
+                o.undo();
+                continue;
+            }
+            // the move has to be legal and made by the player to move
+            boolean white = (b & GameCodec.WHITE_MOVE) != 0;
+            int sq = b & 0x3F;
+            if ((b > (GameCodec.WHITE_MOVE | 0x3F)) || (white == o.getCurrentPlayer())
+                    || !o.playTurn(sq >>> 3, sq & 7)) {
+                throw new IllegalArgumentException();
+            }
+        }
+        return true;
+    }
+
+}
@@ -1,40 +1,73 @@
 package org.cis120.othello;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.TreeMap;
-import java.util.Map;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
 
 /**
- * This class constructs an Othello object, which consists of a 2D array
- * representing the game board, the number of turns played, the current
- * player, a map of moves made (which maps added pieces to the pieces
- * that they overtake), an ordered list of added pieces, and whether or
- * not the game is over.
+ * This class constructs an Othello object, which consists of a pair of
+ * bitboards representing the pieces on the game board, the number of turns
+ * played, the current player, a history of the moves made (the square and
+ * color of each added piece and the pieces that it overtook), and whether
+ * or not the game is over.
  * 
  * When playing the game, the playTurn function is called to carry
  * out the logic needed that checks if a colored othello piece can be added
- * to that particular position. The class also keeps track of the most recent
- * game history (i.e. the current player, number of moves, board setup)
- * using File I/O through the save function. The class can revert back
- * to a previously saved state using the resume function. The class uses
- * a list and map in order to keep track of the history of moves in a game,
+ * to that particular position. Move generation uses the shift-and-mask
+ * functions in Bitboards.java, and the 2D array of game pieces returned by
+ * getBoard and getCell is a view over the bitboards. The class also keeps
+ * track of the most recent game history (i.e. the current player, number of
+ * moves, board setup) using File I/O through the save function, or in the
+ * compact binary format of GameCodec.java through saveBinary. The class
+ * can revert back to a previously saved state using the resume (or
+ * resumeBinary) function. For long games, startJournal keeps an append-only
+ * journal of the moves instead (see MoveJournal.java), which resumeJournal
+ * reads back after a crash.
+ * A game made with the no-argument constructor is kept only in memory and
+ * does not touch the disk until a SavePolicy (see SavePolicy.java) or a
+ * file name is given; the constructor taking a file name clears that save
+ * file, as reset(fileName) does.
+ * The history of moves is kept in preallocated primitive arrays, one entry
+ * per turn, so that playTurn and undo create no objects besides the
+ * immutable Position (see Position.java) they publish for other threads,
  * allowing for a user to undo their moves up until they reach the starting
- * state of an othello game. The class can also check for a winning condition
- * through the checkWinner function.
+ * state of an othello game. getMoves and getAddedPieces build the history as a map
+ * and list of game pieces when asked. The class can also check
+ * for a winning condition through the checkWinner function.
  */
 
 public class Othello {
 
-    // 8 x 8 2D arrau to replicate the board
+    // 8 x 8 2D array of game pieces that read and write the bitboards,
+    // created the first time it is used
     private GamePiece[][] board;
 
+    // bitboards for the black (player 1) and white (player 2) pieces
+    private long black;
+    private long white;
+
+    // marks a cached legal move mask that has not been computed yet
+    private static final long UNKNOWN = -1L;
+
+    /*
+     * legal moves for each color in the current position, computed on
+     * first use and cleared whenever the bitboards change
+     */
+    private long blackMoves;
+    private long whiteMoves;
+
+    // Zobrist hash of the pieces on the board, see Zobrist.java
+    private long hashKey;
+
     // number of turns played
     private int numTurns;
 
@@ -45,21 +78,44 @@ public class Othello {
     private boolean gameOver;
 
     /*
-     * moves made in the game storing the added game piece as keys
-     * and the pieces that were overtaken by them as values
+     * immutable snapshot of the current position, replaced after every
+     * change so that other threads can read it without locking
+     */
+    private volatile Position position;
+
+    // number of moves the history has room for before it has to grow
+    private static final int HISTORY_SIZE = 64;
+
+    /*
+     * history of moves made in the game, indexed by turn: the square and
+     * color of the added piece, and the pieces it overtook as a bitboard
      */
-    private TreeMap<GamePiece, LinkedList<GamePiece>> movesMade;
+    private byte[] moveSquares;
+    private byte[] moveColors;
+    private long[] moveFlips;
+
+    // journal that every move and undo is appended to, or null
+    private MoveJournal journal;
+
+    // where save() and resume() keep the game
+    private SavePolicy savePolicy;
 
-    // List of pieces added to the game in order of addition
-    private LinkedList<GamePiece> addedPieces;
+    /**
+     * Constructor sets up game state in memory, without a save file.
+     */
+    public Othello() {
+        this.savePolicy = SavePolicy.NONE;
+        reset();
+    }
 
     /**
-     * Constructor sets up game state.
+     * Constructor sets up game state, saved on demand to the given file.
      * 
      * @param String name of the save file to clear
      */
     public Othello(String fileName) {
         reset(fileName);
+        this.savePolicy = SavePolicy.onDemand(fileName);
     }
 
     /**
@@ -76,11 +132,17 @@ public class Othello {
      * @return whether the turn was successful
      */
     public boolean playTurn(int r, int c) {
-        // piecesOvertaken by the added piece
-        LinkedList<GamePiece> piecesOvertaken = new LinkedList<GamePiece>();
+        // check for bounds of the grid
+        if ((r < 0) || (r > 7) || (c < 0) || (c > 7)) {
+            System.out.println("invalid positions");
+            throw new IllegalArgumentException();
+        }
+
+        int sq = Bitboards.square(r, c);
+        long placed = 1L << sq;
 
         // check if spot is empty
-        if (board[r][c].getColor() != 0) {
+        if (((black | white) & placed) != 0) {
             System.out.println("not empty spot");
             return false;
         }
@@ -91,684 +153,184 @@ public class Othello {
             return false;
         }
 
+        // pieces overtaken by the added piece
+        long flipped;
+        int color;
         if (player1) {
-            LinkedList<GamePiece> piecesToOvertake = canOvertake(r, c, 1);
-            if (piecesToOvertake.isEmpty()) {
-                System.out.println("No pieces to overtake");
-                return false;
-            } else {
-                piecesOvertaken = overtake(piecesToOvertake, 1);
-                // add colored piece to board
-                board[r][c].setColor(1);
-            }
+            color = 1;
+            flipped = Bitboards.flips(black, white, sq);
+        } else {
+            color = 2;
+            flipped = Bitboards.flips(white, black, sq);
+        }
+
+        if (flipped == 0) {
+            System.out.println("No pieces to overtake");
+            return false;
+        }
 
+        // add colored piece to board and overtake the flipped pieces
+        if (player1) {
+            black |= placed | flipped;
+            white &= ~flipped;
         } else {
-            LinkedList<GamePiece> piecesToOvertake = canOvertake(r, c, 2);
-            if (piecesToOvertake.isEmpty()) {
-                System.out.println("No pieces to overtake");
-                return false;
-            } else {
-                piecesOvertaken = overtake(piecesToOvertake, 2);
-                // add colored piece to board
-                board[r][c].setColor(2);
-            }
+            white |= placed | flipped;
+            black &= ~flipped;
         }
+        this.hashKey ^= Zobrist.pieceKey(color, sq) ^ Zobrist.flipKey(flipped);
+        boardChanged();
 
-        // increase number of turns
-        this.numTurns++;
-        // add game piece to list of added pieces
-        this.addedPieces.add(this.board[r][c]);
-        // add game piece and overtaken pieces to map
-        this.movesMade.put(this.board[r][c], piecesOvertaken);
+        // record the move in the history and increase number of turns
+        pushMove(sq, color, flipped);
         // no winner yet
         if (checkWinner() == 0) {
-            // switch players
-            player1 = !player1;
+            // switch players, unless the other player has to pass
+            if (checkForMoves(3 - color)) {
+                player1 = !player1;
+            }
         } else {
             this.gameOver = true;
         }
+        publish();
 
+        if (journal != null) {
+            journal.moveMade(sq, color, this);
+        }
         return true;
     }
 
     /**
-     * canOvertake returns a list of game pieces that can be overtaken
-     * by the addition of a new game piece specified by its
-     * row, column, and color.
-     * If there are no pieces on the board that can be overtaken,
-     * return an empty list.
+     * pushMove adds a move to the end of the history and increases the
+     * number of turns, growing the history if it is full.
      *
-     * @param r     row of new piece
-     * @param c     column of new piece
-     * @param color of new piece
-     * @return list of pieces that will be overtaken by the addition of
-     *         the new piece.
+     * @param sq      square of the added piece
+     * @param color   of the added piece
+     * @param flipped bitboard of the pieces it overtook
      */
-    public LinkedList<GamePiece> canOvertake(int r, int c, int color) {
-
-        // List of pieces to overtake that may contain duplicates
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-
-        // List of pieces to return with no duplicates
-        LinkedList<GamePiece> noDuplicates = new LinkedList<GamePiece>();
-
-        // same column
-        LinkedList<GamePiece> topCol = canOvertakeTopCol(r, c, color);
-        LinkedList<GamePiece> botCol = canOvertakeBotCol(r, c, color);
-
-        // same row
-        LinkedList<GamePiece> leftRow = canOvertakeLeftRow(r, c, color);
-        LinkedList<GamePiece> rightRow = canOvertakeRightRow(r, c, color);
-
-        // diagonals
-        LinkedList<GamePiece> topLeftDiag = canOvertakeTopLeft(r, c, color);
-        LinkedList<GamePiece> topRightDiag = canOvertakeTopRight(r, c, color);
-        LinkedList<GamePiece> botRightDiag = canOvertakeBotRight(r, c, color);
-        LinkedList<GamePiece> botLeftDiag = canOvertakeBotLeft(r, c, color);
-
-        // add to list
-        piecesToOvertake.addAll(topCol);
-        piecesToOvertake.addAll(botCol);
-        piecesToOvertake.addAll(leftRow);
-        piecesToOvertake.addAll(rightRow);
-        piecesToOvertake.addAll(topLeftDiag);
-        piecesToOvertake.addAll(topRightDiag);
-        piecesToOvertake.addAll(botRightDiag);
-        piecesToOvertake.addAll(botLeftDiag);
-
-        // check for duplicates
-        Iterator<GamePiece> iter = piecesToOvertake.iterator();
-        while (iter.hasNext()) {
-            GamePiece g = iter.next();
-            if (!noDuplicates.contains(g)) {
-                noDuplicates.add(g);
-            }
+    private void pushMove(int sq, int color, long flipped) {
+        int n = this.numTurns;
+        if (n == moveSquares.length) {
+            // only possible after pieces are removed through the board cells
+            moveSquares = Arrays.copyOf(moveSquares, 2 * n);
+            moveColors = Arrays.copyOf(moveColors, 2 * n);
+            moveFlips = Arrays.copyOf(moveFlips, 2 * n);
         }
-
-        // return list
-        return noDuplicates;
-
+        moveSquares[n] = (byte) sq;
+        moveColors[n] = (byte) color;
+        moveFlips[n] = flipped;
+        this.numTurns = n + 1;
     }
 
     /**
-     * piecesInBetween is a helper function that returns the list of
-     * pieces that can be overtaken in between a given GamePiece and
-     * a target location in the grid.
-     * Returns an empty list if there are no such pieces.
+     * cells returns the 2D array of game pieces, creating it the first time
+     * it is needed. The cells are views over the bitboards, so they are
+     * only created once and most games (such as those played by the search)
+     * never need them.
      *
-     * @param r         row of the target location
-     * @param c         column of the target location
-     * @param gp        given GamePiece with the same color as the target
-     * @param direction of iteration between the two pieces
-     * @param color     to switch to
-     * @return linkedList of game pieces that can be overtaken
-     * 
+     * @return 8 x 8 array of cells
      */
-
-    public LinkedList<GamePiece> piecesInBetween(
-            int r, int c, int color,
-            GamePiece gp, String direction
-    ) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-
-        // top Column
-        if (direction.equals("TopCol")) {
-            // get row of the same colored piece
-            int row = gp.getX();
-            // iterate through the pieces in between
-            for (int i = row + 1; i < r; i++) {
-                // if there empty spaces in between return empty
-                GamePiece b = board[i][c];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else if (b.getColor() != color) {
-                    piecesToOvertake.add(b);
-                }
-            }
-        }
-
-        // bottom Column
-        if (direction.equals("BotCol")) {
-            // get row of the same colored piece
-            int row = gp.getX();
-            // iterate through the pieces in between
-            for (int i = r + 1; i < row; i++) {
-                // if there empty spaces in between return empty
-                GamePiece b = board[i][c];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else if (b.getColor() != color) {
-                    piecesToOvertake.add(b);
-                }
-            }
-
-        }
-
-        // left Row
-        if (direction.equals("LeftRow")) {
-            // get column of the same colored piece
-            int column = gp.getY();
-            for (int i = column + 1; i < c; i++) {
-                // if there empty spaces in between return empty
-                GamePiece b = board[r][i];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else if (b.getColor() != color) {
-                    piecesToOvertake.add(b);
-                }
-            }
-        }
-
-        // right Row
-        if (direction.equals("RightRow")) {
-            // get column of the same colored piece
-            int column = gp.getY();
-
-            for (int i = c + 1; i < column; i++) {
-                // if there empty spaces in between return empty
-                GamePiece b = board[r][i];
-
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else if (b.getColor() != color) {
-                    piecesToOvertake.add(b);
-                }
-            }
-        }
-
-        // top Left
-        if (direction.equals("TopLeft")) {
-            // get row and column of the same colored piece
-            int row = gp.getX();
-            int column = gp.getY();
-
-            // iterating
-            int i = row + 1;
-            int j = column + 1;
-
-            // check if there is a piece with the same color
-            while ((i < r) && (j < c)) {
-                GamePiece b = board[i][j];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else {
-                    if (b.getColor() != color) {
-                        piecesToOvertake.add(b);
-                    }
-                    // move column and row forward by one
-                    i++;
-                    j++;
-                }
-            }
-        }
-
-        // bottom right
-        if (direction.equals("BotRight")) {
-            // get row and column of the same colored piece
-            int row = gp.getX();
-            int column = gp.getY();
-
-            // iterating
-            int i = r + 1;
-            int j = c + 1;
-
-            // check if there is a piece with the same color
-            while ((i < row) && (j < column)) {
-                GamePiece b = board[i][j];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else {
-                    if (b.getColor() != color) {
-                        piecesToOvertake.add(b);
-                    }
-                    // move column and row forward by one
-                    i++;
-                    j++;
-                }
-            }
-        }
-
-        // top right
-        if (direction.equals("TopRight")) {
-            // get row and column of the same colored piece
-            int row = gp.getX();
-            int column = gp.getY();
-
-            // iterating
-            int i = row + 1;
-            int j = column - 1;
-
-            // check if there is a piece with the same color
-            while ((i < r) && (j > c)) {
-                GamePiece b = board[i][j];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else {
-                    if (b.getColor() != color) {
-                        piecesToOvertake.add(b);
-                    }
-                    // move row down and column back by one
-                    i++;
-                    j--;
-                }
-            }
-        }
-
-        // bottom left
-        if (direction.equals("BotLeft")) {
-            // get row and column of the same colored piece
-            int row = gp.getX();
-            int column = gp.getY();
-
-            // iterating
-            int i = r + 1;
-            int j = c - 1;
-
-            // check if there is a piece with the same color
-            while ((i < row) && (j > column)) {
-                GamePiece b = board[i][j];
-                if (b.getColor() == 0) {
-                    return new LinkedList<GamePiece>();
-                } else {
-                    if (b.getColor() != color) {
-                        piecesToOvertake.add(b);
-                    }
-                    // move row down and column back by one
-                    i++;
-                    j--;
+    private GamePiece[][] cells() {
+        if (this.board == null) {
+            GamePiece[][] cells = new GamePiece[8][8];
+            for (int i = 0; i < 8; i++) {
+                for (int j = 0; j < 8; j++) {
+                    cells[i][j] = new Cell(i, j);
                 }
             }
+            this.board = cells;
         }
-
-        // return list
-        return piecesToOvertake;
-    }
-
-    /**
-     * canOvertakeTopCol returns the list of pieces that can be overtaken
-     * by a newly added piece in the same column above the added piece.
-     * Returns an empty list if there are no such pieces.
-     *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
-     * 
-     */
-    public LinkedList<GamePiece> canOvertakeTopCol(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // check if there is a piece with the same color
-        for (int i = 0; i < r; i++) {
-            if (board[i][c].getColor() == color) {
-                sameColorPieces.add(board[i][c]);
-            }
-        }
-
-        // no pieces of same color in the column, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
-        } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(r, c, color, gp, "TopCol");
-                piecesToOvertake.addAll(piecesInBetween);
-
-            }
-
-        }
-        return piecesToOvertake;
-    }
-
-    /**
-     * canOvertakeBotCol returns the list of pieces that can be overtaken
-     * by a newly added piece in the same column below the added piece.
-     * Returns an empty list if there are no such pieces.
-     *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
-     */
-
-    public LinkedList<GamePiece> canOvertakeBotCol(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // check if there is a piece with the same color
-        for (int i = r + 1; i < board.length; i++) {
-            if (board[i][c].getColor() == color) {
-                sameColorPieces.add(board[i][c]);
-            }
-        }
-
-        // no pieces of same color in the column, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
-        } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(r, c, color, gp, "BotCol");
-                piecesToOvertake.addAll(piecesInBetween);
-
-            }
-
-        }
-        return piecesToOvertake;
-
+        return this.board;
     }
 
     /**
-     * canOvertakeLeftRow returns the list of pieces that can be overtaken
-     * by a newly added piece in the same row to the left of the added piece.
-     * Returns an empty list if there are no such pieces.
-     *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
+     * boardChanged clears the cached legal moves after the bitboards have
+     * been modified.
      */
-
-    public LinkedList<GamePiece> canOvertakeLeftRow(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // check if there is a piece with the same color
-        for (int i = 0; i < c; i++) {
-            if (board[r][i].getColor() == color) {
-                sameColorPieces.add(board[r][i]);
-            }
-        }
-
-        // no pieces of same color in the row, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
-        } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(r, c, color, gp, "LeftRow");
-                piecesToOvertake.addAll(piecesInBetween);
-            }
-
-        }
-
-        return piecesToOvertake;
+    private void boardChanged() {
+        this.blackMoves = UNKNOWN;
+        this.whiteMoves = UNKNOWN;
     }
 
     /**
-     * canOvertakeRightRow returns the list of pieces that can be overtaken
-     * by a newly added piece in the same row to the right of the added piece.
-     * Returns an empty list if there are no such pieces.
-     *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
+     * publish replaces the snapshot returned by getPosition with one of the
+     * current position.
      */
-
-    public LinkedList<GamePiece> canOvertakeRightRow(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // check if there is a piece with the same color
-        for (int i = c + 1; i < board[0].length; i++) {
-            if (board[r][i].getColor() == color) {
-                sameColorPieces.add(board[r][i]);
-            }
-        }
-
-        // no pieces of same color in the row, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
-        } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(
-                        r, c, color, gp, "RightRow"
-                );
-                piecesToOvertake.addAll(piecesInBetween);
-            }
-
-        }
-
-        return piecesToOvertake;
+    private void publish() {
+        this.position = new Position(black, white, player1, numTurns);
     }
 
     /**
-     * canOvertakeTopLeft returns the list of pieces that can be overtaken
-     * by a newly added piece in the same diagonal to the top left
-     * of the added piece.
-     * Returns an empty list if there are no such pieces.
+     * getLegalMoves returns every square where the given color can play
+     * as a bitboard, with bit (8 * row + column) set for each legal move.
+     * The result is computed once per position and cached until the next
+     * playTurn, undo, resume or reset.
      *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
+     * @param color of the given player (1 for black or 2 for white)
+     * @return bitboard of legal moves
      */
-
-    public LinkedList<GamePiece> canOvertakeTopLeft(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // starting column and row
-        int i = r - 1;
-        int j = c - 1;
-
-        // check if there is a piece with the same color
-        while ((i > -1) && (j > -1)) {
-            if (board[i][j].getColor() == color) {
-                sameColorPieces.add(board[i][j]);
+    public long getLegalMoves(int color) {
+        if (color == 1) {
+            if (blackMoves == UNKNOWN) {
+                blackMoves = Bitboards.legalMoves(black, white);
             }
-            // move row and column by 1
-            i--;
-            j--;
-
-        }
-
-        // no pieces of same color in the diagonal, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
+            return blackMoves;
         } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(r, c, color, gp, "TopLeft");
-                piecesToOvertake.addAll(piecesInBetween);
+            if (whiteMoves == UNKNOWN) {
+                whiteMoves = Bitboards.legalMoves(white, black);
             }
-
+            return whiteMoves;
         }
-
-        return piecesToOvertake;
     }
 
     /**
-     * canOvertakeBotRight returns the list of pieces that can be overtaken
-     * by a newly added piece in the same diagonal to the bottom right
-     * of the added piece.
-     * Returns an empty list if there are no such pieces.
+     * toPieces is a helper function that turns a bitboard into a list of
+     * game pieces of the given color, in board order.
      *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
+     * @param b     bitboard of pieces
+     * @param color of the pieces
+     * @return linkedList of game pieces
      */
-
-    public LinkedList<GamePiece> canOvertakeBotRight(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // starting column and row
-        int i = r + 1;
-        int j = c + 1;
-
-        // check if there is a piece with the same color
-        while ((i < 8) && (j < 8)) {
-            if (board[i][j].getColor() == color) {
-                sameColorPieces.add(board[i][j]);
-            }
-            // move row and column by 1
-            i++;
-            j++;
-
-        }
-
-        // no pieces of same color in the diagonal, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
-        } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(
-                        r, c, color, gp, "BotRight"
-                );
-                piecesToOvertake.addAll(piecesInBetween);
-            }
-
+    private static LinkedList<GamePiece> toPieces(long b, int color) {
+        LinkedList<GamePiece> pieces = new LinkedList<GamePiece>();
+        while (b != 0) {
+            int sq = Long.numberOfTrailingZeros(b);
+            pieces.add(new GamePiece(color, sq >>> 3, sq & 7));
+            b &= b - 1;
         }
-
-        return piecesToOvertake;
+        return pieces;
     }
 
     /**
-     * canOvertakeTopRight returns the list of pieces that can be overtaken
-     * by a newly added piece in the same diagonal to the top right
-     * of the added piece.
-     * Returns an empty list if there are no such pieces.
+     * canOvertake returns a list of game pieces that can be overtaken
+     * by the addition of a new game piece specified by its
+     * row, column, and color.
+     * If there are no pieces on the board that can be overtaken,
+     * return an empty list.
      *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
+     * @param r     row of new piece
+     * @param c     column of new piece
+     * @param color of new piece
+     * @return list of pieces that will be overtaken by the addition of
+     *         the new piece.
      */
-
-    public LinkedList<GamePiece> canOvertakeTopRight(int r, int c, int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // starting column and row
-        int i = r - 1;
-        int j = c + 1;
-
-        // check if there is a piece with the same color
-        while ((i > -1) && (j < 8)) {
-            if (board[i][j].getColor() == color) {
-                sameColorPieces.add(board[i][j]);
-            }
-            // move row up by 1 and column over by 1
-            i--;
-            j++;
-
-        }
-
-        // no pieces of same color in the diagonal, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
+    public LinkedList<GamePiece> canOvertake(int r, int c, int color) {
+        // bitboard of the pieces that would flip
+        long flipped;
+        if (color == 1) {
+            flipped = Bitboards.flips(black, white, Bitboards.square(r, c));
         } else {
-            // iterate over the list of same color pieces
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(
-                        r, c, color, gp, "TopRight"
-                );
-                piecesToOvertake.addAll(piecesInBetween);
-            }
-
+            flipped = Bitboards.flips(white, black, Bitboards.square(r, c));
         }
 
-        return piecesToOvertake;
-    }
-
-    /**
-     * canOvertakeBotLeft returns the list of pieces that can be overtaken
-     * by a newly added piece in the same diagonal to the bottom left
-     * of the added piece.
-     * Returns an empty list if there are no such pieces.
-     *
-     * @param r     row to play in
-     * @param c     column to play in
-     * @param color to switch to
-     * @return linkedList of game pieces that can be overtaken
-     */
-
-    public LinkedList<GamePiece> canOvertakeBotLeft(int r, int c, int color) {
-
-        // List of pieces to return
+        // List of pieces to return, in board order with no duplicates
         LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of pieces with the same color
-        LinkedList<GamePiece> sameColorPieces = new LinkedList<GamePiece>();
-
-        // starting column and row
-        int i = r + 1;
-        int j = c - 1;
-
-        // check if there is a piece with the same color
-        while ((i < 8) && (j > -1)) {
-            if (board[i][j].getColor() == color) {
-                sameColorPieces.add(board[i][j]);
-            }
-            // move row down by 1 and column back by 1
-            i++;
-            j--;
-
-        }
-
-        // no pieces of same color in the diagonal, cannot overtake
-        if (sameColorPieces.isEmpty()) {
-            return new LinkedList<GamePiece>();
-        } else {
-            Iterator<GamePiece> iter = sameColorPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get pieces in between
-                LinkedList<GamePiece> piecesInBetween = piecesInBetween(r, c, color, gp, "BotLeft");
-                piecesToOvertake.addAll(piecesInBetween);
-            }
-
+        while (flipped != 0) {
+            int sq = Long.numberOfTrailingZeros(flipped);
+            piecesToOvertake.add(cells()[sq >>> 3][sq & 7]);
+            flipped &= flipped - 1;
         }
 
+        // return list
         return piecesToOvertake;
     }
 
@@ -807,40 +369,8 @@ public class Othello {
      * @return true if there are moves left, false otherwise.
      */
     public boolean checkForMoves(int color) {
-
-        // List of pieces to return
-        LinkedList<GamePiece> piecesToOvertake = new LinkedList<GamePiece>();
-        // List of empty spots left on the board
-        LinkedList<GamePiece> emptySpots = new LinkedList<GamePiece>();
-
-        // iterate through the board
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j].getColor() == 0) {
-                    emptySpots.add(board[i][j]);
-                }
-            }
-        }
-
-        // no empty spots left to fill, return false
-        if (emptySpots.isEmpty()) {
-            return false;
-        } else {
-            // iterate through the list of empty spots
-            Iterator<GamePiece> iter = emptySpots.iterator();
-            while (iter.hasNext()) {
-                GamePiece gp = iter.next();
-                // get the row and column of the empty spot
-                int row = gp.getX();
-                int column = gp.getY();
-                // add pieces that can be overtaken
-                piecesToOvertake.addAll(canOvertake(row, column, color));
-            }
-
-        }
-
-        // if there are pieces left to overtake, then there are moves left
-        return (!piecesToOvertake.isEmpty());
+        // any legal move means there are moves left
+        return getLegalMoves(color) != 0;
     }
 
     /**
@@ -851,20 +381,9 @@ public class Othello {
      */
     public int checkWinner() {
         // counters
-        int blackCount = 0;
-        int whiteCount = 0;
-        int emptyCount = 0;
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j].getColor() == 1) {
-                    blackCount++;
-                } else if (board[i][j].getColor() == 2) {
-                    whiteCount++;
-                } else {
-                    emptyCount++;
-                }
-            }
-        }
+        int blackCount = Bitboards.count(black);
+        int whiteCount = Bitboards.count(white);
+        int emptyCount = 64 - blackCount - whiteCount;
 
         // no black pieces, white wins
         if (blackCount == 0) {
@@ -955,6 +474,7 @@ public class Othello {
      */
     public void printGameState() {
         System.out.println("\n\nTurn " + numTurns + ":\n");
+        GamePiece[][] board = cells();
         for (int i = 0; i < board.length; i++) {
             for (int j = 0; j < board[i].length; j++) {
                 System.out.print(board[i][j].getColor());
@@ -969,30 +489,13 @@ public class Othello {
     }
 
     /**
-     * reset (re-)sets the game state to start a new game.
+     * reset (re-)sets the game state to start a new game, clearing the
+     * contents of the save file.
      * 
      * @param name of save file to clear
      */
     public void reset(String fileName) {
-        this.board = new GamePiece[8][8];
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                // create new board full of empty spots
-                this.board[i][j] = new GamePiece(0, i, j);
-            }
-        }
-        // set the center four squares of the board
-        this.board[3][3].setColor(2);
-        this.board[4][4].setColor(2);
-        this.board[3][4].setColor(1);
-        this.board[4][3].setColor(1);
-
-        // reset the fields
-        this.numTurns = 0;
-        this.player1 = true;
-        this.gameOver = false;
-        this.movesMade = new TreeMap<GamePiece, LinkedList<GamePiece>>();
-        this.addedPieces = new LinkedList<GamePiece>();
+        reset();
 
         // clear the contents of the save file
         try {
@@ -1018,129 +521,112 @@ public class Othello {
     }
 
     /**
-     * saves the game state to the save file
-     * 
-     * @param name of save file
+     * reset (re-)sets the game state to start a new game, without touching
+     * any files other than the journal of a journaled game.
      */
-    public void save(String fileName) {
-
-        try {
-            // create FileWriter that overwrite the file when called
-            FileWriter f = new FileWriter(fileName, false);
-            BufferedWriter bw = new BufferedWriter(f);
-
-            // write the number of turns
-            String nT = Integer.toString(this.numTurns);
-            bw.write(nT);
-            bw.newLine();
-
-            // write the current player
-            if (player1) {
-                bw.write("Current player: player 1 (black)");
-                bw.newLine();
-            } else {
-                bw.write("Current player: player 2 (white)");
-                bw.newLine();
-            }
-
-            // write whether or not the game is over
-            if (gameOver) {
-                bw.write("Game is over");
-                bw.newLine();
-            } else {
-                bw.write("Game is not over");
-                bw.newLine();
-            }
-
-            // iterate through the board
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    GamePiece gp = this.board[i][j];
-                    // write either 0, 1, or 2 to represent the piece color
-                    if (j == 7) {
-                        bw.write(gp.getColor() + " ");
-                        // next line
-                        bw.newLine();
-                    } else {
-                        bw.write(gp.getColor() + " ");
-                    }
-                }
-            }
+    public void reset() {
+        // the history is reused, so it is only created once
+        if (this.moveSquares == null) {
+            this.moveSquares = new byte[HISTORY_SIZE];
+            this.moveColors = new byte[HISTORY_SIZE];
+            this.moveFlips = new long[HISTORY_SIZE];
+        }
+        // set the center four squares of the board
+        this.black = Bitboards.START_BLACK;
+        this.white = Bitboards.START_WHITE;
+        this.hashKey = Zobrist.hash(black, white, true);
+        boardChanged();
 
-            // iterate through the added pieces
-            bw.write("added pieces in order");
-            bw.newLine();
+        // reset the fields
+        this.numTurns = 0;
+        this.player1 = true;
+        this.gameOver = false;
+        stateReplaced();
+    }
 
-            Iterator<GamePiece> iter = addedPieces.iterator();
-            while (iter.hasNext()) {
-                GamePiece g = iter.next();
+    /**
+     * sets where save() and resume() keep the game, as described in
+     * SavePolicy.java. A journaled game starts journaling straight away,
+     * replacing the contents of the journal file with the current game
+     * (use resumeJournal to recover a game from a journal instead).
+     * 
+     * @param policy save policy of the game
+     */
+    public void setSavePolicy(SavePolicy policy) {
+        if (policy == null) {
+            System.out.println("Null input: " + policy);
+            throw new IllegalArgumentException();
+        }
+        closeJournal();
+        this.savePolicy = policy;
+        if (policy.getMode() == SavePolicy.Mode.JOURNALED) {
+            MoveJournal j = new MoveJournal(policy.getFileName());
+            j.compact(this);
+            this.journal = j;
+        }
+    }
 
-                // row and column of the game piece (key)
-                String r = Integer.toString(g.getX());
-                String c = Integer.toString(g.getY());
-                String color = Integer.toString(g.getColor());
+    /**
+     * saves the game state as its save policy says: to the save file for
+     * ON_DEMAND, and nothing for JOURNALED since the journal is already up
+     * to date.
+     * 
+     * @throws IllegalStateException if the game has no save file
+     */
+    public void save() {
+        switch (savePolicy.getMode()) {
+            case ON_DEMAND:
+                save(savePolicy.getFileName());
+                break;
+            case JOURNALED:
+                break;
+            default:
+                System.out.println("no save file");
+                throw new IllegalStateException();
+        }
+    }
 
-                bw.write(r + c + color);
-                bw.newLine();
-            }
+    /**
+     * resumes the game state from the save file or journal of its save
+     * policy.
+     * 
+     * @throws IllegalStateException if the game has no save file
+     */
+    public void resume() {
+        switch (savePolicy.getMode()) {
+            case ON_DEMAND:
+                resume(savePolicy.getFileName());
+                break;
+            case JOURNALED:
+                resumeJournal(savePolicy.getFileName());
+                break;
+            default:
+                System.out.println("no save file");
+                throw new IllegalStateException();
+        }
+    }
 
-            // iterate through the map of moves made
-            bw.write("mapping added pieces to overtaken pieces");
-            bw.newLine();
-            for (Map.Entry<GamePiece, LinkedList<GamePiece>> entry :
-                movesMade.entrySet()) {
-                // get the key and value
-                GamePiece g = entry.getKey();
-                LinkedList<GamePiece> l = entry.getValue();
-
-                // row, column, color of the game piece (key)
-                String r = Integer.toString(g.getX());
-                String c = Integer.toString(g.getY());
-                String color = Integer.toString(g.getColor());
-
-                bw.write("added piece");
-                bw.newLine();
-                bw.write(r + c + color);
-                bw.newLine();
-                // number of overtaken pieces
-                String length = Integer.toString(l.size());
-                bw.write("number overtaken pieces: " + length);
-                bw.newLine();
-
-                // iterate through the list
-                Iterator<GamePiece> valIter = l.iterator();
-                while (valIter.hasNext()) {
-                    GamePiece p = valIter.next();
-                    // row, column, color of the game piece (value)
-                    String row = Integer.toString(p.getX());
-                    String column = Integer.toString(p.getY());
-                    String col = Integer.toString(p.getColor());
-                    bw.write(row + column + col);
-                    bw.newLine();
-                }
-                bw.write("end of entry");
-                bw.newLine();
-            }
+    /**
+     * saves the game state to the save file
+     * 
+     * @param name of save file
+     */
+    public void save(String fileName) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
 
-            // close file writer
-            bw.close();
+        try {
+            TextSaveFile.write(this, fileName);
+        } catch (FileSystemException e) {
+            // the file or its directory can't be written
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
         } catch (IOException e) {
-            // check if file doesn't exist
-            if (e.getClass() == FileNotFoundException.class) {
-                System.out.println("File Not Found: " + fileName);
-                throw new IllegalArgumentException();
-            } else {
-                System.out.println("I/O exception occured");
-                return;
-            }
-        } finally {
-            // check if fileName is null
-            if (fileName == null) {
-                System.out.println("Null input: " + fileName);
-                throw new IllegalArgumentException();
-            }
+            System.out.println("I/O exception occured");
         }
-
     }
 
     /**
@@ -1149,184 +635,248 @@ public class Othello {
      * @param name of save file to clear
      */
     public void resume(String fileName) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
 
         try {
-            // create FileReader that reads the save file when called
-            FileReader r = new FileReader(fileName);
-            BufferedReader br = new BufferedReader(r);
-
-            // first line is the number of turns
-            String numTurns = br.readLine();
-
             // check if file is empty
-            if ((numTurns == null) || (numTurns == "")) {
+            if (!TextSaveFile.read(fileName, this)) {
                 System.out.println("empty save file");
-                br.close();
-                return; 
             }
+        } catch (FileSystemException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+        }
+    }
 
-            int nT = Integer.parseInt(numTurns);
-            this.numTurns = nT;
-
-            // second line is the current player
-            String currPlayer = br.readLine();
-            if (currPlayer.equals("Current player: player 1 (black)")) {
-                this.player1 = true;
-            } else {
-                this.player1 = false;
-            }
+    /**
+     * load replaces the game state with the contents of a save file.
+     * 
+     * @param b             bitboard of black pieces
+     * @param w             bitboard of white pieces
+     * @param p1            whether it is player 1's turn
+     * @param over          whether the game is over
+     * @param squares       square index of each added piece in order
+     * @param colors        color of each added piece in order
+     * @param flipsBySquare pieces overtaken by the piece added on each
+     *                      square
+     * @param count         number of moves
+     */
+    void load(
+            long b, long w, boolean p1, boolean over, int[] squares, int[] colors,
+            long[] flipsBySquare, int count
+    ) {
+        this.black = b;
+        this.white = w;
+        this.hashKey = Zobrist.hash(b, w, true);
+        boardChanged();
+        this.player1 = p1;
+        this.gameOver = over;
+
+        // rebuild the history in the order the pieces were added
+        this.numTurns = 0;
+        for (int i = 0; i < count; i++) {
+            int sq = squares[i];
+            pushMove(sq, colors[i], flipsBySquare[sq]);
+        }
+        stateReplaced();
+    }
 
-            // third line is whether or not the game is over
-            String isOver = br.readLine();
-            if (isOver.equals("Game is over")) {
-                this.gameOver = true;
-            } else {
-                this.gameOver = false;
-            }
+    /**
+     * saves the game state to the save file in the binary format described
+     * in GameCodec.java
+     * 
+     * @param name of save file
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void saveBinary(String fileName) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
 
-            // the next 8 lines represent the board
-            int[] colorsInOrder = new int[64];
-            int arrCounter = 0;
-            for (int i = 0; i < 8; i++) {
-                String row = br.readLine();
-                // iterate through the row
-                for (int j = 0; j < row.length(); j++) {
-                    char c = row.charAt(j);
-                    // empty space
-                    if (c == '0') {
-                        colorsInOrder[arrCounter] = 0;
-                        arrCounter++;
-                    }
-                    // color is black
-                    if (c == '1') {
-                        colorsInOrder[arrCounter] = 1;
-                        arrCounter++;
-                    }
-                    // color is white
-                    if (c == '2') {
-                        colorsInOrder[arrCounter] = 2;
-                        arrCounter++;
-                    }
+        try (FileOutputStream out = new FileOutputStream(fileName, false)) {
+            out.write(GameCodec.encode(this));
+        } catch (FileNotFoundException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                }
-            }
+    /**
+     * resumes the game state that is saved in the file in the binary
+     * format described in GameCodec.java
+     * 
+     * @param name of save file
+     * @throws IllegalArgumentException if the file is missing, empty or not
+     *                                  a valid save
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    public void resumeBinary(String fileName) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
 
-            // construct the othello board
-            int colorInBoard = 0;
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    // get color from the array of colors
-                    this.board[i][j].setColor(colorsInOrder[colorInBoard]);
-                    colorInBoard++;
-                }
+        byte[] data;
+        try (FileInputStream in = new FileInputStream(fileName)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buf = new byte[GameCodec.MAX_SIZE];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                bytes.write(buf, 0, n);
             }
+            data = bytes.toByteArray();
+        } catch (FileNotFoundException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
 
-            // find added pieces
-            String hasAddedPieces = br.readLine();
-            // list of added game pieces in order
-            LinkedList<GamePiece> added = new LinkedList<GamePiece>();
-
-            if (hasAddedPieces.equals("added pieces in order")) {
-                // numTurns is equal to the number added pieces
-                for (int i = 0; i < this.numTurns; i++) {
-                    // added piece info
-                    String addedPiece = br.readLine();
-
-                    // row at 0, column at 1, color at 2
-                    int x = addedPiece.charAt(0) - '0';
-                    int y = addedPiece.charAt(1) - '0';
-                    int clr = addedPiece.charAt(2) - '0';
-                    GamePiece ap = new GamePiece(clr, x, y);
-                    // check if there are duplicates
-                    if (!added.contains(ap)) {
-                        added.add(ap);
-                    }
-
-                }
+        // check if file is empty
+        if (data.length == 0) {
+            System.out.println("empty save file");
+            throw new IllegalArgumentException();
+        }
+        GameCodec.decode(data, this);
+    }
 
+    /**
+     * restore replaces the game state with a game played from the starting
+     * position, replaying the given moves to rebuild the history (with the
+     * pieces each move overtook) and checking that they lead to the given
+     * bitboards.
+     * 
+     * @param b        bitboard of black pieces
+     * @param w        bitboard of white pieces
+     * @param p1       whether it is player 1's turn
+     * @param over     whether the game is over
+     * @param squares  square index of each added piece in order
+     * @param colors   color of each added piece in order
+     * @param count    number of moves
+     * @throws IllegalArgumentException if a move is not legal or the moves
+     *                                  do not lead to the given bitboards
+     */
+    void restore(
+            long b, long w, boolean p1, boolean over, byte[] squares,
+            byte[] colors, int count
+    ) {
+        // replay the moves before changing anything
+        long[] flips = new long[count];
+        long replayBlack = Bitboards.START_BLACK;
+        long replayWhite = Bitboards.START_WHITE;
+        for (int i = 0; i < count; i++) {
+            int sq = squares[i];
+            long placed = 1L << sq;
+            if (((replayBlack | replayWhite) & placed) != 0) {
+                throw new IllegalArgumentException();
             }
+            long f;
+            if (colors[i] == 1) {
+                f = Bitboards.flips(replayBlack, replayWhite, sq);
+                replayBlack |= placed | f;
+                replayWhite &= ~f;
+            } else {
+                f = Bitboards.flips(replayWhite, replayBlack, sq);
+                replayWhite |= placed | f;
+                replayBlack &= ~f;
+            }
+            if (f == 0) {
+                throw new IllegalArgumentException();
+            }
+            flips[i] = f;
+        }
+        if ((replayBlack != b) || (replayWhite != w)) {
+            throw new IllegalArgumentException();
+        }
 
-            // set the addedPieces field
-            this.addedPieces = added;
-
-            // find map of pieces to overtaken pieces
-            String hasMap = br.readLine();
-            // map of added pieces and overtaken pieces
-            TreeMap<GamePiece, LinkedList<GamePiece>> moves = 
-                    new TreeMap<GamePiece, LinkedList<GamePiece>>();
-
-            if (hasMap.equals("mapping added pieces to overtaken pieces")) {
-                // numTurns is equal to the number of keys in the map
-                for (int i = 0; i < this.numTurns; i++) {
-
-                    // first is "added piece" string
-                    br.readLine();
-
-                    // second is the actual added piece information
-                    String addedPiece = br.readLine();
-
-                    // row at 0, column at 1, color at 2
-                    int x = addedPiece.charAt(0) - '0';
-                    int y = addedPiece.charAt(1) - '0';
-                    int clr = addedPiece.charAt(2) - '0';
-
-                    GamePiece key = new GamePiece(clr, x, y);
-
-                    // third the number of values mapped
-                    String s = br.readLine();
-                    // remove non-digits
-                    String clean = s.replaceAll("\\D+", "");
-                    int numValues = Integer.parseInt(clean);
-
-                    // get the values mapped to the key
-                    LinkedList<GamePiece> values = new LinkedList<GamePiece>();
-                    for (int j = 0; j < numValues; j++) {
-                        // overtaken game piece information
-                        String overtaken = br.readLine();
-
-                        // row at 0, column at 1, color at 2
-                        int x2 = overtaken.charAt(0) - '0';
-                        int y2 = overtaken.charAt(1) - '0';
-                        int clr2 = addedPiece.charAt(2) - '0';
-
-                        // add to list of values mapped to key
-                        GamePiece value = new GamePiece(clr2, x2, y2);
-                        values.add(value);
-                    }
-
-                    // next iteration
-                    if (br.readLine().equals("end of entry")) {
-                        // add entry to the map
-                        moves.put(key, values);
-                        // next loop iteration
-                        continue;
-                    }
+        this.black = b;
+        this.white = w;
+        this.hashKey = Zobrist.hash(b, w, true);
+        boardChanged();
+        this.player1 = p1;
+        this.gameOver = over;
+        this.numTurns = 0;
+        for (int i = 0; i < count; i++) {
+            pushMove(squares[i], colors[i], flips[i]);
+        }
+        stateReplaced();
+    }
 
-                }
-            }
+    /**
+     * starts keeping an append-only journal of the game in a file, as
+     * described in MoveJournal.java, replacing its contents with the
+     * current game. Every move and undo after this is written to the
+     * journal until stopJournal is called. This is the same as setting
+     * the save policy SavePolicy.journaled(fileName).
+     * 
+     * @param name of journal file
+     */
+    public void startJournal(String fileName) {
+        setSavePolicy(SavePolicy.journaled(fileName));
+    }
 
-            this.movesMade = moves;
+    /**
+     * stops journaling the game, forcing the journal to the disk. The game
+     * is then kept only in memory (SavePolicy.NONE).
+     */
+    public void stopJournal() {
+        if (journal != null) {
+            closeJournal();
+            this.savePolicy = SavePolicy.NONE;
+        }
+    }
 
-            // close file reader
-            br.close();
+    /**
+     * resumes the game state that is kept in a journal file, then keeps
+     * journaling the game to that file. If the file is empty the game is
+     * not changed, and is journaled to the file from now on.
+     * 
+     * @param name of journal file
+     */
+    public void resumeJournal(String fileName) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        // the replayed moves must not be journaled again
+        stopJournal();
+        if (!MoveJournal.replay(fileName, this)) {
+            System.out.println("empty save file");
+        }
+        setSavePolicy(SavePolicy.journaled(fileName));
+    }
 
-        } catch (IOException e) {
-            // check if file doesn't exist
-            if (e.getClass() == FileNotFoundException.class) {
-                System.out.println("File Not Found: " + fileName);
-                throw new IllegalArgumentException();
-            } else {
-                System.out.println("I/O exception occured");
-                return;
-            }
-        } finally {
-            // check if fileName is null
-            if (fileName == null) {
-                System.out.println("Null input: " + fileName);
-                throw new IllegalArgumentException();
-            }
+    // closes the journal, if there is one
+    private void closeJournal() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
         }
+    }
 
+    /**
+     * stateReplaced writes a new snapshot to the journal, if there is one,
+     * after the game state has been replaced rather than changed by a move.
+     */
+    private void stateReplaced() {
+        publish();
+        if (journal != null) {
+            journal.compact(this);
+        }
     }
 
     /**
@@ -1335,45 +885,45 @@ public class Othello {
     public void undo() {
 
         // no moves to undo
-        if ((this.addedPieces.isEmpty() || (this.addedPieces == null))) {
+        if (this.numTurns == 0) {
             System.out.println("No moves to remove");
             return;
         }
 
-        // get the most recently added piece
-        GamePiece g = this.addedPieces.getLast();
-
-        // get pieces that were overtaken by g
-        LinkedList<GamePiece> overtakenPieces = this.movesMade.get(g);
-
-        // iterate through the overtaken pieces to revert to previous color
-        Iterator<GamePiece> iter = overtakenPieces.iterator();
-        while (iter.hasNext()) {
-            GamePiece overtaken = iter.next();
-            int row = overtaken.getX();
-            int column = overtaken.getY();
-
-            // if black switch to white, if white switch to black
-            if (overtaken.getColor() == 1) {
-                board[row][column].setColor(2);
-            } else {
-                board[row][column].setColor(1);
-            }
+        // get the most recent move and the pieces it overtook
+        int last = this.numTurns - 1;
+        int sq = moveSquares[last];
+        int color = moveColors[last];
+        long flipped = moveFlips[last];
+
+        // switch the added piece back to empty and revert the overtaken
+        // pieces to the other player's color
+        long placed = 1L << sq;
+        if (color == 1) {
+            black &= ~(placed | flipped);
+            white |= flipped;
+        } else {
+            white &= ~(placed | flipped);
+            black |= flipped;
         }
+        this.hashKey ^= Zobrist.pieceKey(color, sq) ^ Zobrist.flipKey(flipped);
+        boardChanged();
 
-        // switch the added piece back to empty
-        int r = g.getX();
-        int c = g.getY();
-        board[r][c].setColor(0);
-
-        // remove entry from list and map
-        this.movesMade.remove(g);
-        this.addedPieces.removeLast();
+        // change the fields, giving the turn back to whoever made the move;
+        // the game was still going when it was made
+        this.player1 = (color == 1);
+        this.gameOver = false;
+        this.numTurns = last;
+        publish();
 
-        // change the fields
-        this.player1 = !this.player1;
-        this.numTurns--;
+        if (journal != null) {
+            journal.undoMade(this);
+        }
+    }
 
+    // getter method for the save policy
+    public SavePolicy getSavePolicy() {
+        return this.savePolicy;
     }
 
     /**
@@ -1398,32 +948,165 @@ public class Othello {
     }
 
     /**
-     * getBoard is a getter for the Othello board
+     * getPosition is a getter for an immutable snapshot of the current
+     * position. Unlike the game itself, it is safe to call from any thread:
+     * the snapshot never changes, and a new one is published after every
+     * move, undo, reset or resume.
+     *
+     * @return the current position
+     */
+    public Position getPosition() {
+        return this.position;
+    }
+
+    /**
+     * getBoard is a getter for the Othello board. The cells show the live
+     * game, so only the thread playing the game should read them; other
+     * threads should use getPosition.
      * 
      * @return 8 x 8 2D array containing game pieces
      */
     public GamePiece[][] getBoard() {
-        return this.board;
+        return cells();
     }
 
     /**
-     * getMoves is a getter for the map of moves made
+     * getMoves is a getter for the map of moves made, built from the
+     * history on each call
      * 
      * @return tree map that maps added pieces to the pieces that
      *         they overtook
      */
     public TreeMap<GamePiece, LinkedList<GamePiece>> getMoves() {
-        return this.movesMade;
+        TreeMap<GamePiece, LinkedList<GamePiece>> moves =
+                new TreeMap<GamePiece, LinkedList<GamePiece>>();
+        for (int i = 0; i < this.numTurns; i++) {
+            int sq = moveSquares[i];
+            int color = moveColors[i];
+            moves.put(
+                    new GamePiece(color, sq >>> 3, sq & 7),
+                    toPieces(moveFlips[i], color)
+            );
+        }
+        return moves;
     }
 
     /**
-     * getMoves is a getter for the list of added pieces in order
+     * getAddedPieces is a getter for the list of added pieces in order,
+     * built from the history on each call
      * 
      * @return linked list containing all the pieces added to the board
      *         in order of their addition
      */
     public LinkedList<GamePiece> getAddedPieces() {
-        return this.addedPieces;
+        LinkedList<GamePiece> added = new LinkedList<GamePiece>();
+        for (int i = 0; i < this.numTurns; i++) {
+            int sq = moveSquares[i];
+            added.add(new GamePiece(moveColors[i], sq >>> 3, sq & 7));
+        }
+        return added;
+    }
+
+    /**
+     * getMoveSquare is a getter for the square of a move in the history
+     * 
+     * @param turn index of the move, from 0 to getNumTurns() - 1
+     * @return square index (8 * row + column) of the added piece
+     */
+    public int getMoveSquare(int turn) {
+        checkTurn(turn);
+        return moveSquares[turn];
+    }
+
+    /**
+     * getMoveColor is a getter for the color of a move in the history
+     * 
+     * @param turn index of the move, from 0 to getNumTurns() - 1
+     * @return color of the added piece (1 for black or 2 for white)
+     */
+    public int getMoveColor(int turn) {
+        checkTurn(turn);
+        return moveColors[turn];
+    }
+
+    /**
+     * getMoveFlips is a getter for the pieces overtaken by a move in the
+     * history
+     * 
+     * @param turn index of the move, from 0 to getNumTurns() - 1
+     * @return bitboard of the pieces that the move overtook
+     */
+    public long getMoveFlips(int turn) {
+        checkTurn(turn);
+        return moveFlips[turn];
+    }
+
+    /**
+     * replayMove plays a move of the history on a board held as
+     * {black, white}, which rebuilds the positions of the game without
+     * playing its moves again.
+     * 
+     * @param turn  index of the move, from 0 to getNumTurns() - 1
+     * @param board black and white pieces before the move, updated in place
+     */
+    public void replayMove(int turn, long[] board) {
+        checkTurn(turn);
+        Bitboards.play(board, moveColors[turn], moveSquares[turn], moveFlips[turn]);
+    }
+
+    /**
+     * historyLeadsToBoard checks that the moves of the history lead from the
+     * starting position to the board, which is not the case once the board
+     * was changed through its cells.
+     * 
+     * @return true if replaying the history gives the board
+     */
+    public boolean historyLeadsToBoard() {
+        long[] board = { Bitboards.START_BLACK, Bitboards.START_WHITE };
+        for (int i = 0; i < this.numTurns; i++) {
+            replayMove(i, board);
+        }
+        return (board[0] == this.black) && (board[1] == this.white);
+    }
+
+    // checks that a turn index is in the history
+    private void checkTurn(int turn) {
+        if ((turn < 0) || (turn >= this.numTurns)) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * getBlackBoard is a getter for the bitboard of black pieces
+     * 
+     * @return long with bit (8 * row + column) set for each black piece
+     */
+    public long getBlackBoard() {
+        return this.black;
+    }
+
+    /**
+     * getWhiteBoard is a getter for the bitboard of white pieces
+     * 
+     * @return long with bit (8 * row + column) set for each white piece
+     */
+    public long getWhiteBoard() {
+        return this.white;
+    }
+
+    /**
+     * getHashKey is a getter for the Zobrist hash of the current position,
+     * including the player to move. It is kept up to date by playTurn,
+     * overtake and undo rather than recomputed on each call.
+     * 
+     * @return 64-bit hash of the position
+     */
+    public long getHashKey() {
+        if (player1) {
+            return this.hashKey;
+        } else {
+            return this.hashKey ^ Zobrist.WHITE_TO_MOVE;
+        }
     }
 
     /**
@@ -1444,7 +1127,63 @@ public class Othello {
      * @return a game piece in the corresponding cell on the Othello board
      */
     public GamePiece getCell(int c, int r) {
-        return this.board[r][c];
+        return cells()[r][c];
+    }
+
+    /**
+     * Cell is a game piece on the Othello board whose color is read from and
+     * written to the bitboards, so that the 2D array returned by getBoard
+     * always reflects the current state of the game.
+     */
+    private class Cell extends GamePiece {
+
+        // bit for the square of this cell
+        private final long bit;
+
+        // constructor for cells
+        Cell(int x, int y) {
+            super(0, x, y);
+            this.bit = 1L << Bitboards.square(x, y);
+        }
+
+        @Override
+        public int getColor() {
+            if ((black & bit) != 0) {
+                return 1;
+            } else if ((white & bit) != 0) {
+                return 2;
+            } else {
+                return 0;
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ((black | white) & bit) == 0;
+        }
+
+        @Override
+        public void setColor(int c) {
+            // check if it is a valid color (none, black, or white)
+            super.setColor(c);
+            int sq = getSquare();
+            int old = getColor();
+            if (old != 0) {
+                hashKey ^= Zobrist.pieceKey(old, sq);
+            }
+            if (c != 0) {
+                hashKey ^= Zobrist.pieceKey(c, sq);
+            }
+            black &= ~bit;
+            white &= ~bit;
+            if (c == 1) {
+                black |= bit;
+            } else if (c == 2) {
+                white |= bit;
+            }
+            boardChanged();
+            publish();
+        }
     }
 
 }
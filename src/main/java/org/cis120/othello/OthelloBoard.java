@@ -5,6 +5,10 @@ import java.awt.event.*;
 import javax.swing.*;
 
 import java.awt.Color;
+import java.util.concurrent.ExecutionException;
+
+import org.cis120.othello.ai.ComputerPlayer;
+import org.cis120.othello.ai.SearchResult;
 
 /**
  * This class instantiates an Othello object, which is the model for the game.
@@ -25,6 +29,10 @@ public class OthelloBoard extends JPanel {
     private JLabel status;
     // game model
     private Othello o;
+    // computer opponent
+    private ComputerPlayer computer;
+    // search for the computer's move, or null when it is not thinking
+    private SwingWorker<SearchResult, Void> thinking;
 
     // Game constants
     private static final int BOARD_WIDTH = 800;
@@ -47,6 +55,8 @@ public class OthelloBoard extends JPanel {
 
         // initialize game model
         this.o = new Othello("files/saveFile.txt");
+        // initialize computer opponent
+        this.computer = new ComputerPlayer();
         // initialize JLabel status
         this.status = statusInit;
 
@@ -66,10 +76,12 @@ public class OthelloBoard extends JPanel {
                 int y = p.y / 100;
 
                 // play turn using the position
+                boolean mover = o.getCurrentPlayer();
                 o.playTurn(x, y);
 
                 // update the status JLabel
                 updateStatus();
+                showPass(mover);
                 // repaint the game board
                 repaint();
             }
@@ -124,6 +136,46 @@ public class OthelloBoard extends JPanel {
         requestFocusInWindow();
     }
 
+    /**
+     * lets the computer play the current player's turn. The search runs on
+     * a worker thread so the window keeps responding, and its move is only
+     * played if the game has not changed in the meantime.
+     */
+    public void computerMove() {
+        if ((thinking != null) || o.getGameOver()) {
+            return;
+        }
+        final Position p = o.getPosition();
+        thinking = new SwingWorker<SearchResult, Void>() {
+            @Override
+            protected SearchResult doInBackground() {
+                return computer.chooseMove(p);
+            }
+
+            @Override
+            protected void done() {
+                thinking = null;
+                boolean mover = o.getCurrentPlayer();
+                try {
+                    SearchResult r = get();
+                    if ((o.getPosition() == p) && (r.getMove() >= 0)) {
+                        o.playTurn(r.getRow(), r.getColumn());
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    System.out.println("Computer move failed: " + e);
+                }
+                updateStatus();
+                showPass(mover);
+                repaint();
+
+                // Makes sure this component has keyboard/mouse focus
+                requestFocusInWindow();
+            }
+        };
+        status.setText("Computer is thinking...");
+        thinking.execute();
+    }
+
     /**
      * Updates the JLabel to reflect the current state of the game.
      */
@@ -145,6 +197,19 @@ public class OthelloBoard extends JPanel {
         }
     }
 
+    /**
+     * Tells the players when the opponent of the player who was to move
+     * has to pass, so the same player moves again.
+     */
+    private void showPass(boolean mover) {
+        if (!o.getGameOver() && (o.getCurrentPlayer() == mover) && (o.getNumTurns() > 0)
+                && (o.getMoveColor(o.getNumTurns() - 1) == (mover ? 1 : 2))) {
+            int passer = mover ? 2 : 1;
+            status.setText("Player " + passer + " has to pass. " + "Player "
+                    + (3 - passer) + "'s Turn");
+        }
+    }
+
     /**
      * Draw the Othello board.
      */
@@ -165,10 +230,12 @@ public class OthelloBoard extends JPanel {
             g.drawLine(0, 100 * i, 800, 100 * i);
         }
 
-        // Draw game pieces
+        // Draw game pieces from one snapshot, so a move made while painting
+        // never shows half done
+        Position p = o.getPosition();
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
-                int state = o.getCell(i, j).getColor();
+                int state = p.getColor(j, i);
                 if (state == 1) {
                     // set the pen color to black
                     g.setColor(Color.BLACK);
@@ -0,0 +1,124 @@
+package org.cis120.othello;
+
+/**
+ * This class counts the positions reachable from the starting position in
+ * a given number of plies ("perft"), which checks move generation against
+ * the known Othello counts (4, 12, 56, 244, 1396, 8200, 55092, 390216, ...)
+ * and measures how fast the move path runs.
+ *
+ * A pass counts as a ply, and a finished game counts as one position no
+ * matter how many plies are left. There are two versions: one on raw
+ * bitboards (see Bitboards.java), and one that plays every move through
+ * Othello.playTurn and takes it back with Othello.undo, so that it times
+ * the same code the game uses.
+ *
+ * Usage: java org.cis120.othello.Perft [maxDepth]
+ */
+public final class Perft {
+
+    // no instances
+    private Perft() {
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = 9;
+        if (args.length > 0) {
+            maxDepth = Integer.parseInt(args[0]);
+        }
+
+        System.out.println("depth        nodes  bitboard nodes/sec  othello nodes/sec");
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long nodes = perft(Bitboards.START_BLACK, Bitboards.START_WHITE, depth);
+            long bitboardNanos = Math.max(1, System.nanoTime() - start);
+
+            Othello o = new Othello();
+            start = System.nanoTime();
+            long gameNodes = perft(o, depth);
+            long gameNanos = Math.max(1, System.nanoTime() - start);
+            if (gameNodes != nodes) {
+                System.out.println("mismatch at depth " + depth + ": " + gameNodes);
+            }
+
+            System.out.println(String.format(
+                    "%5d %12d %19d %18d", depth, nodes,
+                    nodes * 1000000000L / bitboardNanos,
+                    nodes * 1000000000L / gameNanos
+            ));
+        }
+    }
+
+    /**
+     * perft counts the positions reachable in the given number of plies,
+     * working directly on bitboards.
+     *
+     * @param own   pieces of the player to move
+     * @param opp   pieces of the opponent
+     * @param depth number of plies
+     * @return number of positions at the given depth
+     */
+    public static long perft(long own, long opp, int depth) {
+        return perft(own, opp, depth, false);
+    }
+
+    // perft on bitboards, knowing whether the previous player passed
+    private static long perft(long own, long opp, int depth, boolean passed) {
+        if (depth == 0) {
+            return 1;
+        }
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                // neither player can move: the game is over
+                return 1;
+            }
+            return perft(opp, own, depth - 1, true);
+        }
+        if (depth == 1) {
+            return Long.bitCount(moves);
+        }
+        long nodes = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long f = Bitboards.flips(own, opp, sq);
+            nodes += perft(opp & ~f, own | f | (1L << sq), depth - 1, false);
+        }
+        return nodes;
+    }
+
+    /**
+     * perft counts the positions reachable in the given number of plies
+     * from the current state of a game, playing each move with playTurn
+     * and taking it back with undo. The game is left as it was found.
+     *
+     * @param o     game to count from
+     * @param depth number of plies
+     * @return number of positions at the given depth
+     */
+    public static long perft(Othello o, int depth) {
+        if ((depth == 0) || o.getGameOver()) {
+            return 1;
+        }
+        boolean player = o.getCurrentPlayer();
+        long moves = o.getLegalMoves(player ? 1 : 2);
+        long nodes = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            o.playTurn(sq >>> 3, sq & 7);
+            if (o.getGameOver() || (o.getCurrentPlayer() != player)) {
+                nodes += perft(o, depth - 1);
+            } else if (depth == 1) {
+                // the opponent has to pass, which is one more ply
+                nodes += 1;
+            } else {
+                // playTurn has already skipped the opponent's pass
+                nodes += perft(o, depth - 2);
+            }
+            o.undo();
+        }
+        return nodes;
+    }
+
+}
@@ -0,0 +1,123 @@
+package org.cis120.othello;
+
+/**
+ * This class is an immutable snapshot of an Othello position: the
+ * bitboards of both players (see Bitboards.java), the player to move and
+ * the number of moves played. Othello.java makes a new one after every
+ * change to the game and publishes it through a volatile field, so any
+ * thread can read the latest position with Othello.getPosition without
+ * locking and without seeing a half-made move, while the game itself is
+ * only changed by one thread.
+ */
+public final class Position {
+
+    // starting position of every game
+    public static final Position START =
+            new Position(Bitboards.START_BLACK, Bitboards.START_WHITE, true, 0);
+
+    private final long black;
+    private final long white;
+    private final boolean blackToMove;
+    private final int ply;
+
+    /**
+     * Constructor makes a position.
+     *
+     * @param black       bitboard of black pieces
+     * @param white       bitboard of white pieces
+     * @param blackToMove whether black is to move
+     * @param ply         number of moves played
+     */
+    public Position(long black, long white, boolean blackToMove, int ply) {
+        if (((black & white) != 0) || (ply < 0)) {
+            throw new IllegalArgumentException();
+        }
+        this.black = black;
+        this.white = white;
+        this.blackToMove = blackToMove;
+        this.ply = ply;
+    }
+
+    // getter method for the bitboard of black pieces
+    public long getBlackBoard() {
+        return black;
+    }
+
+    // getter method for the bitboard of white pieces
+    public long getWhiteBoard() {
+        return white;
+    }
+
+    // getter method for whether black (player 1) is to move
+    public boolean getCurrentPlayer() {
+        return blackToMove;
+    }
+
+    // getter method for the number of moves played
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * getColor returns the color of a square, as GamePiece.getColor does.
+     *
+     * @param r row of the square
+     * @param c column of the square
+     * @return 0 if empty, 1 if black and 2 if white
+     */
+    public int getColor(int r, int c) {
+        long bit = 1L << Bitboards.square(r, c);
+        if ((black & bit) != 0) {
+            return 1;
+        } else if ((white & bit) != 0) {
+            return 2;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * getLegalMoves returns the legal moves of the player to move.
+     *
+     * @return bitboard of legal moves
+     */
+    public long getLegalMoves() {
+        if (blackToMove) {
+            return Bitboards.legalMoves(black, white);
+        } else {
+            return Bitboards.legalMoves(white, black);
+        }
+    }
+
+    /**
+     * isGameOver returns whether neither player can move.
+     *
+     * @return true if the game is over
+     */
+    public boolean isGameOver() {
+        return (Bitboards.legalMoves(black, white) == 0)
+                && (Bitboards.legalMoves(white, black) == 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Position)) {
+            return false;
+        }
+        Position p = (Position) o;
+        return (black == p.black) && (white == p.white)
+                && (blackToMove == p.blackToMove) && (ply == p.ply);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) Zobrist.hash(black, white, blackToMove) ^ ply;
+    }
+
+    @Override
+    public String toString() {
+        return "black " + Long.toHexString(black) + " white " + Long.toHexString(white)
+                + (blackToMove ? " black" : " white") + " to move, ply " + ply;
+    }
+
+}
@@ -0,0 +1,303 @@
+package org.cis120.othello;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes the positions of Othello games to binary shard files
+ * as training data for the evaluation: one fixed-size record for every
+ * position in which a move was played, labelled with the final result of
+ * the game. Optionally each position is also written in the other 7
+ * symmetries of the board (see Bitboards.symmetry).
+ *
+ * A shard is named prefix-00000.bin, prefix-00001.bin and so on, and holds
+ * at most a fixed number of positions. It starts with a header:
+ * - 2 bytes: the magic number 'O' 'P'
+ * - 1 byte: the format version (VERSION)
+ * - 1 byte: the size of a record (RECORD_SIZE)
+ * - 4 bytes: unused
+ * - 8 bytes: the number of positions in the shard
+ * followed by the records (numbers are big-endian):
+ * - 8 bytes: the bitboard of black pieces
+ * - 8 bytes: the bitboard of white pieces
+ * - 1 byte: the player to move, 1 for black and 2 for white
+ * - 1 byte: the final disc differential of the game, black minus white
+ *
+ * Games that are not over have no result to label their positions with,
+ * so they are skipped. The positions are rebuilt from the move history of
+ * each game without
+ * playing the moves again, and written through a direct buffer to the
+ * file channel of the shard.
+ */
+public final class PositionExporter implements Closeable {
+
+    // magic number at the start of every shard
+    public static final byte MAGIC_0 = 'O';
+    public static final byte MAGIC_1 = 'P';
+
+    // current format version
+    public static final byte VERSION = 1;
+
+    // size of the shard header before the first record
+    public static final int HEADER_SIZE = 16;
+
+    // size of a position record
+    public static final int RECORD_SIZE = 18;
+
+    // default number of positions in a shard (about 75MB)
+    public static final long SHARD_POSITIONS = 1L << 22;
+
+    // number of records written to the channel at a time
+    private static final int BUFFER_RECORDS = 1 << 16;
+
+    private final String prefix;
+    private final boolean symmetries;
+    private final long shardPositions;
+
+    // buffer of records not yet written to the shard
+    private final ByteBuffer buffer;
+
+    // current shard, or null if the next record starts a new one
+    private FileChannel channel;
+
+    // number of shards started
+    private int shards;
+
+    // number of positions in the current shard
+    private long inShard;
+
+    // number of positions written
+    private long positions;
+
+    // number of unfinished games skipped
+    private long skipped;
+
+    /**
+     * Constructor sets up an exporter with the default shard size.
+     *
+     * @param prefix     path of the shard files, before -00000.bin
+     * @param symmetries whether to write every symmetry of each position
+     */
+    public PositionExporter(String prefix, boolean symmetries) {
+        this(prefix, symmetries, SHARD_POSITIONS);
+    }
+
+    /**
+     * Constructor sets up an exporter.
+     *
+     * @param prefix         path of the shard files, before -00000.bin
+     * @param symmetries     whether to write every symmetry of each position
+     * @param shardPositions maximum number of positions in a shard
+     */
+    public PositionExporter(String prefix, boolean symmetries, long shardPositions) {
+        // check if prefix is null
+        if (prefix == null) {
+            System.out.println("Null input: " + prefix);
+            throw new IllegalArgumentException();
+        }
+        if (shardPositions <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.prefix = prefix;
+        this.symmetries = symmetries;
+        this.shardPositions = shardPositions;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+    }
+
+    /**
+     * shardName returns the name of a shard file.
+     *
+     * @param prefix path of the shard files
+     * @param shard  number of the shard, from 0
+     * @return name of the file
+     */
+    public static String shardName(String prefix, int shard) {
+        return String.format("%s-%05d.bin", prefix, shard);
+    }
+
+    /**
+     * exportGame writes the positions of a game. It can be called from
+     * several threads, for example by a GameImporter.Listener. A game that
+     * is not over is skipped, since it has no final result.
+     *
+     * @param o game to export
+     * @throws IllegalArgumentException if the moves of the game do not lead
+     *                                  to its board, which happens when the
+     *                                  board was changed through its cells
+     */
+    public synchronized void exportGame(Othello o) {
+        int n = o.getNumTurns();
+
+        // check that the history leads to the board before writing anything
+        if (!o.historyLeadsToBoard()) {
+            throw new IllegalArgumentException();
+        }
+        if (!o.getGameOver()) {
+            skipped++;
+            return;
+        }
+        int label = Bitboards.count(o.getBlackBoard()) - Bitboards.count(o.getWhiteBoard());
+
+        long[] board = { Bitboards.START_BLACK, Bitboards.START_WHITE };
+        for (int i = 0; i < n; i++) {
+            int color = o.getMoveColor(i);
+            if (symmetries) {
+                for (int s = 0; s < Bitboards.SYMMETRIES; s++) {
+                    write(
+                            Bitboards.symmetry(board[0], s), Bitboards.symmetry(board[1], s),
+                            color, label
+                    );
+                }
+            } else {
+                write(board[0], board[1], color, label);
+            }
+            o.replayMove(i, board);
+        }
+    }
+
+    /**
+     * exportArchive writes the positions of every game in an archive.
+     *
+     * @param archive games to export
+     */
+    public void exportArchive(GameArchive archive) {
+        Othello o = new Othello();
+        for (long id = 0; id < archive.size(); id++) {
+            archive.read(id, o);
+            exportGame(o);
+        }
+    }
+
+    // adds a record, starting a new shard if the current one is full
+    private void write(long b, long w, int color, int label) {
+        if (inShard == shardPositions) {
+            finishShard();
+        }
+        if (channel == null) {
+            startShard();
+        }
+        if (buffer.remaining() < RECORD_SIZE) {
+            drain();
+        }
+        buffer.putLong(b).putLong(w).put((byte) color).put((byte) label);
+        inShard++;
+        positions++;
+    }
+
+    // opens the next shard, leaving room for its header
+    private void startShard() {
+        String fileName = shardName(prefix, shards);
+        try {
+            channel = FileChannel.open(
+                    Paths.get(fileName), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+            );
+            channel.position(HEADER_SIZE);
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+        shards++;
+        inShard = 0;
+    }
+
+    // writes the buffered records to the current shard
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    // writes the rest of the current shard and its header, and closes it
+    private void finishShard() {
+        drain();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) RECORD_SIZE);
+        header.putInt(0).putLong(inShard);
+        header.flip();
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+        channel = null;
+    }
+
+    // getter method for the number of positions written
+    public synchronized long getPositions() {
+        return positions;
+    }
+
+    // getter method for the number of unfinished games skipped
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    // getter method for the number of shard files written
+    public synchronized int getShards() {
+        return shards;
+    }
+
+    /**
+     * close writes the rest of the positions and closes the last shard.
+     */
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            finishShard();
+        }
+    }
+
+    /**
+     * main exports the positions of stored games: PositionExporter prefix
+     * [-s] file..., where -s adds the symmetries and each file is read by
+     * GameSources.forEachGame. Self-played games can be stored in an
+     * archive with ai/SelfPlay.java first.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("usage: PositionExporter prefix [-s] file...");
+            return;
+        }
+        int i = 1;
+        boolean symmetries = false;
+        if (args[i].equals("-s")) {
+            symmetries = true;
+            i++;
+        }
+
+        long start = System.nanoTime();
+        PositionExporter exporter = new PositionExporter(args[0], symmetries);
+        GameSources.forEachGame(args, i, exporter::exportGame);
+        exporter.close();
+
+        long nanos = Math.max(1, System.nanoTime() - start);
+        System.out.println(String.format(
+                "%d positions in %d shards (%d positions/sec)", exporter.getPositions(),
+                exporter.getShards(), exporter.getPositions() * 1000000000L / nanos
+        ));
+        if (exporter.getSkipped() > 0) {
+            System.out.println(exporter.getSkipped() + " unfinished games skipped");
+        }
+    }
+
+}
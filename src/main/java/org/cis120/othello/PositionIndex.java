@@ -0,0 +1,504 @@
+package org.cis120.othello;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is an on-disk hash table counting how often each position
+ * was reached across a collection of games and how those games ended, so
+ * that a position can be looked up in constant time instead of replaying
+ * every stored game. Games are added one at a time, for example by a
+ * GameArchive as they are appended (see GameArchive.setPositionIndex).
+ *
+ * Positions are keyed by the Zobrist hash (see Zobrist.java) of their
+ * canonical form (see Bitboards.canonicalSymmetry), so positions that are
+ * rotations or reflections of each other share an entry. Every position
+ * of a game counts once: the starting position, the position after each
+ * move, and the final one. Games that are not over are counted as
+ * unfinished rather than as won by whoever is ahead.
+ *
+ * The file starts with a header:
+ * - 2 bytes: the magic number 'O' 'I'
+ * - 1 byte: the format version (VERSION)
+ * - 1 byte: log base 2 of the number of slots
+ * - 4 bytes: the size of a slot (SLOT_SIZE)
+ * - 8 bytes: the number of positions stored
+ * - 8 bytes: the number of games added
+ * followed by the slots, found by linear probing from the low bits of
+ * the key:
+ * - 8 bytes: the key, or 0 for an empty slot
+ * - 4 bytes: the number of games won by black
+ * - 4 bytes: the number of games won by white
+ * - 4 bytes: the number of drawn games
+ * - 4 bytes: the number of unfinished games
+ *
+ * The whole file is memory-mapped, in segments of at most 2^22 slots
+ * since a mapped buffer can hold at most 2GB, and the header and changed
+ * slots are forced to the disk by flush and close. When the table becomes
+ * two thirds full, it is rebuilt with twice as many slots in a temporary
+ * file that then replaces the index file. The table holds at most 2^36
+ * slots, about 45 billion positions in a 1.6TB file.
+ */
+public final class PositionIndex implements Closeable {
+
+    // magic number at the start of the file
+    public static final byte MAGIC_0 = 'O';
+    public static final byte MAGIC_1 = 'I';
+
+    // current format version
+    public static final byte VERSION = 1;
+
+    // size of the file header before the first slot
+    public static final int HEADER_SIZE = 24;
+
+    // size of a slot
+    public static final int SLOT_SIZE = 24;
+
+    // log base 2 of the number of slots of a new index
+    static final int MIN_LOG2_SLOTS = 10;
+
+    // log base 2 of the largest number of slots
+    static final int MAX_LOG2_SLOTS = 36;
+
+    // log base 2 of the number of slots in a mapped segment (96MB)
+    static final int SEGMENT_LOG2_SLOTS = 22;
+
+    // key of an empty slot
+    private static final long EMPTY = 0L;
+
+    // offsets in the header
+    private static final int LOG2_OFFSET = 3;
+    private static final int ENTRIES_OFFSET = 8;
+    private static final int GAMES_OFFSET = 16;
+
+    // offsets in a slot
+    private static final int BLACK_WINS = 8;
+    private static final int WHITE_WINS = 12;
+    private static final int DRAWS = 16;
+    private static final int UNFINISHED = 20;
+
+    private final Path path;
+    private final Path tmpPath;
+    private final boolean writable;
+    private final int maxSegmentLog2;
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+
+    // the slots, in segments of 2^segmentLog2 slots each
+    private MappedByteBuffer[] segments;
+    private int segmentLog2;
+
+    // log base 2 of the number of slots
+    private int log2Slots;
+
+    // number of positions stored
+    private long entries;
+
+    // number of games added
+    private long games;
+
+    /**
+     * Stats holds what the index knows about a position.
+     */
+    public static final class Stats {
+        private final int blackWins;
+        private final int whiteWins;
+        private final int draws;
+        private final int unfinished;
+
+        private Stats(int blackWins, int whiteWins, int draws, int unfinished) {
+            this.blackWins = blackWins;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.unfinished = unfinished;
+        }
+
+        // getter method for the number of games that reached the position
+        public long getOccurrences() {
+            return (long) blackWins + whiteWins + draws + unfinished;
+        }
+
+        // getter method for the number of those games won by black
+        public int getBlackWins() {
+            return blackWins;
+        }
+
+        // getter method for the number of those games won by white
+        public int getWhiteWins() {
+            return whiteWins;
+        }
+
+        // getter method for the number of those games drawn
+        public int getDraws() {
+            return draws;
+        }
+
+        // getter method for the number of those games that were not over
+        public int getUnfinished() {
+            return unfinished;
+        }
+    }
+
+    /**
+     * Constructor opens an index file, creating an empty index if the file
+     * is empty or does not exist and the index is opened for writing.
+     *
+     * @param fileName name of the index file
+     * @param writable whether games can be added
+     * @throws IllegalArgumentException if the file cannot be opened or is
+     *                                  not a position index
+     */
+    public PositionIndex(String fileName, boolean writable) {
+        this(fileName, writable, SEGMENT_LOG2_SLOTS);
+    }
+
+    // constructor with a given segment size, for testing
+    PositionIndex(String fileName, boolean writable, int maxSegmentLog2) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        this.path = Paths.get(fileName);
+        this.tmpPath = Paths.get(fileName + ".tmp");
+        this.writable = writable;
+        this.maxSegmentLog2 = maxSegmentLog2;
+
+        try {
+            if (writable) {
+                channel = FileChannel.open(
+                        path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE
+                );
+            } else {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+        } catch (IOException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        }
+
+        try {
+            if (channel.size() == 0 && writable) {
+                create(channel, MIN_LOG2_SLOTS);
+            } else {
+                open();
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            closeQuietly();
+            System.out.println("not a position index: " + fileName);
+            throw e;
+        }
+    }
+
+    // maps an empty table with the given number of slots into a new file
+    private void create(FileChannel c, int log2) throws IOException {
+        map(c, log2, FileChannel.MapMode.READ_WRITE);
+        header.put(0, MAGIC_0).put(1, MAGIC_1).put(2, VERSION).put(LOG2_OFFSET, (byte) log2);
+        header.putInt(4, SLOT_SIZE);
+    }
+
+    // maps the header and the slots of a table with the given number of
+    // slots, growing the file if needed
+    private void map(FileChannel c, int log2, FileChannel.MapMode mode) throws IOException {
+        int segLog2 = Math.min(log2, maxSegmentLog2);
+        long length = (long) SLOT_SIZE << segLog2;
+        MappedByteBuffer[] segs = new MappedByteBuffer[1 << (log2 - segLog2)];
+        for (int k = 0; k < segs.length; k++) {
+            segs[k] = c.map(mode, HEADER_SIZE + k * length, length);
+        }
+        header = c.map(mode, 0, HEADER_SIZE);
+        segments = segs;
+        segmentLog2 = segLog2;
+        log2Slots = log2;
+    }
+
+    // maps an existing file, checking its header
+    private void open() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IllegalArgumentException();
+        }
+        FileChannel.MapMode mode = writable
+                ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        MappedByteBuffer h = channel.map(mode, 0, HEADER_SIZE);
+        int log2 = h.get(LOG2_OFFSET);
+        if ((h.get(0) != MAGIC_0) || (h.get(1) != MAGIC_1)
+                || (h.get(2) != VERSION) || (h.getInt(4) != SLOT_SIZE)
+                || (log2 < MIN_LOG2_SLOTS) || (log2 > MAX_LOG2_SLOTS)
+                || (size != HEADER_SIZE + ((long) SLOT_SIZE << log2))) {
+            throw new IllegalArgumentException();
+        }
+        map(channel, log2, mode);
+        entries = header.getLong(ENTRIES_OFFSET);
+        games = header.getLong(GAMES_OFFSET);
+    }
+
+    /**
+     * canonicalKey returns the key of a position in the index: the Zobrist
+     * hash of the symmetry of the position with the smallest bitboards.
+     *
+     * @param black       bitboard of black pieces
+     * @param white       bitboard of white pieces
+     * @param blackToMove whether black is to move
+     * @return key of the position, never 0
+     */
+    public static long canonicalKey(long black, long white, boolean blackToMove) {
+        int s = Bitboards.canonicalSymmetry(black, white);
+        long h = Zobrist.hash(
+                Bitboards.symmetry(black, s), Bitboards.symmetry(white, s), blackToMove
+        );
+        return (h == EMPTY) ? 1L : h;
+    }
+
+    /**
+     * addGame counts every position of a game, with the game's result if
+     * it is over.
+     *
+     * @param o game to add
+     * @throws IllegalArgumentException if the moves of the game do not lead
+     *                                  to its board, which happens when the
+     *                                  board was changed through its cells
+     * @throws IllegalStateException    if the index is not writable or full
+     */
+    public synchronized void addGame(Othello o) {
+        if (!writable) {
+            throw new IllegalStateException();
+        }
+        int n = o.getNumTurns();
+
+        // check that the history leads to the board before counting anything
+        if (!o.historyLeadsToBoard()) {
+            throw new IllegalArgumentException();
+        }
+        int field = UNFINISHED;
+        if (o.getGameOver()) {
+            int diff = Bitboards.count(o.getBlackBoard()) - Bitboards.count(o.getWhiteBoard());
+            field = (diff > 0) ? BLACK_WINS : (diff < 0) ? WHITE_WINS : DRAWS;
+        }
+
+        // a game adds at most 61 positions
+        if ((entries + n + 1) * 3 > (2L << log2Slots)) {
+            grow(entries + n + 1);
+        }
+
+        long[] board = { Bitboards.START_BLACK, Bitboards.START_WHITE };
+        for (int i = 0; i < n; i++) {
+            count(canonicalKey(board[0], board[1], o.getMoveColor(i) == 1), field);
+            o.replayMove(i, board);
+        }
+        count(canonicalKey(board[0], board[1], o.getCurrentPlayer()), field);
+        games++;
+    }
+
+    /**
+     * addArchive adds every game of an archive.
+     *
+     * @param archive games to add
+     */
+    public void addArchive(GameArchive archive) {
+        Othello o = new Othello();
+        for (long id = 0; id < archive.size(); id++) {
+            archive.read(id, o);
+            addGame(o);
+        }
+    }
+
+    // adds a game result to the slot of a key, taking an empty slot if the
+    // key is not stored yet
+    private void count(long key, int field) {
+        long slot = find(key);
+        if (slot < 0) {
+            slot = ~slot;
+            segment(slot).putLong(offset(slot), key);
+            entries++;
+        }
+        MappedByteBuffer segment = segment(slot);
+        int at = offset(slot) + field;
+        segment.putInt(at, segment.getInt(at) + 1);
+    }
+
+    // returns the number of the slot holding a key, or ~number of the
+    // empty slot where it would go
+    private long find(long key) {
+        long mask = (1L << log2Slots) - 1;
+        long i = key & mask;
+        while (true) {
+            long k = segment(i).getLong(offset(i));
+            if (k == key) {
+                return i;
+            }
+            if (k == EMPTY) {
+                return ~i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    // segment holding a slot
+    private MappedByteBuffer segment(long slot) {
+        return segments[(int) (slot >>> segmentLog2)];
+    }
+
+    // offset of a slot within its segment
+    private int offset(long slot) {
+        return (int) (slot & ((1L << segmentLog2) - 1)) * SLOT_SIZE;
+    }
+
+    // rebuilds the table with enough slots for the given number of entries
+    private void grow(long needed) {
+        int log2 = log2Slots;
+        while (needed * 3 > (2L << log2)) {
+            log2++;
+        }
+        if (log2 > MAX_LOG2_SLOTS) {
+            System.out.println("position index is full");
+            throw new IllegalStateException();
+        }
+        try {
+            FileChannel tmp = FileChannel.open(
+                    tmpPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+            );
+            MappedByteBuffer[] old = segments;
+            try {
+                create(tmp, log2);
+                for (MappedByteBuffer segment : old) {
+                    for (int from = 0; from < segment.capacity(); from += SLOT_SIZE) {
+                        long key = segment.getLong(from);
+                        if (key != EMPTY) {
+                            long slot = ~find(key);
+                            MappedByteBuffer to = segment(slot);
+                            int at = offset(slot);
+                            for (int j = 0; j < SLOT_SIZE; j += 4) {
+                                to.putInt(at + j, segment.getInt(from + j));
+                            }
+                        }
+                    }
+                }
+                force();
+            } finally {
+                tmp.close();
+            }
+            channel.close();
+            try {
+                Files.move(
+                        tmpPath, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE
+                );
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * lookup returns what the index knows about a position.
+     *
+     * @param black       bitboard of black pieces
+     * @param white       bitboard of white pieces
+     * @param blackToMove whether black is to move
+     * @return counts of the games that reached the position or one of its
+     *         symmetries, or null if no game did
+     */
+    public synchronized Stats lookup(long black, long white, boolean blackToMove) {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException();
+        }
+        long slot = find(canonicalKey(black, white, blackToMove));
+        if (slot < 0) {
+            return null;
+        }
+        MappedByteBuffer segment = segment(slot);
+        int at = offset(slot);
+        return new Stats(
+                segment.getInt(at + BLACK_WINS), segment.getInt(at + WHITE_WINS),
+                segment.getInt(at + DRAWS), segment.getInt(at + UNFINISHED)
+        );
+    }
+
+    /**
+     * lookup returns what the index knows about the current position of a
+     * game.
+     *
+     * @param o game whose position to look up
+     * @return counts of the games that reached the position, or null
+     */
+    public Stats lookup(Othello o) {
+        return lookup(o.getBlackBoard(), o.getWhiteBoard(), o.getCurrentPlayer());
+    }
+
+    // getter method for the number of different positions stored
+    public synchronized long size() {
+        return entries;
+    }
+
+    // getter method for the number of games added
+    public synchronized long getGames() {
+        return games;
+    }
+
+    // writes the number of entries and games to the header, and the whole
+    // table to the disk
+    private void force() {
+        header.putLong(ENTRIES_OFFSET, entries);
+        header.putLong(GAMES_OFFSET, games);
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.force();
+    }
+
+    /**
+     * flush writes the games added so far to the disk.
+     */
+    public synchronized void flush() {
+        if (!writable) {
+            return;
+        }
+        force();
+    }
+
+    /**
+     * close flushes the index and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    // closes the file, ignoring errors
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+        }
+    }
+
+}
@@ -88,6 +88,15 @@ public class RunOthello implements Runnable {
         });
         control_panel.add(undo);
 
+        // computer move button
+        final JButton computer = new JButton("Computer Move");
+        computer.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                board.computerMove();
+            }
+        });
+        control_panel.add(computer);
+
         // Put the frame on the screen
         frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
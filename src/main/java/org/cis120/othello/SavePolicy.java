@@ -0,0 +1,72 @@
+package org.cis120.othello;
+
+/**
+ * This class describes where an Othello game keeps its saved state, set
+ * with Othello.setSavePolicy and used by the save() and resume() functions
+ * that do not take a file name:
+ * - NONE: the game is only kept in memory and never touches the disk
+ * - ON_DEMAND: the game is written to a text save file when save() is
+ *   called, and read back by resume()
+ * - JOURNALED: every move and undo is appended to a journal file as it is
+ *   made (see MoveJournal.java), and resume() recovers the game from it
+ *
+ * A game made with the no-argument Othello constructor starts with NONE.
+ */
+public final class SavePolicy {
+
+    // kinds of save policy
+    public enum Mode {
+        NONE, ON_DEMAND, JOURNALED
+    }
+
+    // policy of games kept only in memory
+    public static final SavePolicy NONE = new SavePolicy(Mode.NONE, null);
+
+    private final Mode mode;
+    private final String fileName;
+
+    private SavePolicy(Mode mode, String fileName) {
+        this.mode = mode;
+        this.fileName = fileName;
+    }
+
+    /**
+     * onDemand returns the policy of a game saved to a text file when asked.
+     *
+     * @param fileName name of the save file
+     * @return the policy
+     */
+    public static SavePolicy onDemand(String fileName) {
+        return new SavePolicy(Mode.ON_DEMAND, checkFileName(fileName));
+    }
+
+    /**
+     * journaled returns the policy of a game journaled to a file.
+     *
+     * @param fileName name of the journal file
+     * @return the policy
+     */
+    public static SavePolicy journaled(String fileName) {
+        return new SavePolicy(Mode.JOURNALED, checkFileName(fileName));
+    }
+
+    // check if fileName is null
+    private static String checkFileName(String fileName) {
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        return fileName;
+    }
+
+    // getter method for the mode
+    public Mode getMode() {
+        return mode;
+    }
+
+    // getter method for the file name, null for NONE
+    public String getFileName() {
+        return fileName;
+    }
+
+}
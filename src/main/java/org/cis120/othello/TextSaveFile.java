@@ -0,0 +1,421 @@
+package org.cis120.othello;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads and writes the text save file of Othello.save and
+ * Othello.resume:
+ * - the number of turns
+ * - the current player and whether the game is over
+ * - 8 lines with the color of each cell
+ * - the added pieces in order, as row, column and color digits
+ * - for each added piece in board order, the pieces it overtook
+ *
+ * The file is built and parsed as bytes in a direct buffer that each
+ * thread reuses, and moved through a FileChannel. A save is written to a
+ * temporary file next to the save file, forced to the disk and then
+ * renamed over the save file, so the save file always holds either the
+ * old or the new game and never half of one. A game is only changed by
+ * resume once the whole file has been read.
+ */
+final class TextSaveFile {
+
+    // size of a new buffer, enough for any game played from the start
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    // buffer that each thread builds and parses save files in
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    // lines of the save file
+    private static final byte[] NEWLINE = bytes(System.lineSeparator());
+    private static final byte[] PLAYER_1 = bytes("Current player: player 1 (black)");
+    private static final byte[] PLAYER_2 = bytes("Current player: player 2 (white)");
+    private static final byte[] OVER = bytes("Game is over");
+    private static final byte[] NOT_OVER = bytes("Game is not over");
+    private static final byte[] ADDED = bytes("added pieces in order");
+    private static final byte[] MAPPING = bytes("mapping added pieces to overtaken pieces");
+    private static final byte[] ADDED_PIECE = bytes("added piece");
+    private static final byte[] OVERTAKEN = bytes("number overtaken pieces: ");
+    private static final byte[] END_OF_ENTRY = bytes("end of entry");
+
+    // no instances
+    private TextSaveFile() {
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * write saves a game to a file, replacing it atomically.
+     *
+     * @param o        game to save
+     * @param fileName name of the save file
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Othello o, String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        if (fileName.isEmpty() || Files.isDirectory(path)) {
+            throw new NoSuchFileException(fileName);
+        }
+        ByteBuffer out = buffer(maxSize(o));
+        out.clear();
+        encode(o, out);
+        out.flip();
+
+        Path tmp = Paths.get(fileName + ".tmp");
+        try {
+            FileChannel channel = FileChannel.open(
+                    tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING
+            );
+            try {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            try {
+                Files.move(
+                        tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE
+                );
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // upper bound on the size of the save file of a game
+    private static int maxSize(Othello o) {
+        int n = o.getNumTurns();
+        int flips = 0;
+        for (int i = 0; i < n; i++) {
+            flips += Long.bitCount(o.getMoveFlips(i));
+        }
+        int nl = NEWLINE.length;
+        return 256 + 8 * (16 + nl) + n * (2 * (3 + nl) + 64 + 4 * nl) + flips * (3 + nl);
+    }
+
+    // returns this thread's buffer, replacing it if it is too small
+    private static ByteBuffer buffer(int size) {
+        ByteBuffer b = BUFFERS.get();
+        if (b.capacity() < size) {
+            b = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+            BUFFERS.set(b);
+        }
+        return b;
+    }
+
+    // writes the lines of the save file
+    private static void encode(Othello o, ByteBuffer out) {
+        int n = o.getNumTurns();
+        putNumber(out, n);
+        out.put(NEWLINE);
+        out.put(o.getCurrentPlayer() ? PLAYER_1 : PLAYER_2).put(NEWLINE);
+        out.put(o.getGameOver() ? OVER : NOT_OVER).put(NEWLINE);
+
+        // the color of each cell, each followed by a space
+        long black = o.getBlackBoard();
+        long white = o.getWhiteBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            long bit = 1L << sq;
+            if ((black & bit) != 0) {
+                out.put((byte) '1');
+            } else if ((white & bit) != 0) {
+                out.put((byte) '2');
+            } else {
+                out.put((byte) '0');
+            }
+            out.put((byte) ' ');
+            if ((sq & 7) == 7) {
+                out.put(NEWLINE);
+            }
+        }
+
+        out.put(ADDED).put(NEWLINE);
+        for (int i = 0; i < n; i++) {
+            putPiece(out, o.getMoveSquare(i), o.getMoveColor(i));
+        }
+
+        // one entry per square in board order, as getMoves gives them: the
+        // first move on a square gives the key, the last the overtaken pieces
+        out.put(MAPPING).put(NEWLINE);
+        for (int sq = 0; sq < 64; sq++) {
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < n; i++) {
+                if (o.getMoveSquare(i) == sq) {
+                    if (first < 0) {
+                        first = i;
+                    }
+                    last = i;
+                }
+            }
+            if (first < 0) {
+                continue;
+            }
+            int color = o.getMoveColor(last);
+            long flips = o.getMoveFlips(last);
+            out.put(ADDED_PIECE).put(NEWLINE);
+            putPiece(out, sq, o.getMoveColor(first));
+            out.put(OVERTAKEN);
+            putNumber(out, Long.bitCount(flips));
+            out.put(NEWLINE);
+            while (flips != 0) {
+                putPiece(out, Long.numberOfTrailingZeros(flips), color);
+                flips &= flips - 1;
+            }
+            out.put(END_OF_ENTRY).put(NEWLINE);
+        }
+    }
+
+    // writes a line with the row, column and color digits of a piece
+    private static void putPiece(ByteBuffer out, int sq, int color) {
+        out.put((byte) ('0' + (sq >>> 3))).put((byte) ('0' + (sq & 7)));
+        out.put((byte) ('0' + color)).put(NEWLINE);
+    }
+
+    // writes a number in decimal
+    private static void putNumber(ByteBuffer out, int x) {
+        int div = 1;
+        while (div <= x / 10) {
+            div *= 10;
+        }
+        for (; div > 0; div /= 10) {
+            out.put((byte) ('0' + (x / div) % 10));
+        }
+    }
+
+    /**
+     * read resumes a game from a save file.
+     *
+     * @param fileName name of the save file
+     * @param o        game to read into
+     * @return false if the file is empty, leaving the game as it was
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid save file
+     */
+    static boolean read(String fileName, Othello o) throws IOException {
+        Path path = Paths.get(fileName);
+        if (fileName.isEmpty() || !Files.isRegularFile(path)) {
+            throw new NoSuchFileException(fileName);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer in;
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE / 2) {
+                throw new IllegalArgumentException();
+            }
+            in = buffer((int) size + 1);
+            in.clear();
+            while (channel.read(in) >= 0) {
+                if (!in.hasRemaining()) {
+                    // the file grew since its size was read
+                    throw new IllegalArgumentException();
+                }
+            }
+        } finally {
+            channel.close();
+        }
+        in.flip();
+        if (!in.hasRemaining()) {
+            return false;
+        }
+        new Parser(in).parse(o);
+        return true;
+    }
+
+    /**
+     * Reads the lines of a save file from a buffer.
+     */
+    private static final class Parser {
+        private final ByteBuffer in;
+
+        // start and end of the current line
+        private int start;
+        private int end;
+
+        // start of the next line
+        private int next;
+
+        private Parser(ByteBuffer in) {
+            this.in = in;
+            this.next = in.position();
+        }
+
+        private void parse(Othello o) {
+            int n = number(line(), end);
+
+            line();
+            boolean p1 = lineIs(PLAYER_1);
+            line();
+            boolean over = lineIs(OVER);
+
+            // the next 8 lines hold the 64 cells in order
+            long b = 0L;
+            long w = 0L;
+            int sq = 0;
+            for (int r = 0; r < 8; r++) {
+                line();
+                for (int i = start; i < end; i++) {
+                    byte c = in.get(i);
+                    if ((c == '0') || (c == '1') || (c == '2')) {
+                        if (sq == 64) {
+                            invalid();
+                        }
+                        if (c == '1') {
+                            b |= 1L << sq;
+                        } else if (c == '2') {
+                            w |= 1L << sq;
+                        }
+                        sq++;
+                    }
+                }
+            }
+            if (sq != 64) {
+                invalid();
+            }
+
+            line();
+            expect(ADDED);
+            int[] squares = new int[n];
+            int[] colors = new int[n];
+            for (int i = 0; i < n; i++) {
+                line();
+                squares[i] = square();
+                colors[i] = color();
+            }
+
+            line();
+            expect(MAPPING);
+            long[] flipsBySquare = new long[64];
+            // one entry per square, up to the end of the file
+            while (next < in.limit()) {
+                line();
+                expect(ADDED_PIECE);
+                line();
+                int key = square();
+                color();
+                line();
+                if ((end - start < OVERTAKEN.length) || !startsWith(OVERTAKEN)) {
+                    invalid();
+                }
+                int count = number(start + OVERTAKEN.length, end);
+                long flips = 0L;
+                for (int j = 0; j < count; j++) {
+                    line();
+                    flips |= 1L << square();
+                }
+                line();
+                expect(END_OF_ENTRY);
+                flipsBySquare[key] = flips;
+            }
+
+            o.load(b, w, p1, over, squares, colors, flipsBySquare, n);
+        }
+
+        // moves to the next line, returning its start
+        private int line() {
+            int limit = in.limit();
+            if (next >= limit) {
+                // the file ends too early
+                invalid();
+            }
+            start = next;
+            int i = start;
+            while ((i < limit) && (in.get(i) != '\n')) {
+                i++;
+            }
+            next = i + 1;
+            end = i;
+            if ((end > start) && (in.get(end - 1) == '\r')) {
+                end--;
+            }
+            return start;
+        }
+
+        private boolean startsWith(byte[] s) {
+            for (int i = 0; i < s.length; i++) {
+                if (in.get(start + i) != s[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean lineIs(byte[] s) {
+            return (end - start == s.length) && startsWith(s);
+        }
+
+        private void expect(byte[] s) {
+            if (!lineIs(s)) {
+                invalid();
+            }
+        }
+
+        // reads the decimal number in [from, to)
+        private int number(int from, int to) {
+            if ((from == to) || (to - from > 6)) {
+                invalid();
+            }
+            int x = 0;
+            for (int i = from; i < to; i++) {
+                int d = in.get(i) - '0';
+                if ((d < 0) || (d > 9)) {
+                    invalid();
+                }
+                x = 10 * x + d;
+            }
+            return x;
+        }
+
+        // reads the square of a piece line (row and column digits)
+        private int square() {
+            if (end - start < 3) {
+                invalid();
+            }
+            int r = in.get(start) - '0';
+            int c = in.get(start + 1) - '0';
+            if ((r < 0) || (r > 7) || (c < 0) || (c > 7)) {
+                invalid();
+            }
+            return Bitboards.square(r, c);
+        }
+
+        // reads the color of a piece line
+        private int color() {
+            int color = in.get(start + 2) - '0';
+            if ((color < 1) || (color > 2)) {
+                invalid();
+            }
+            return color;
+        }
+
+        private void invalid() {
+            System.out.println("invalid save file");
+            throw new IllegalArgumentException();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.cis120.othello;
+
+/**
+ * This class holds the Zobrist keys used to hash Othello positions into
+ * 64-bit values. Every (color, square) pair has a random key, and a
+ * position's hash is the XOR of the keys of its pieces, plus an extra key
+ * when white is to move. Because XOR undoes itself, the hash can be
+ * updated when a piece is added or flipped instead of being recomputed.
+ *
+ * The keys come from a fixed seed so that hashes are the same in every
+ * run, which lets them be stored on disk.
+ */
+public final class Zobrist {
+
+    // keys for black and white pieces on each square
+    private static final long[] BLACK_KEYS = new long[64];
+    private static final long[] WHITE_KEYS = new long[64];
+
+    // key for flipping the piece on a square from one color to the other
+    private static final long[] FLIP_KEYS = new long[64];
+
+    // key added when white is to move
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int sq = 0; sq < 64; sq++) {
+            seed = next(seed);
+            BLACK_KEYS[sq] = mix(seed);
+            seed = next(seed);
+            WHITE_KEYS[sq] = mix(seed);
+            FLIP_KEYS[sq] = BLACK_KEYS[sq] ^ WHITE_KEYS[sq];
+        }
+        seed = next(seed);
+        WHITE_TO_MOVE = mix(seed);
+    }
+
+    // no instances
+    private Zobrist() {
+    }
+
+    // steps the seed of the key generator
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    // turns a seed into a well mixed key (SplitMix64)
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * hash computes the full hash of a position.
+     *
+     * @param black       bitboard of black pieces
+     * @param white       bitboard of white pieces
+     * @param blackToMove whether black is to move
+     * @return 64-bit hash of the position
+     */
+    public static long hash(long black, long white, boolean blackToMove) {
+        long h = blackToMove ? 0L : WHITE_TO_MOVE;
+        while (black != 0) {
+            h ^= BLACK_KEYS[Long.numberOfTrailingZeros(black)];
+            black &= black - 1;
+        }
+        while (white != 0) {
+            h ^= WHITE_KEYS[Long.numberOfTrailingZeros(white)];
+            white &= white - 1;
+        }
+        return h;
+    }
+
+    /**
+     * pieceKey returns the key of a single piece.
+     *
+     * @param color of the piece (1 for black or 2 for white)
+     * @param sq    square index of the piece
+     * @return key to XOR into the hash when adding or removing the piece
+     */
+    public static long pieceKey(int color, int sq) {
+        if (color == 1) {
+            return BLACK_KEYS[sq];
+        } else {
+            return WHITE_KEYS[sq];
+        }
+    }
+
+    /**
+     * flipKey returns the change in hash when every piece on a bitboard
+     * switches color.
+     *
+     * @param flipped bitboard of flipped pieces
+     * @return key to XOR into the hash
+     */
+    public static long flipKey(long flipped) {
+        long h = 0L;
+        while (flipped != 0) {
+            h ^= FLIP_KEYS[Long.numberOfTrailingZeros(flipped)];
+            flipped &= flipped - 1;
+        }
+        return h;
+    }
+
+}
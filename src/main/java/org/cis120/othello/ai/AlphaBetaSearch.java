@@ -0,0 +1,414 @@
+package org.cis120.othello.ai;
+
+import java.util.function.BooleanSupplier;
+
+import org.cis120.othello.Bitboards;
+import org.cis120.othello.Zobrist;
+
+/**
+ * This class searches Othello positions for the best move using negamax
+ * with alpha-beta pruning. The search deepens one ply at a time until it
+ * runs out of time or reaches its maximum depth, and always returns the
+ * best move of the last iteration that finished.
+ *
+ * Positions are passed around as a pair of bitboards (the pieces of the
+ * player to move and the pieces of the opponent), so making a move is just
+ * computing two new longs and unmaking it is returning from the call.
+ * Moves are ordered so the most promising ones are searched first: at the
+ * root by the scores from the previous iteration, and below the root by
+ * how few replies they leave the opponent and by the square weights in
+ * Evaluator.java. Results are saved in a TranspositionTable.java keyed by
+ * Zobrist hash, so positions reached through different move orders (and
+ * positions from earlier iterations) are not searched twice, and the best
+ * move stored for a position is tried first.
+ */
+public class AlphaBetaSearch implements Searcher {
+
+    // larger than any score the search can return
+    static final int INFINITY = 1000000;
+
+    // deepest ply the move buffers can hold (depth plus passes)
+    private static final int MAX_PLY = 128;
+
+    // remaining depth at which moves are ordered by opponent mobility
+    private static final int MOBILITY_ORDER_DEPTH = 3;
+
+    // how often (in nodes) the clock is checked
+    private static final int CLOCK_MASK = 2047;
+
+    // time budget per move in milliseconds
+    private final long timeMillis;
+
+    // maximum search depth
+    private final int maxDepth;
+
+    // results of positions already searched
+    private final TranspositionTable table;
+
+    // default size of the transposition table (2^20 entries, 16 MB)
+    private static final int DEFAULT_TABLE_BITS = 20;
+
+    // moves and ordering keys for each ply, reused between searches
+    private final int[][] moveBuffer = new int[MAX_PLY][64];
+    private final int[][] keyBuffer = new int[MAX_PLY][64];
+
+    // search state
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+
+    // extra stop condition checked with the clock, or null for none
+    private BooleanSupplier stop;
+
+    /**
+     * Constructor sets up a search with a time budget and depth limit.
+     *
+     * @param timeMillis time budget per move in milliseconds
+     * @param maxDepth   maximum search depth in plies
+     */
+    public AlphaBetaSearch(long timeMillis, int maxDepth) {
+        this(timeMillis, maxDepth, new TranspositionTable(DEFAULT_TABLE_BITS));
+    }
+
+    /**
+     * Constructor sets up a search with a time budget, depth limit and
+     * transposition table.
+     *
+     * @param timeMillis time budget per move in milliseconds
+     * @param maxDepth   maximum search depth in plies
+     * @param table      transposition table to probe and fill
+     */
+    public AlphaBetaSearch(
+            long timeMillis, int maxDepth, TranspositionTable table
+    ) {
+        if ((timeMillis <= 0) || (maxDepth <= 0) || (table == null)) {
+            throw new IllegalArgumentException();
+        }
+        this.timeMillis = timeMillis;
+        this.maxDepth = maxDepth;
+        this.table = table;
+    }
+
+    /**
+     * search finds the best move for the player to move, treating the
+     * player to move as black for hashing.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return best move found, with a move of -1 if the player has to pass
+     */
+    public SearchResult search(long own, long opp) {
+        return search(own, opp, true);
+    }
+
+    /**
+     * search finds the best move for the player to move.
+     *
+     * @param own         pieces of the player to move
+     * @param opp         pieces of the opponent
+     * @param blackToMove whether the player to move is black
+     * @return best move found, with a move of -1 if the player has to pass
+     */
+    @Override
+    public SearchResult search(long own, long opp, boolean blackToMove) {
+        long start = System.nanoTime();
+        this.nodes = 0;
+        this.aborted = false;
+        this.deadline = start + timeMillis * 1000000L;
+        this.stop = null;
+        table.newSearch();
+
+        int color = blackToMove ? 1 : 2;
+        long key;
+        if (blackToMove) {
+            key = Zobrist.hash(own, opp, true);
+        } else {
+            key = Zobrist.hash(opp, own, false);
+        }
+
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            return new SearchResult(-1, 0, 0, 0, 0);
+        }
+
+        // root moves, ordered by square weight for the first iteration
+        int n = orderMoves(own, opp, moves, 0, -1, moveBuffer[0], keyBuffer[0]);
+        int[] rootMoves = new int[n];
+        int[] rootScores = new int[n];
+        System.arraycopy(moveBuffer[0], 0, rootMoves, 0, n);
+
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int completed = 0;
+        int empties = 64 - Long.bitCount(own | opp);
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int alpha = -INFINITY;
+            int iterationBest = rootMoves[0];
+            for (int i = 0; i < n; i++) {
+                int sq = rootMoves[i];
+                long f = Bitboards.flips(own, opp, sq);
+                int score = -negamax(
+                        opp & ~f, own | f | (1L << sq), childKey(key, color, sq, f),
+                        3 - color, depth - 1, -INFINITY, -alpha, false, 1
+                );
+                if (aborted) {
+                    break;
+                }
+                rootScores[i] = score;
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = sq;
+                }
+            }
+
+            // only trust iterations that finished
+            if (aborted) {
+                break;
+            }
+            bestMove = iterationBest;
+            bestScore = alpha;
+            completed = depth;
+            sortByScore(rootMoves, rootScores, n);
+
+            // every line has reached the end of the game
+            if (depth >= empties) {
+                break;
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1000000L;
+        return new SearchResult(bestMove, bestScore, completed, nodes, millis);
+    }
+
+    /**
+     * searchNode searches a single position to a fixed depth, for use by
+     * ParallelSearch.java on the parts of the tree it does not split.
+     * After it returns, wasAborted tells whether the score can be used.
+     *
+     * @param own      pieces of the player to move
+     * @param opp      pieces of the opponent
+     * @param key      Zobrist hash of the position
+     * @param color    color of the player to move (1 or 2)
+     * @param depth    remaining depth
+     * @param alpha    lower bound of the window
+     * @param beta     upper bound of the window
+     * @param deadline System.nanoTime() value at which to stop
+     * @param stop     extra stop condition checked with the clock
+     * @return score of the position
+     */
+    int searchNode(
+            long own, long opp, long key, int color, int depth, int alpha,
+            int beta, long deadline, BooleanSupplier stop
+    ) {
+        this.nodes = 0;
+        this.aborted = false;
+        this.deadline = deadline;
+        this.stop = stop;
+        return negamax(own, opp, key, color, depth, alpha, beta, false, 0);
+    }
+
+    // whether the last search ran out of time or was stopped
+    boolean wasAborted() {
+        return this.aborted;
+    }
+
+    /**
+     * negamax returns the score of a position for the player to move,
+     * searching depth plies ahead. Scores at or above beta and at or below
+     * alpha are bounds rather than exact values.
+     *
+     * @param own    pieces of the player to move
+     * @param opp    pieces of the opponent
+     * @param key    Zobrist hash of the position
+     * @param color  color of the player to move (1 or 2)
+     * @param depth  remaining depth
+     * @param alpha  lower bound of the window
+     * @param beta   upper bound of the window
+     * @param passed whether the previous player passed
+     * @param ply    distance from the root
+     * @return score of the position
+     */
+    private int negamax(
+            long own, long opp, long key, int color, int depth, int alpha,
+            int beta, boolean passed, int ply
+    ) {
+        nodes++;
+        if (((nodes & CLOCK_MASK) == 0) && ((System.nanoTime() >= deadline)
+                || ((stop != null) && stop.getAsBoolean()))) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            // two passes in a row end the game
+            if (passed) {
+                return Evaluator.finalScore(own, opp);
+            }
+            return -negamax(
+                    opp, own, key ^ Zobrist.WHITE_TO_MOVE, 3 - color, depth,
+                    -beta, -alpha, true, ply + 1
+            );
+        }
+
+        if (depth == 0) {
+            return Evaluator.evaluate(own, opp, moves);
+        }
+
+        // reuse the stored result if it was searched deep enough
+        int ttMove = -1;
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if ((bound == TranspositionTable.EXACT)
+                        || ((bound == TranspositionTable.LOWER) && (score >= beta))
+                        || ((bound == TranspositionTable.UPPER) && (score <= alpha))) {
+                    return score;
+                }
+            }
+        }
+
+        int alphaStart = alpha;
+        int n = orderMoves(
+                own, opp, moves, depth, ttMove, moveBuffer[ply], keyBuffer[ply]
+        );
+        int[] list = moveBuffer[ply];
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < n; i++) {
+            int sq = list[i];
+            long f = Bitboards.flips(own, opp, sq);
+            int score = -negamax(
+                    opp & ~f, own | f | (1L << sq), childKey(key, color, sq, f),
+                    3 - color, depth - 1, -beta, -alpha, false, ply + 1
+            );
+            if (score > best) {
+                best = score;
+                bestMove = sq;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        // results of an interrupted search are not trustworthy
+        if (!aborted) {
+            int bound;
+            if (best <= alphaStart) {
+                bound = TranspositionTable.UPPER;
+            } else if (best >= beta) {
+                bound = TranspositionTable.LOWER;
+            } else {
+                bound = TranspositionTable.EXACT;
+            }
+            table.store(key, depth, best, bound, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * childKey returns the hash of the position after a move.
+     *
+     * @param key   hash of the position before the move
+     * @param color color of the player making the move
+     * @param sq    square of the move
+     * @param f     pieces flipped by the move
+     * @return hash of the new position
+     */
+    static long childKey(long key, int color, int sq, long f) {
+        return key ^ Zobrist.pieceKey(color, sq) ^ Zobrist.flipKey(f)
+                ^ Zobrist.WHITE_TO_MOVE;
+    }
+
+    /**
+     * orderMoves writes the legal moves of a position into a move list,
+     * best first, and returns how many there are.
+     *
+     * @param own    pieces of the player to move
+     * @param opp    pieces of the opponent
+     * @param moves  legal moves of the player to move
+     * @param depth  remaining depth
+     * @param ttMove best move from the transposition table, or -1
+     * @param list   array to write the moves into
+     * @param keys   scratch array for the ordering keys
+     * @return number of moves
+     */
+    static int orderMoves(
+            long own, long opp, long moves, int depth, int ttMove,
+            int[] list, int[] keys
+    ) {
+        int n = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            int key = Evaluator.SQUARE_WEIGHTS[sq];
+            if (sq == ttMove) {
+                // the stored best move goes first
+                key = INFINITY;
+            } else if (depth >= MOBILITY_ORDER_DEPTH) {
+                // fewer replies for the opponent is better
+                long f = Bitboards.flips(own, opp, sq);
+                long replies = Bitboards.legalMoves(
+                        opp & ~f, own | f | (1L << sq)
+                );
+                key -= 20 * Long.bitCount(replies);
+            }
+
+            // insertion sort, highest key first
+            int i = n;
+            while ((i > 0) && (keys[i - 1] < key)) {
+                list[i] = list[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            list[i] = sq;
+            keys[i] = key;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * sortByScore sorts the root moves by their scores, highest first,
+     * keeping the previous order for equal scores.
+     *
+     * @param moves  root moves
+     * @param scores scores of the root moves
+     * @param n      number of moves
+     */
+    private static void sortByScore(int[] moves, int[] scores, int n) {
+        for (int i = 1; i < n; i++) {
+            int move = moves[i];
+            int score = scores[i];
+            int j = i;
+            while ((j > 0) && (scores[j - 1] < score)) {
+                moves[j] = moves[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            moves[j] = move;
+            scores[j] = score;
+        }
+    }
+
+    // getter method for the number of positions visited by the last search
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    // getter method for the transposition table
+    public TranspositionTable getTable() {
+        return this.table;
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.cis120.othello.ai;
+
+import org.cis120.othello.Othello;
+import org.cis120.othello.Position;
+
+/**
+ * This class is a computer opponent for an Othello game. It searches the
+ * current position with a Searcher.java (AlphaBetaSearch.java on one
+ * thread by default, or ParallelSearch.java) and plays the best move it
+ * finds through Othello.playTurn, so the game model keeps track of the
+ * move history, undo and winner as if a person had played it.
+ *
+ * A player can also be given an OpeningBook.java: positions found in the
+ * book are answered with the book move without searching.
+ */
+public class ComputerPlayer {
+
+    // default time budget per move in milliseconds
+    public static final long DEFAULT_TIME_MILLIS = 500;
+
+    // default maximum search depth
+    public static final int DEFAULT_MAX_DEPTH = 60;
+
+    // search used to pick moves
+    private final Searcher search;
+
+    // book probed before searching, or null
+    private final OpeningBook book;
+
+    /**
+     * Constructor sets up a computer player with the default time budget.
+     */
+    public ComputerPlayer() {
+        this(DEFAULT_TIME_MILLIS, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Constructor sets up a computer player with a given time budget and
+     * depth limit.
+     *
+     * @param timeMillis time budget per move in milliseconds
+     * @param maxDepth   maximum search depth in plies
+     */
+    public ComputerPlayer(long timeMillis, int maxDepth) {
+        this(new AlphaBetaSearch(timeMillis, maxDepth));
+    }
+
+    /**
+     * Constructor sets up a computer player that picks moves with the
+     * given searcher.
+     *
+     * @param search searcher used to pick moves
+     */
+    public ComputerPlayer(Searcher search) {
+        this(search, null);
+    }
+
+    /**
+     * Constructor sets up a computer player that plays book moves where it
+     * can and picks other moves with the given searcher.
+     *
+     * @param search searcher used to pick moves
+     * @param book   opening book, or null for none
+     */
+    public ComputerPlayer(Searcher search, OpeningBook book) {
+        if (search == null) {
+            throw new IllegalArgumentException();
+        }
+        this.search = search;
+        this.book = book;
+    }
+
+    /**
+     * chooseMove finds the best move for the player whose turn it is, from
+     * the book if the position is in it, or else by searching.
+     *
+     * @param o game to search
+     * @return best move found, with a move of -1 if there is none
+     */
+    public SearchResult chooseMove(Othello o) {
+        return chooseMove(o.getPosition());
+    }
+
+    /**
+     * chooseMove finds the best move in a snapshot of a game, so that it
+     * can be called from another thread than the one playing the game.
+     *
+     * @param p position to search
+     * @return best move found, with a move of -1 if there is none
+     */
+    public SearchResult chooseMove(Position p) {
+        boolean black = p.getCurrentPlayer();
+        long own = black ? p.getBlackBoard() : p.getWhiteBoard();
+        long opp = black ? p.getWhiteBoard() : p.getBlackBoard();
+        if (book != null) {
+            SearchResult r = book.probe(own, opp, black);
+            if (r != null) {
+                return r;
+            }
+        }
+        return search.search(own, opp, black);
+    }
+
+    /**
+     * playTurn plays the best move for the player whose turn it is.
+     *
+     * @param o game to play in
+     * @return whether a move was played
+     */
+    public boolean playTurn(Othello o) {
+        if (o.getGameOver()) {
+            return false;
+        }
+        SearchResult result = chooseMove(o);
+        if (result.getMove() < 0) {
+            return false;
+        }
+        return o.playTurn(result.getRow(), result.getColumn());
+    }
+
+}
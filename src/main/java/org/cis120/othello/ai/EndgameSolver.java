@@ -0,0 +1,726 @@
+package org.cis120.othello.ai;
+
+import org.cis120.othello.Bitboards;
+import org.cis120.othello.Zobrist;
+
+/**
+ * This class plays out Othello positions with few empty squares perfectly,
+ * returning the exact final disc differential under best play by both
+ * sides (with empty squares going to the winner, as in Evaluator.java) and
+ * a move that achieves it.
+ *
+ * The solver is a plain alpha-beta search over the whole remaining game,
+ * made fast by searching good moves first:
+ * - with many empties, moves that leave the opponent the fewest replies
+ *   are tried first ("fastest first"), and results are kept in a
+ *   TranspositionTable.java. Near the root, a move whose resulting
+ *   position is already in the table with a good enough score cuts the
+ *   search off before any move is searched (enhanced transposition
+ *   cutoff), and so does a score bound from the opponent's stable pieces;
+ * - with fewer empties, moves in regions of the board with an odd number
+ *   of empty squares are tried first ("parity"), since the player who
+ *   moves last in a region usually does well there;
+ * - the last four empties are handled by special routines that work on a
+ *   list of the empty squares instead of generating moves for the whole
+ *   board, skipping squares with no opponent piece next to them.
+ *
+ * Deciding whether a position with 20 empties is won (winLossDraw) takes
+ * a few hundred thousand to a few million positions, well under a second
+ * (see EndgameBenchmark in src/jmh).
+ */
+public class EndgameSolver {
+
+    // empties at or above which moves are ordered by opponent mobility
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+
+    // empties at or above which results are stored in the table
+    private static final int TABLE_EMPTIES = 7;
+
+    // empties at or above which the positions after each move are looked
+    // up in the table before searching any of them
+    private static final int ETC_EMPTIES = 14;
+
+    // default size of the transposition table (2^20 entries, 16 MB)
+    private static final int DEFAULT_TABLE_BITS = 20;
+
+    // scores lie strictly between these bounds
+    private static final int MIN_SCORE = -65;
+    private static final int MAX_SCORE = 65;
+
+    // the four corners
+    private static final long CORNERS = 0x8100000000000081L;
+
+    // the four 4 x 4 quadrants of the board, used for parity
+    private static final long[] QUADRANTS = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+        0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    // quadrant of each square
+    private static final int[] QUADRANT_OF = new int[64];
+
+    // squares next to each square
+    private static final long[] NEIGHBOURS = new long[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            QUADRANT_OF[sq] = ((sq >>> 5) << 1) | ((sq & 7) >>> 2);
+            NEIGHBOURS[sq] = neighbours(1L << sq);
+        }
+    }
+
+    // first and last rows, and the squares from which the next square
+    // along a line would leave the board, going towards higher square
+    // indices (EDGE_UP) or lower ones (EDGE_DOWN) by the given shift
+    private static final long ROW_0 = 0x00000000000000FFL;
+    private static final long ROW_7 = 0xFF00000000000000L;
+    private static final long EDGE_UP_1 = Bitboards.COLUMN_7;
+    private static final long EDGE_DOWN_1 = Bitboards.COLUMN_0;
+    private static final long EDGE_UP_7 = Bitboards.COLUMN_0 | ROW_7;
+    private static final long EDGE_DOWN_7 = Bitboards.COLUMN_7 | ROW_0;
+    private static final long EDGE_UP_8 = ROW_7;
+    private static final long EDGE_DOWN_8 = ROW_0;
+    private static final long EDGE_UP_9 = Bitboards.COLUMN_7 | ROW_7;
+    private static final long EDGE_DOWN_9 = Bitboards.COLUMN_0 | ROW_0;
+
+    // results of positions already solved
+    private final TranspositionTable table;
+
+    // move lists, ordering keys and the pieces each move overtakes, for
+    // each number of empties, reused instead of allocating new arrays at
+    // every position
+    private final int[][] lists = new int[64][64];
+    private final int[][] keys = new int[64][64];
+    private final long[][] flipLists = new long[64][64];
+
+    // number of positions visited by the last solve
+    private long nodes;
+
+    /**
+     * Constructor sets up a solver with its own transposition table.
+     */
+    public EndgameSolver() {
+        this(new TranspositionTable(DEFAULT_TABLE_BITS));
+    }
+
+    /**
+     * Constructor sets up a solver with the given transposition table.
+     *
+     * @param table transposition table to probe and fill
+     */
+    public EndgameSolver(TranspositionTable table) {
+        if (table == null) {
+            throw new IllegalArgumentException();
+        }
+        this.table = table;
+    }
+
+    /**
+     * solve finds the exact result of a position and a best move.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return result with the best move (-1 if the player has to pass or
+     *         the game is over), the exact final disc differential for
+     *         the player to move as the score and the number of empties as
+     *         the depth
+     */
+    public SearchResult solve(long own, long opp) {
+        long start = System.nanoTime();
+        this.nodes = 0;
+        table.newSearch();
+        int empties = 64 - Long.bitCount(own | opp);
+
+        long moves = Bitboards.legalMoves(own, opp);
+        int bestMove = -1;
+        int best;
+        if (moves == 0) {
+            best = search(own, opp, MIN_SCORE, MAX_SCORE, false, empties);
+        } else {
+            int[] list = lists[empties];
+            int n = orderByMobility(own, opp, moves, list, keys[empties], flipLists[empties]);
+
+            // narrow down the score by bisection with null-window searches,
+            // each of which costs about as much as a win/loss/draw search.
+            // Scores are always even, so testing odd values splits them.
+            int lower = -64;
+            int upper = 64;
+            bestMove = list[0];
+            while (lower < upper) {
+                int beta = ((lower + upper) >> 1) | 1;
+                int score = MIN_SCORE;
+                for (int i = 0; i < n; i++) {
+                    int sq = list[i];
+                    long f = Bitboards.flips(own, opp, sq);
+                    int s = -search(
+                            opp & ~f, own | f | (1L << sq), -beta, -beta + 1,
+                            false, empties - 1
+                    );
+                    if (s > score) {
+                        score = s;
+                        if (s >= beta) {
+                            // this move reaches beta, so try it first next time
+                            bestMove = sq;
+                            System.arraycopy(list, 0, list, 1, i);
+                            list[0] = sq;
+                            break;
+                        }
+                    }
+                }
+                if (score >= beta) {
+                    lower = score;
+                } else {
+                    upper = score;
+                }
+            }
+            best = lower;
+        }
+
+        long millis = (System.nanoTime() - start) / 1000000L;
+        return new SearchResult(bestMove, best, empties, nodes, millis);
+    }
+
+    /**
+     * score returns the exact final disc differential of a position.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return final disc differential for the player to move
+     */
+    public int score(long own, long opp) {
+        this.nodes = 0;
+        table.newSearch();
+        int empties = 64 - Long.bitCount(own | opp);
+        return search(own, opp, MIN_SCORE, MAX_SCORE, false, empties);
+    }
+
+    /**
+     * winLossDraw finds whether a position is won, lost or drawn, which is
+     * faster than finding the exact score.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return 1 if the player to move wins, -1 if they lose, 0 for a draw
+     */
+    public int winLossDraw(long own, long opp) {
+        this.nodes = 0;
+        table.newSearch();
+        int empties = 64 - Long.bitCount(own | opp);
+        int score = search(own, opp, -1, 1, false, empties);
+        return Integer.signum(score);
+    }
+
+    // getter method for the number of positions visited by the last solve
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * search returns the final disc differential of a position for the
+     * player to move. Scores at or above beta and at or below alpha are
+     * bounds rather than exact values.
+     *
+     * @param own     pieces of the player to move
+     * @param opp     pieces of the opponent
+     * @param alpha   lower bound of the window
+     * @param beta    upper bound of the window
+     * @param passed  whether the previous player passed
+     * @param empties number of empty squares
+     * @return final disc differential
+     */
+    private int search(
+            long own, long opp, int alpha, int beta, boolean passed, int empties
+    ) {
+        if (empties == 0) {
+            return Evaluator.discDifference(own, opp);
+        }
+        if (empties <= 4) {
+            return searchLast(own, opp, alpha, beta, empties);
+        }
+        if (empties >= FASTEST_FIRST_EMPTIES) {
+            return searchFastestFirst(own, opp, alpha, beta, passed, empties);
+        }
+        return searchParity(own, opp, alpha, beta, passed, empties);
+    }
+
+    /**
+     * searchFastestFirst searches a position with many empties, trying
+     * first the moves that leave the opponent the fewest replies.
+     */
+    private int searchFastestFirst(
+            long own, long opp, int alpha, int beta, boolean passed, int empties
+    ) {
+        nodes++;
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return Evaluator.discDifference(own, opp);
+            }
+            return -search(opp, own, -beta, -alpha, true, empties);
+        }
+
+        // the opponent keeps their stable pieces, which may already put
+        // the best possible score at or below alpha
+        if (64 - 2 * Long.bitCount(opp) <= alpha) {
+            int bound = 64 - 2 * Long.bitCount(stable(opp, own));
+            if (bound <= alpha) {
+                return bound;
+            }
+        }
+
+        // reuse the stored result if there is one
+        long key = 0L;
+        int ttMove = -1;
+        boolean useTable = empties >= TABLE_EMPTIES;
+        if (useTable) {
+            key = Zobrist.hash(own, opp, true);
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.MISS) {
+                ttMove = TranspositionTable.move(entry);
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if ((bound == TranspositionTable.EXACT)
+                        || ((bound == TranspositionTable.LOWER) && (score >= beta))
+                        || ((bound == TranspositionTable.UPPER) && (score <= alpha))) {
+                    return score;
+                }
+            }
+        }
+
+        int[] list = lists[empties];
+        long[] flips = flipLists[empties];
+        int n = orderByMobility(own, opp, moves, list, keys[empties], flips);
+        if (ttMove >= 0) {
+            // the stored best move goes first
+            for (int i = 0; i < n; i++) {
+                if (list[i] == ttMove) {
+                    long f = flips[i];
+                    System.arraycopy(list, 0, list, 1, i);
+                    System.arraycopy(flips, 0, flips, 1, i);
+                    list[0] = ttMove;
+                    flips[0] = f;
+                    break;
+                }
+            }
+        }
+
+        if (empties >= ETC_EMPTIES) {
+            // a move to a position stored with a low enough score for the
+            // opponent reaches beta without searching anything
+            for (int i = 0; i < n; i++) {
+                int sq = list[i];
+                long f = flips[i];
+                long entry = table.probe(Zobrist.hash(opp & ~f, own | f | (1L << sq), true));
+                if ((entry != TranspositionTable.MISS)
+                        && (TranspositionTable.bound(entry) != TranspositionTable.LOWER)
+                        && (-TranspositionTable.score(entry) >= beta)) {
+                    int score = -TranspositionTable.score(entry);
+                    table.store(key, empties, score, TranspositionTable.LOWER, sq);
+                    return score;
+                }
+            }
+        }
+
+        int alphaStart = alpha;
+        int best = MIN_SCORE;
+        int bestMove = -1;
+        for (int i = 0; i < n; i++) {
+            int sq = list[i];
+            long f = flips[i];
+            long nextOwn = opp & ~f;
+            long nextOpp = own | f | (1L << sq);
+            int score;
+            if (i == 0) {
+                score = -search(nextOwn, nextOpp, -beta, -alpha, false, empties - 1);
+            } else {
+                // prove the move is no better, re-searching if it is
+                score = -search(nextOwn, nextOpp, -alpha - 1, -alpha, false, empties - 1);
+                if ((score > alpha) && (score < beta)) {
+                    score = -search(nextOwn, nextOpp, -beta, -score, false, empties - 1);
+                }
+            }
+            if (score > best) {
+                best = score;
+                bestMove = sq;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (useTable) {
+            int bound;
+            if (best <= alphaStart) {
+                bound = TranspositionTable.UPPER;
+            } else if (best >= beta) {
+                bound = TranspositionTable.LOWER;
+            } else {
+                bound = TranspositionTable.EXACT;
+            }
+            table.store(key, empties, best, bound, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * searchParity searches a position with a few empties, trying first
+     * the moves in quadrants with an odd number of empty squares.
+     */
+    private int searchParity(
+            long own, long opp, int alpha, int beta, boolean passed, int empties
+    ) {
+        nodes++;
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return Evaluator.discDifference(own, opp);
+            }
+            return -search(opp, own, -beta, -alpha, true, empties);
+        }
+
+        long oddMask = oddQuadrants(~(own | opp));
+        int best = MIN_SCORE;
+        // odd quadrants first, then the rest
+        for (int pass = 0; pass < 2; pass++) {
+            long m;
+            if (pass == 0) {
+                m = moves & oddMask;
+            } else {
+                m = moves & ~oddMask;
+            }
+            while (m != 0) {
+                int sq = Long.numberOfTrailingZeros(m);
+                m &= m - 1;
+                long f = Bitboards.flips(own, opp, sq);
+                int score = -search(
+                        opp & ~f, own | f | (1L << sq), -beta, -alpha, false,
+                        empties - 1
+                );
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            return best;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * searchLast searches a position with four or fewer empties by making
+     * a list of the empty squares, in parity order for four empties.
+     */
+    private int searchLast(long own, long opp, int alpha, int beta, int empties) {
+        long empty = ~(own | opp);
+        int sq1 = Long.numberOfTrailingZeros(empty);
+        empty &= empty - 1;
+        if (empties == 1) {
+            return solve1(own, opp, sq1);
+        }
+        int sq2 = Long.numberOfTrailingZeros(empty);
+        empty &= empty - 1;
+        if (empties == 2) {
+            return solve2(own, opp, alpha, beta, sq1, sq2, false);
+        }
+        int sq3 = Long.numberOfTrailingZeros(empty);
+        empty &= empty - 1;
+        if (empties == 3) {
+            return solve3(own, opp, alpha, beta, sq1, sq2, sq3, false);
+        }
+        int sq4 = Long.numberOfTrailingZeros(empty);
+
+        // four empties split 2-1-1 between quadrants: the two lone squares
+        // (odd quadrants) go first. Every other split is all odd or all even.
+        int q1 = QUADRANT_OF[sq1];
+        int q2 = QUADRANT_OF[sq2];
+        int q3 = QUADRANT_OF[sq3];
+        int q4 = QUADRANT_OF[sq4];
+        if ((q1 == q2) && (q3 != q1) && (q4 != q1) && (q3 != q4)) {
+            return solve4(own, opp, alpha, beta, sq3, sq4, sq1, sq2, false);
+        } else if ((q1 == q3) && (q2 != q1) && (q4 != q1) && (q2 != q4)) {
+            return solve4(own, opp, alpha, beta, sq2, sq4, sq1, sq3, false);
+        } else if ((q1 == q4) && (q2 != q1) && (q3 != q1) && (q2 != q3)) {
+            return solve4(own, opp, alpha, beta, sq2, sq3, sq1, sq4, false);
+        } else if ((q2 == q3) && (q1 != q2) && (q4 != q2) && (q1 != q4)) {
+            return solve4(own, opp, alpha, beta, sq1, sq4, sq2, sq3, false);
+        } else if ((q2 == q4) && (q1 != q2) && (q3 != q2) && (q1 != q3)) {
+            return solve4(own, opp, alpha, beta, sq1, sq3, sq2, sq4, false);
+        }
+        return solve4(own, opp, alpha, beta, sq1, sq2, sq3, sq4, false);
+    }
+
+    // searches four empties, trying them in the given order
+    private int solve4(
+            long own, long opp, int alpha, int beta, int sq1, int sq2, int sq3,
+            int sq4, boolean passed
+    ) {
+        nodes++;
+        int best = MIN_SCORE;
+        long f;
+        if (((opp & NEIGHBOURS[sq1]) != 0) && ((f = Bitboards.flips(own, opp, sq1)) != 0)) {
+            best = -solve3(opp & ~f, own | f | (1L << sq1), -beta, -alpha, sq2, sq3, sq4, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if (((opp & NEIGHBOURS[sq2]) != 0) && ((f = Bitboards.flips(own, opp, sq2)) != 0)) {
+            int score = -solve3(opp & ~f, own | f | (1L << sq2), -beta, -alpha, sq1, sq3, sq4, false);
+            if (score >= beta) {
+                return score;
+            }
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        if (((opp & NEIGHBOURS[sq3]) != 0) && ((f = Bitboards.flips(own, opp, sq3)) != 0)) {
+            int score = -solve3(opp & ~f, own | f | (1L << sq3), -beta, -alpha, sq1, sq2, sq4, false);
+            if (score >= beta) {
+                return score;
+            }
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        if (((opp & NEIGHBOURS[sq4]) != 0) && ((f = Bitboards.flips(own, opp, sq4)) != 0)) {
+            int score = -solve3(opp & ~f, own | f | (1L << sq4), -beta, -alpha, sq1, sq2, sq3, false);
+            if (score > best) {
+                best = score;
+            }
+        }
+        if (best == MIN_SCORE) {
+            // no move: pass, or the game is over
+            if (passed) {
+                return Evaluator.discDifference(own, opp);
+            }
+            return -solve4(opp, own, -beta, -alpha, sq1, sq2, sq3, sq4, true);
+        }
+        return best;
+    }
+
+    // searches three empties
+    private int solve3(
+            long own, long opp, int alpha, int beta, int sq1, int sq2, int sq3,
+            boolean passed
+    ) {
+        nodes++;
+        int best = MIN_SCORE;
+        long f;
+        if (((opp & NEIGHBOURS[sq1]) != 0) && ((f = Bitboards.flips(own, opp, sq1)) != 0)) {
+            best = -solve2(opp & ~f, own | f | (1L << sq1), -beta, -alpha, sq2, sq3, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if (((opp & NEIGHBOURS[sq2]) != 0) && ((f = Bitboards.flips(own, opp, sq2)) != 0)) {
+            int score = -solve2(opp & ~f, own | f | (1L << sq2), -beta, -alpha, sq1, sq3, false);
+            if (score >= beta) {
+                return score;
+            }
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        if (((opp & NEIGHBOURS[sq3]) != 0) && ((f = Bitboards.flips(own, opp, sq3)) != 0)) {
+            int score = -solve2(opp & ~f, own | f | (1L << sq3), -beta, -alpha, sq1, sq2, false);
+            if (score > best) {
+                best = score;
+            }
+        }
+        if (best == MIN_SCORE) {
+            // no move: pass, or the game is over
+            if (passed) {
+                return Evaluator.discDifference(own, opp);
+            }
+            return -solve3(opp, own, -beta, -alpha, sq1, sq2, sq3, true);
+        }
+        return best;
+    }
+
+    // searches two empties
+    private int solve2(
+            long own, long opp, int alpha, int beta, int sq1, int sq2,
+            boolean passed
+    ) {
+        nodes++;
+        int best = MIN_SCORE;
+        long f;
+        if (((opp & NEIGHBOURS[sq1]) != 0) && ((f = Bitboards.flips(own, opp, sq1)) != 0)) {
+            best = -solve1(opp & ~f, own | f | (1L << sq1), sq2);
+            if (best >= beta) {
+                return best;
+            }
+        }
+        if (((opp & NEIGHBOURS[sq2]) != 0) && ((f = Bitboards.flips(own, opp, sq2)) != 0)) {
+            int score = -solve1(opp & ~f, own | f | (1L << sq2), sq1);
+            if (score > best) {
+                best = score;
+            }
+        }
+        if (best == MIN_SCORE) {
+            // no move: pass, or the game is over
+            if (passed) {
+                return Evaluator.discDifference(own, opp);
+            }
+            return -solve2(opp, own, -beta, -alpha, sq1, sq2, true);
+        }
+        return best;
+    }
+
+    // scores the last empty square, for the player to move
+    private int solve1(long own, long opp, int sq) {
+        nodes++;
+        long f = Bitboards.flips(own, opp, sq);
+        if (f != 0) {
+            // board is full after the move
+            return 2 * Long.bitCount(own | f) + 2 - 64;
+        }
+        f = Bitboards.flips(opp, own, sq);
+        if (f != 0) {
+            // the opponent fills the last square instead
+            return 64 - 2 * (Long.bitCount(opp | f) + 1);
+        }
+        // nobody can move, the empty square goes to the winner
+        return Evaluator.discDifference(own, opp);
+    }
+
+    /**
+     * orderByMobility writes the legal moves into a list, ordered so that
+     * moves leaving the opponent the fewest replies (and the fewest empty
+     * squares next to our pieces, and ourselves the most moves) come first,
+     * with corners as a tie break.
+     *
+     * @param own   pieces of the player to move
+     * @param opp   pieces of the opponent
+     * @param moves legal moves of the player to move
+     * @param list  array to write the moves into
+     * @param keys  scratch array for the ordering keys
+     * @param flips array to write the pieces each move overtakes into
+     * @return number of moves
+     */
+    private static int orderByMobility(
+            long own, long opp, long moves, int[] list, int[] keys, long[] flips
+    ) {
+        int n = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long f = Bitboards.flips(own, opp, sq);
+            long nextOwn = opp & ~f;
+            long nextOpp = own | f | (1L << sq);
+            long replies = Bitboards.legalMoves(nextOwn, nextOpp);
+            // empty squares next to our pieces, where replies may open up
+            long frontier = neighbours(nextOpp) & ~(nextOwn | nextOpp);
+            // weight corners among the replies twice
+            int key = -(Long.bitCount(replies) + Long.bitCount(replies & CORNERS)) * 16
+                    - Long.bitCount(frontier) * 4
+                    + Long.bitCount(Bitboards.legalMoves(nextOpp, nextOwn)) * 4
+                    + Evaluator.SQUARE_WEIGHTS[sq] / 10;
+
+            // insertion sort, highest key first
+            int i = n;
+            while ((i > 0) && (keys[i - 1] < key)) {
+                list[i] = list[i - 1];
+                keys[i] = keys[i - 1];
+                flips[i] = flips[i - 1];
+                i--;
+            }
+            list[i] = sq;
+            keys[i] = key;
+            flips[i] = f;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * stable returns pieces that can never be overtaken. A piece is stable
+     * if along each of the four lines through it (row, column and the two
+     * diagonals) the line is full, or the piece is at the edge of the
+     * board or next to a stable piece of its own color.
+     *
+     * @param own pieces to find the stable ones of
+     * @param opp pieces of the other player
+     * @return bitboard of stable pieces of own
+     */
+    static long stable(long own, long opp) {
+        long filled = own | opp;
+        long line1 = sheltered(filled, 1, EDGE_UP_1, EDGE_DOWN_1);
+        long line7 = sheltered(filled, 7, EDGE_UP_7, EDGE_DOWN_7);
+        long line8 = sheltered(filled, 8, EDGE_UP_8, EDGE_DOWN_8);
+        long line9 = sheltered(filled, 9, EDGE_UP_9, EDGE_DOWN_9);
+
+        // grow the stable pieces from the corners until nothing changes
+        long stable = 0L;
+        while (true) {
+            long next = own & (line1 | beside(stable, 1, EDGE_UP_1, EDGE_DOWN_1))
+                    & (line7 | beside(stable, 7, EDGE_UP_7, EDGE_DOWN_7))
+                    & (line8 | beside(stable, 8, EDGE_UP_8, EDGE_DOWN_8))
+                    & (line9 | beside(stable, 9, EDGE_UP_9, EDGE_DOWN_9));
+            if (next == stable) {
+                return stable;
+            }
+            stable = next;
+        }
+    }
+
+    // squares at the edge of the board along a line, or on a full line
+    private static long sheltered(long filled, int shift, long up, long down) {
+        // squares from which every square to the edge is filled, going
+        // each way along the line
+        long fullUp = filled;
+        long fullDown = filled;
+        for (int k = 0; k < 7; k++) {
+            fullUp = filled & (up | ((fullUp & ~down) >>> shift));
+            fullDown = filled & (down | ((fullDown & ~up) << shift));
+        }
+        return (fullUp & fullDown) | up | down;
+    }
+
+    // squares next to a piece of b along a line
+    private static long beside(long b, int shift, long up, long down) {
+        return ((b & ~up) << shift) | ((b & ~down) >>> shift);
+    }
+
+    /**
+     * neighbours returns every square next to a piece on a bitboard.
+     *
+     * @param b bitboard
+     * @return squares adjacent to at least one piece of b
+     */
+    private static long neighbours(long b) {
+        long sideways = ((b << 1) & ~Bitboards.COLUMN_0)
+                | ((b >>> 1) & ~Bitboards.COLUMN_7);
+        long row = b | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * oddQuadrants returns the quadrants that contain an odd number of
+     * empty squares.
+     *
+     * @param empty bitboard of empty squares
+     * @return union of the odd quadrants
+     */
+    private static long oddQuadrants(long empty) {
+        long odd = 0L;
+        for (int q = 0; q < 4; q++) {
+            if ((Long.bitCount(empty & QUADRANTS[q]) & 1) != 0) {
+                odd |= QUADRANTS[q];
+            }
+        }
+        return odd;
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.cis120.othello.ai;
+
+import org.cis120.othello.Bitboards;
+
+/**
+ * This class scores Othello positions for the search. A position is scored
+ * from the point of view of the player to move using a table of square
+ * weights (corners are good, the squares next to them are bad) and the
+ * difference in mobility between the two players.
+ *
+ * The square weights are grouped into masks so that a position can be
+ * scored with a handful of bit counts instead of a loop over the board.
+ */
+public final class Evaluator {
+
+    // score for a finished game before adding the disc differential
+    public static final int WIN = 100000;
+
+    // weight of each square, indexed by 8 * row + column
+    static final int[] SQUARE_WEIGHTS = {
+        100, -20, 10, 5, 5, 10, -20, 100,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        10, -2, -1, -1, -1, -1, -2, 10,
+        5, -2, -1, -1, -1, -1, -2, 5,
+        5, -2, -1, -1, -1, -1, -2, 5,
+        10, -2, -1, -1, -1, -1, -2, 10,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        100, -20, 10, 5, 5, 10, -20, 100
+    };
+
+    // value of each legal move a player has over the opponent
+    private static final int MOBILITY_WEIGHT = 8;
+
+    // distinct square weights and the squares that carry them
+    private static final int[] GROUP_WEIGHTS = { 100, -20, 10, 5, -50, -2, -1 };
+    private static final long[] GROUP_MASKS = new long[GROUP_WEIGHTS.length];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            for (int i = 0; i < GROUP_WEIGHTS.length; i++) {
+                if (SQUARE_WEIGHTS[sq] == GROUP_WEIGHTS[i]) {
+                    GROUP_MASKS[i] |= 1L << sq;
+                }
+            }
+        }
+    }
+
+    // no instances
+    private Evaluator() {
+    }
+
+    /**
+     * evaluate scores a position that is not over for the player to move.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return score, higher is better for the player to move
+     */
+    public static int evaluate(long own, long opp) {
+        return evaluate(own, opp, Bitboards.legalMoves(own, opp));
+    }
+
+    /**
+     * evaluate scores a position that is not over for the player to move,
+     * reusing legal moves the caller has already generated.
+     *
+     * @param own      pieces of the player to move
+     * @param opp      pieces of the opponent
+     * @param ownMoves legal moves of the player to move
+     * @return score, higher is better for the player to move
+     */
+    public static int evaluate(long own, long opp, long ownMoves) {
+        int score = 0;
+        for (int i = 0; i < GROUP_MASKS.length; i++) {
+            long m = GROUP_MASKS[i];
+            score += GROUP_WEIGHTS[i]
+                    * (Long.bitCount(own & m) - Long.bitCount(opp & m));
+        }
+
+        int ownMobility = Long.bitCount(ownMoves);
+        int oppMobility = Long.bitCount(Bitboards.legalMoves(opp, own));
+        return score + MOBILITY_WEIGHT * (ownMobility - oppMobility);
+    }
+
+    /**
+     * finalScore scores a finished game for the player to move. Any win
+     * scores higher than any evaluated position, and bigger wins score
+     * higher than smaller ones.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return score, higher is better for the player to move
+     */
+    public static int finalScore(long own, long opp) {
+        int diff = discDifference(own, opp);
+        if (diff > 0) {
+            return WIN + diff;
+        } else if (diff < 0) {
+            return -WIN + diff;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * discDifference returns the final disc differential of a finished
+     * game, with empty squares going to the winner as in tournament rules.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the opponent
+     * @return own discs minus opponent discs
+     */
+    public static int discDifference(long own, long opp) {
+        int ownCount = Long.bitCount(own);
+        int oppCount = Long.bitCount(opp);
+        int empty = 64 - ownCount - oppCount;
+        if (ownCount > oppCount) {
+            return ownCount - oppCount + empty;
+        } else if (ownCount < oppCount) {
+            return ownCount - oppCount - empty;
+        } else {
+            return 0;
+        }
+    }
+
+}
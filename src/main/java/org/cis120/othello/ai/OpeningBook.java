@@ -0,0 +1,419 @@
+package org.cis120.othello.ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cis120.othello.Bitboards;
+import org.cis120.othello.Othello;
+import org.cis120.othello.PositionIndex;
+
+/**
+ * This class is an opening book: the best known move for positions early
+ * in the game, so that ComputerPlayer.java can answer them at once instead
+ * of spending its time budget searching them again. A book is built from
+ * played games with OpeningBook.Builder and stored in a file that is
+ * memory-mapped and searched with a binary search.
+ *
+ * Positions are keyed as in PositionIndex.canonicalKey, so a book entry
+ * also answers every rotation and reflection of its position. The move of
+ * an entry is stored in the canonical form of the position and turned
+ * back into a move on the actual board when it is probed.
+ *
+ * The file starts with a header:
+ * - 2 bytes: the magic number 'O' 'B'
+ * - 1 byte: the format version (VERSION)
+ * - 1 byte: unused
+ * - 4 bytes: the size of a record (RECORD_SIZE)
+ * - 8 bytes: the number of records
+ * followed by the records, sorted by key:
+ * - 8 bytes: the key of the position
+ * - 4 bytes: the score of the move, the average final disc differential
+ *   for the player to move in the games it was played in
+ * - 1 byte: the move, as a square index on the canonical board
+ * - 3 bytes: unused
+ */
+public final class OpeningBook implements Closeable {
+
+    // magic number at the start of the file
+    public static final byte MAGIC_0 = 'O';
+    public static final byte MAGIC_1 = 'B';
+
+    // current format version
+    public static final byte VERSION = 1;
+
+    // size of the file header before the first record
+    public static final int HEADER_SIZE = 16;
+
+    // size of a record
+    public static final int RECORD_SIZE = 16;
+
+    // offsets in a record
+    private static final int SCORE = 8;
+    private static final int MOVE = 12;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer records;
+
+    // number of records
+    private final int count;
+
+    /**
+     * Constructor opens a book file.
+     *
+     * @param fileName name of the book file
+     * @throws IllegalArgumentException if the file cannot be opened or is
+     *                                  not an opening book
+     */
+    public OpeningBook(String fileName) {
+        // check if fileName is null
+        if (fileName == null) {
+            System.out.println("Null input: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        try {
+            this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        } catch (IOException e) {
+            System.out.println("File Not Found: " + fileName);
+            throw new IllegalArgumentException();
+        }
+        try {
+            long size = channel.size();
+            if ((size < HEADER_SIZE) || (size > Integer.MAX_VALUE)) {
+                throw new IllegalArgumentException();
+            }
+            this.records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long n = records.getLong(8);
+            if ((records.get(0) != MAGIC_0) || (records.get(1) != MAGIC_1)
+                    || (records.get(2) != VERSION) || (records.getInt(4) != RECORD_SIZE)
+                    || (n < 0) || (size != HEADER_SIZE + n * RECORD_SIZE)) {
+                throw new IllegalArgumentException();
+            }
+            this.count = (int) n;
+        } catch (IOException e) {
+            closeQuietly();
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            closeQuietly();
+            System.out.println("not an opening book: " + fileName);
+            throw e;
+        }
+    }
+
+    /**
+     * probe looks up the book move for a position.
+     *
+     * @param own         pieces of the player to move
+     * @param opp         pieces of the opponent
+     * @param blackToMove whether the player to move is black
+     * @return the book move with a depth of 0 and, as its score, the
+     *         average final disc differential of the games it was played
+     *         in (not in Evaluator.java units like a searched score), or
+     *         null if the position is not in the book
+     */
+    public SearchResult probe(long own, long opp, boolean blackToMove) {
+        long start = System.nanoTime();
+        long black = blackToMove ? own : opp;
+        long white = blackToMove ? opp : own;
+        int i = find(PositionIndex.canonicalKey(black, white, blackToMove));
+        if (i < 0) {
+            return null;
+        }
+        int record = HEADER_SIZE + i * RECORD_SIZE;
+        long canonicalMove = 1L << records.get(record + MOVE);
+
+        // the legal move that the canonical symmetry turns into the book move
+        int s = Bitboards.canonicalSymmetry(black, white);
+        long moves = Bitboards.legalMoves(own, opp);
+        while (moves != 0) {
+            long move = moves & -moves;
+            if (Bitboards.symmetry(move, s) == canonicalMove) {
+                long millis = (System.nanoTime() - start) / 1000000;
+                return new SearchResult(
+                        Long.numberOfTrailingZeros(move), records.getInt(record + SCORE),
+                        0, 0, millis
+                );
+            }
+            moves ^= move;
+        }
+        // a key collision with a different position
+        return null;
+    }
+
+    // returns the index of the record with a key, or -1 if there is none
+    private int find(long key) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = records.getLong(HEADER_SIZE + mid * RECORD_SIZE);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // getter method for the number of positions in the book
+    public int size() {
+        return count;
+    }
+
+    /**
+     * close closes the book file.
+     */
+    @Override
+    public void close() {
+        closeQuietly();
+    }
+
+    // closes the file, ignoring errors
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+        }
+    }
+
+    /**
+     * Builder collects the moves played in the opening of a set of games
+     * and writes them as a book. For each position reached in the first
+     * plies of the games, the book keeps the move with the best average
+     * result for the player who played it, among the moves played in at
+     * least a minimum number of games.
+     */
+    public static final class Builder {
+
+        // default number of plies from the start that the book covers
+        public static final int DEFAULT_PLIES = 20;
+
+        // default number of games a move has to be played in
+        public static final int DEFAULT_MIN_GAMES = 2;
+
+        private final int plies;
+        private final int minGames;
+
+        // for each position key, the moves played in it: the number of
+        // moves n, then n triples of canonical move, games and total result
+        private final HashMap<Long, int[]> positions;
+
+        // number of games added
+        private long games;
+
+        /**
+         * Constructor sets up a builder with the default depth and minimum
+         * number of games.
+         */
+        public Builder() {
+            this(DEFAULT_PLIES, DEFAULT_MIN_GAMES);
+        }
+
+        /**
+         * Constructor sets up a builder.
+         *
+         * @param plies    number of plies from the start the book covers
+         * @param minGames number of games a move has to be played in to be
+         *                 in the book
+         */
+        public Builder(int plies, int minGames) {
+            if ((plies < 0) || (minGames < 1)) {
+                throw new IllegalArgumentException();
+            }
+            this.plies = plies;
+            this.minGames = minGames;
+            this.positions = new HashMap<Long, int[]>();
+        }
+
+        /**
+         * addGame counts the opening moves of a game. It can be called
+         * from several threads, for example by a GameImporter.Listener.
+         *
+         * @param o game to add
+         */
+        public synchronized void addGame(Othello o) {
+            int n = o.getNumTurns();
+            int diff = Bitboards.count(o.getBlackBoard()) - Bitboards.count(o.getWhiteBoard());
+            long[] board = { Bitboards.START_BLACK, Bitboards.START_WHITE };
+            for (int i = 0; i < Math.min(n, plies); i++) {
+                int sq = o.getMoveSquare(i);
+                boolean black = o.getMoveColor(i) == 1;
+                int s = Bitboards.canonicalSymmetry(board[0], board[1]);
+                long key = PositionIndex.canonicalKey(board[0], board[1], black);
+                int move = Long.numberOfTrailingZeros(Bitboards.symmetry(1L << sq, s));
+                add(key, move, black ? diff : -diff);
+                o.replayMove(i, board);
+            }
+            games++;
+        }
+
+        // adds the result of a game to a move played in a position
+        private void add(long key, int move, int result) {
+            int[] moves = positions.get(key);
+            if (moves == null) {
+                moves = new int[4];
+                positions.put(key, moves);
+            }
+            int n = moves[0];
+            for (int j = 1; j <= 3 * n; j += 3) {
+                if (moves[j] == move) {
+                    moves[j + 1]++;
+                    moves[j + 2] += result;
+                    return;
+                }
+            }
+            if (3 * n + 4 > moves.length) {
+                moves = Arrays.copyOf(moves, moves.length + 6);
+                positions.put(key, moves);
+            }
+            moves[3 * n + 1] = move;
+            moves[3 * n + 2] = 1;
+            moves[3 * n + 3] = result;
+            moves[0] = n + 1;
+        }
+
+        // getter method for the number of games added
+        public synchronized long getGames() {
+            return games;
+        }
+
+        /**
+         * write writes the book to a file, replacing it atomically.
+         *
+         * @param fileName name of the book file
+         * @return number of positions written
+         */
+        public synchronized int write(String fileName) {
+            // check if fileName is null
+            if (fileName == null) {
+                System.out.println("Null input: " + fileName);
+                throw new IllegalArgumentException();
+            }
+
+            // the best move of each position with one, as key, score, move
+            long[] keys = new long[positions.size()];
+            long[] entries = new long[positions.size()];
+            int count = 0;
+            for (Map.Entry<Long, int[]> e : positions.entrySet()) {
+                int[] moves = e.getValue();
+                int best = -1;
+                int bestScore = 0;
+                for (int j = 1; j <= 3 * moves[0]; j += 3) {
+                    if (moves[j + 1] < minGames) {
+                        continue;
+                    }
+                    int score = Math.round((float) moves[j + 2] / moves[j + 1]);
+                    if ((best < 0) || (score > bestScore)) {
+                        best = moves[j];
+                        bestScore = score;
+                    }
+                }
+                if (best >= 0) {
+                    keys[count] = e.getKey();
+                    entries[count] = ((long) bestScore << 8) | best;
+                    count++;
+                }
+            }
+            // sort by key, carrying the entries along
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            final long[] sortKeys = keys;
+            Arrays.sort(order, (x, y) -> Long.compare(sortKeys[x], sortKeys[y]));
+
+            ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE);
+            out.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) 0);
+            out.putInt(RECORD_SIZE).putLong(count);
+            for (int i = 0; i < count; i++) {
+                long entry = entries[order[i]];
+                out.putLong(keys[order[i]]).putInt((int) (entry >> 8));
+                out.put((byte) entry).put((byte) 0).putShort((short) 0);
+            }
+            out.flip();
+
+            Path path = Paths.get(fileName);
+            Path tmp = Paths.get(fileName + ".tmp");
+            try {
+                FileChannel channel = FileChannel.open(
+                        tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING
+                );
+                try {
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    channel.force(false);
+                } finally {
+                    channel.close();
+                }
+                try {
+                    Files.move(
+                            tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE
+                    );
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                System.out.println("I/O exception occured");
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * main builds a book from stored or self-played games:
+     * OpeningBook book [-p plies] [-m minGames] source..., where each
+     * source is read by SelfPlay.forEachGame.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        String usage = "usage: OpeningBook book [-p plies] [-m minGames] "
+                + "(file | -selfplay N)...";
+        if (args.length < 2) {
+            System.out.println(usage);
+            return;
+        }
+        int i = 1;
+        int plies = Builder.DEFAULT_PLIES;
+        int minGames = Builder.DEFAULT_MIN_GAMES;
+        for (; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-p")) {
+                plies = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-m")) {
+                minGames = Integer.parseInt(args[i + 1]);
+            } else {
+                break;
+            }
+        }
+
+        Builder builder = new Builder(plies, minGames);
+        if (!SelfPlay.forEachGame(args, i, builder::addGame)) {
+            System.out.println(usage);
+            return;
+        }
+        int positions = builder.write(args[0]);
+        System.out.println(builder.getGames() + " games, " + positions + " book positions");
+    }
+
+}
@@ -0,0 +1,330 @@
+package org.cis120.othello.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.cis120.othello.Bitboards;
+import org.cis120.othello.Zobrist;
+
+/**
+ * This class searches Othello positions on several threads at once using
+ * a ForkJoinPool and the "young brothers wait" rule: at each node near the
+ * top of the tree the first (most promising) move is searched on its own,
+ * and only once its score is known are the remaining moves handed out to
+ * other threads with the window it produced. If one of those moves turns
+ * out to be good enough to cut the node off, its brothers are told to stop.
+ *
+ * Positions are immutable pairs of bitboards, so each task just holds its
+ * own copy of the position. Nodes close to the leaves are searched by an
+ * AlphaBetaSearch.java owned by the worker thread, and every thread shares
+ * one TranspositionTable.java, which needs no locks.
+ */
+public class ParallelSearch implements Searcher {
+
+    // nodes with less remaining depth than this are searched on one thread
+    private static final int MIN_SPLIT_DEPTH = 4;
+
+    // default size of the shared transposition table (2^22 entries, 64 MB)
+    private static final int DEFAULT_TABLE_BITS = 22;
+
+    // time budget per move in milliseconds
+    private final long timeMillis;
+
+    // maximum search depth
+    private final int maxDepth;
+
+    // threads running the search
+    private final ForkJoinPool pool;
+
+    // results shared by every thread
+    private final TranspositionTable table;
+
+    // single-threaded searcher for each worker thread
+    private final ThreadLocal<AlphaBetaSearch> searchers;
+
+    // search state shared by every task
+    private volatile long deadline;
+    private volatile boolean timeUp;
+    private final LongAdder nodes = new LongAdder();
+
+    /**
+     * Constructor sets up a search with a time budget, depth limit and
+     * number of threads.
+     *
+     * @param timeMillis time budget per move in milliseconds
+     * @param maxDepth   maximum search depth in plies
+     * @param threads    number of threads to search with
+     */
+    public ParallelSearch(long timeMillis, int maxDepth, int threads) {
+        this(timeMillis, maxDepth, threads,
+                new TranspositionTable(DEFAULT_TABLE_BITS));
+    }
+
+    /**
+     * Constructor sets up a search with a time budget, depth limit, number
+     * of threads and transposition table.
+     *
+     * @param timeMillis time budget per move in milliseconds
+     * @param maxDepth   maximum search depth in plies
+     * @param threads    number of threads to search with
+     * @param table      transposition table shared by every thread
+     */
+    public ParallelSearch(
+            long timeMillis, int maxDepth, int threads, TranspositionTable table
+    ) {
+        if ((timeMillis <= 0) || (maxDepth <= 0) || (threads <= 0)
+                || (table == null)) {
+            throw new IllegalArgumentException();
+        }
+        this.timeMillis = timeMillis;
+        this.maxDepth = maxDepth;
+        this.pool = new ForkJoinPool(threads);
+        this.table = table;
+        this.searchers = ThreadLocal.withInitial(
+                () -> new AlphaBetaSearch(timeMillis, maxDepth, table)
+        );
+    }
+
+    /**
+     * search finds the best move for the player to move.
+     *
+     * @param own         pieces of the player to move
+     * @param opp         pieces of the opponent
+     * @param blackToMove whether the player to move is black
+     * @return best move found, with a move of -1 if the player has to pass
+     */
+    @Override
+    public SearchResult search(long own, long opp, boolean blackToMove) {
+        long start = System.nanoTime();
+        this.deadline = start + timeMillis * 1000000L;
+        this.timeUp = false;
+        this.nodes.reset();
+        table.newSearch();
+
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            return new SearchResult(-1, 0, 0, 0, 0);
+        }
+
+        int color = blackToMove ? 1 : 2;
+        long key;
+        if (blackToMove) {
+            key = Zobrist.hash(own, opp, true);
+        } else {
+            key = Zobrist.hash(opp, own, false);
+        }
+
+        int bestMove = Long.numberOfTrailingZeros(moves);
+        int bestScore = 0;
+        int completed = 0;
+        int empties = 64 - Long.bitCount(own | opp);
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            NodeTask root = new NodeTask(
+                    own, opp, key, color, depth, -AlphaBetaSearch.INFINITY,
+                    AlphaBetaSearch.INFINITY, null
+            );
+            int score = pool.invoke(root);
+
+            // only trust iterations that finished
+            if (!root.valid) {
+                break;
+            }
+            bestMove = root.bestMove;
+            bestScore = score;
+            completed = depth;
+
+            // every line has reached the end of the game
+            if (depth >= empties) {
+                break;
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1000000L;
+        return new SearchResult(bestMove, bestScore, completed, nodes.sum(), millis);
+    }
+
+    /**
+     * shutdown stops the worker threads. The search cannot be used after
+     * it has been shut down.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // getter method for the number of worker threads
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    // getter method for the shared transposition table
+    public TranspositionTable getTable() {
+        return this.table;
+    }
+
+    // checks the clock, remembering once time has run out
+    private boolean outOfTime() {
+        if (!timeUp && (System.nanoTime() >= deadline)) {
+            timeUp = true;
+        }
+        return timeUp;
+    }
+
+    /**
+     * NodeTask searches one position. Its result is only used if valid is
+     * set once it finishes, which is not the case if time ran out or one
+     * of its ancestors was cut off while it was running.
+     */
+    @SuppressWarnings("serial")
+    private final class NodeTask extends RecursiveTask<Integer> {
+
+        // position and window to search
+        private final long own;
+        private final long opp;
+        private final long key;
+        private final int color;
+        private final int depth;
+        private final int alpha;
+        private final int beta;
+
+        // task searching the position before this move, or null at the root
+        private final NodeTask parent;
+
+        // set when a child has failed high, so the other children can stop
+        private volatile boolean cutoff;
+
+        // results
+        private boolean valid;
+        private int bestMove = -1;
+
+        NodeTask(
+                long own, long opp, long key, int color, int depth, int alpha,
+                int beta, NodeTask parent
+        ) {
+            this.own = own;
+            this.opp = opp;
+            this.key = key;
+            this.color = color;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.parent = parent;
+        }
+
+        // whether this task or any of its ancestors should stop
+        private boolean stopped() {
+            if (outOfTime()) {
+                return true;
+            }
+            for (NodeTask t = parent; t != null; t = t.parent) {
+                if (t.cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected Integer compute() {
+            int score = searchHere();
+            // tell the brothers of this node to stop if it refutes the parent
+            if (valid && (parent != null) && (-score >= parent.beta)) {
+                parent.cutoff = true;
+            }
+            return score;
+        }
+
+        // searches the position, setting valid if the score can be used
+        private int searchHere() {
+            if (stopped()) {
+                return 0;
+            }
+
+            // the root is always split so that it records its best move
+            long moves = Bitboards.legalMoves(own, opp);
+            if (((depth < MIN_SPLIT_DEPTH) && (parent != null)) || (moves == 0)) {
+                AlphaBetaSearch s = searchers.get();
+                int score = s.searchNode(
+                        own, opp, key, color, depth, alpha, beta, deadline,
+                        this::stopped
+                );
+                nodes.add(s.getNodes());
+                valid = !s.wasAborted();
+                return score;
+            }
+            nodes.increment();
+
+            // order the moves, trying the stored best move first
+            int ttMove = -1;
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.MISS) {
+                ttMove = TranspositionTable.move(entry);
+            }
+            int[] list = new int[64];
+            int n = AlphaBetaSearch.orderMoves(
+                    own, opp, moves, depth, ttMove, list, new int[64]
+            );
+
+            // the eldest brother is searched first, on this thread
+            NodeTask first = child(list[0], alpha, beta);
+            int best = -first.compute();
+            if (!first.valid) {
+                return 0;
+            }
+            bestMove = list[0];
+            int a = Math.max(alpha, best);
+
+            if (a < beta) {
+                // the younger brothers are searched in parallel
+                List<NodeTask> brothers = new ArrayList<NodeTask>();
+                for (int i = 1; i < n; i++) {
+                    brothers.add(child(list[i], a, beta));
+                }
+                invokeAll(brothers);
+
+                for (int i = 0; i < brothers.size(); i++) {
+                    NodeTask t = brothers.get(i);
+                    int score = -t.join();
+                    if (t.valid && (score > best)) {
+                        best = score;
+                        bestMove = list[i + 1];
+                    }
+                }
+                // unless the node was cut off, every brother must have finished
+                if (best < beta) {
+                    for (NodeTask t : brothers) {
+                        if (!t.valid) {
+                            return 0;
+                        }
+                    }
+                }
+            }
+
+            int bound;
+            if (best <= alpha) {
+                bound = TranspositionTable.UPPER;
+            } else if (best >= beta) {
+                bound = TranspositionTable.LOWER;
+            } else {
+                bound = TranspositionTable.EXACT;
+            }
+            table.store(key, depth, best, bound, bestMove);
+            valid = true;
+            return best;
+        }
+
+        // task for the position after a move, searched with window (a, b)
+        private NodeTask child(int sq, int a, int b) {
+            long f = Bitboards.flips(own, opp, sq);
+            return new NodeTask(
+                    opp & ~f, own | f | (1L << sq),
+                    AlphaBetaSearch.childKey(key, color, sq, f), 3 - color,
+                    depth - 1, -b, -a, this
+            );
+        }
+    }
+
+}
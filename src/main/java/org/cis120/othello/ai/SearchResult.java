@@ -0,0 +1,77 @@
+package org.cis120.othello.ai;
+
+/**
+ * This class holds the outcome of a search: the best move found, its score
+ * for the player to move, the deepest completed iteration, and the number
+ * of positions visited.
+ */
+public class SearchResult {
+
+    // best move as a square index (8 * row + column), or -1 for none
+    private final int move;
+
+    // score of the best move for the player to move, in the units of
+    // Evaluator.java, or a disc differential from EndgameSolver.java or
+    // OpeningBook.java
+    private final int score;
+
+    // depth of the last completed iteration
+    private final int depth;
+
+    // number of positions visited
+    private final long nodes;
+
+    // time spent searching in milliseconds
+    private final long millis;
+
+    // constructor for search results
+    public SearchResult(int move, int score, int depth, long nodes, long millis) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+    }
+
+    // getter method for the best move
+    public int getMove() {
+        return this.move;
+    }
+
+    // getter method for the row of the best move
+    public int getRow() {
+        return this.move >>> 3;
+    }
+
+    // getter method for the column of the best move
+    public int getColumn() {
+        return this.move & 7;
+    }
+
+    // getter method for the score
+    public int getScore() {
+        return this.score;
+    }
+
+    // getter method for the depth
+    public int getDepth() {
+        return this.depth;
+    }
+
+    // getter method for the number of positions visited
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    // getter method for the time spent searching
+    public long getMillis() {
+        return this.millis;
+    }
+
+    @Override
+    public String toString() {
+        return "move " + move + " score " + score + " depth " + depth
+                + " nodes " + nodes + " time " + millis + "ms";
+    }
+
+}
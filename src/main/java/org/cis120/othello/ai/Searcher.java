@@ -0,0 +1,20 @@
+package org.cis120.othello.ai;
+
+/**
+ * This interface is implemented by the move searchers used by
+ * ComputerPlayer.java, so that a player can run on one thread
+ * (AlphaBetaSearch.java) or many (ParallelSearch.java).
+ */
+public interface Searcher {
+
+    /**
+     * search finds the best move for the player to move.
+     *
+     * @param own         pieces of the player to move
+     * @param opp         pieces of the opponent
+     * @param blackToMove whether the player to move is black
+     * @return best move found, with a move of -1 if the player has to pass
+     */
+    SearchResult search(long own, long opp, boolean blackToMove);
+
+}
@@ -0,0 +1,127 @@
+package org.cis120.othello.ai;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.cis120.othello.GameArchive;
+import org.cis120.othello.GameSources;
+import org.cis120.othello.Othello;
+
+/**
+ * This class plays games with a fast computer player for the command line
+ * tools that learn from games (OpeningBook.java, and PositionExporter.java
+ * through an archive written by main), and the random openings that make
+ * the games differ (also used by Tournament.java).
+ */
+public final class SelfPlay {
+
+    // number of random moves at the start of a self-played game
+    public static final int SELF_PLAY_OPENING = 6;
+
+    // no instances
+    private SelfPlay() {
+    }
+
+    /**
+     * forEachGame passes every game of the sources on a command line to a
+     * consumer. Each source is -selfplay N to play N games, or a file read
+     * by GameSources.forEachGame (with the same rules for the consumer).
+     * The arguments are all checked before any game is played.
+     *
+     * @param args     command line arguments
+     * @param from     index of the first source in args
+     * @param consumer called with each game
+     * @return false if a -selfplay is not followed by a number of games, in
+     *         which case no game is passed to the consumer
+     */
+    public static boolean forEachGame(String[] args, int from, Consumer<Othello> consumer) {
+        if ((args == null) || (consumer == null)) {
+            System.out.println("Null input");
+            throw new IllegalArgumentException();
+        }
+        for (int i = from; i < args.length; i++) {
+            if (args[i].equals("-selfplay")) {
+                i++;
+                if ((i >= args.length) || (parseGames(args[i]) < 0)) {
+                    return false;
+                }
+            }
+        }
+        for (int i = from; i < args.length; i++) {
+            if (args[i].equals("-selfplay")) {
+                i++;
+                play(parseGames(args[i]), consumer);
+            } else {
+                GameSources.forEachGame(args[i], consumer);
+            }
+        }
+        return true;
+    }
+
+    // reads a number of games, or returns -1 if it is not one
+    private static int parseGames(String s) {
+        try {
+            return Math.max(-1, Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * play plays games with a fast computer player, each after a few
+     * random opening moves, and passes them to a consumer.
+     *
+     * @param games    number of games to play
+     * @param consumer called with each finished game
+     */
+    public static void play(int games, Consumer<Othello> consumer) {
+        ComputerPlayer computer = new ComputerPlayer(10, 4);
+        Random rnd = new Random();
+        Othello o = new Othello();
+        for (int g = 0; g < games; g++) {
+            o.reset();
+            playRandomMoves(o, SELF_PLAY_OPENING, rnd);
+            boolean played = true;
+            while (played) {
+                played = computer.playTurn(o);
+            }
+            consumer.accept(o);
+        }
+    }
+
+    /**
+     * playRandomMoves plays random legal moves, stopping early if the game
+     * ends.
+     *
+     * @param o     game to play in
+     * @param plies number of moves to play
+     * @param rnd   source of the moves
+     */
+    public static void playRandomMoves(Othello o, int plies, Random rnd) {
+        for (int i = 0; (i < plies) && !o.getGameOver(); i++) {
+            long moves = o.getLegalMoves(o.getCurrentPlayer() ? 1 : 2);
+            for (int k = rnd.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            int sq = Long.numberOfTrailingZeros(moves);
+            o.playTurn(sq >>> 3, sq & 7);
+        }
+    }
+
+    /**
+     * main appends self-played games to an archive: SelfPlay archive N.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        if ((args.length != 2) || (parseGames(args[1]) < 0)) {
+            System.out.println("usage: SelfPlay archive N");
+            return;
+        }
+        GameArchive archive = new GameArchive(args[0], true);
+        play(parseGames(args[1]), archive::append);
+        archive.close();
+        System.out.println(archive.size() + " games in " + args[0]);
+    }
+
+}
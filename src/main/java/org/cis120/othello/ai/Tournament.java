@@ -0,0 +1,453 @@
+package org.cis120.othello.ai;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cis120.othello.Bitboards;
+import org.cis120.othello.GameArchive;
+import org.cis120.othello.Othello;
+
+/**
+ * This class plays a tournament between computer players, for tuning the
+ * search: every pair of players meets in turn, each opening is played
+ * twice by each pair with the colors swapped, and the games are spread
+ * over a pool of threads, one game per thread at a time, so all cores are
+ * busy. The games are played in memory only (no save file and no display).
+ *
+ * A player is given as movetime,depth or movetime,depth,book: its time
+ * budget per move in milliseconds, its depth limit and optionally an
+ * opening book file (see OpeningBook.java). Openings are either a number
+ * of random moves, from a seed so that a tournament can be played again,
+ * or the first moves of the games in a GameArchive.java.
+ *
+ * Each game is written to the results file as soon as it ends, as one
+ * line of tab-separated fields:
+ * - the number of the game
+ * - the players of black and white, by their index
+ * - the discs of black and white at the end
+ * - the time the game took in milliseconds, and the time and nodes each
+ *   player spent searching
+ * - the moves, as column letters and row digits (a1 is row 0, column 0)
+ * and the standings, with an Elo rating for each player, are given once
+ * every game is over. A game that stops before it is over, because a
+ * player found no move or the game refused it, is void: its line starts
+ * with "# void" and it is left out of the standings.
+ *
+ * Usage: java org.cis120.othello.ai.Tournament results games [-threads n]
+ * [-plies k] [-openings archive] [-seed s] player player...
+ */
+public final class Tournament {
+
+    // default number of opening moves played before the players take over
+    public static final int DEFAULT_OPENING_PLIES = 6;
+
+    // players of the tournament, with their time budgets, depth limits
+    // and opening books (or null)
+    private final String[] players;
+    private final long[] millis;
+    private final int[] depths;
+    private final OpeningBook[] books;
+
+    // number of opening moves, and the games they are taken from or null
+    private final int plies;
+    private final GameArchive openings;
+
+    // seed of the random openings
+    private final long seed;
+
+    // pairs of players, in the order they meet
+    private final int[] first;
+    private final int[] second;
+
+    /**
+     * Constructor sets up a tournament.
+     *
+     * @param players  players, as movetime,depth[,book]
+     * @param plies    number of opening moves
+     * @param openings games to take the opening moves from, or null for
+     *                 random moves; only read by the thread calling run
+     * @param seed     seed of the random openings
+     * @throws IllegalArgumentException if there are fewer than two players
+     *                                  or one is not valid
+     */
+    public Tournament(String[] players, int plies, GameArchive openings, long seed) {
+        if ((players == null) || (players.length < 2) || (plies < 0)
+                || ((openings != null) && (openings.size() == 0))) {
+            throw new IllegalArgumentException();
+        }
+        this.players = players.clone();
+        this.millis = new long[players.length];
+        this.depths = new int[players.length];
+        this.books = new OpeningBook[players.length];
+        for (int i = 0; i < players.length; i++) {
+            String[] fields = players[i].split(",");
+            try {
+                millis[i] = Long.parseLong(fields[0]);
+                depths[i] = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                millis[i] = 0;
+            }
+            if ((fields.length > 3) || (millis[i] <= 0) || (depths[i] <= 0)) {
+                System.out.println("invalid player " + players[i]);
+                throw new IllegalArgumentException();
+            }
+            if (fields.length == 3) {
+                books[i] = new OpeningBook(fields[2]);
+            }
+        }
+        this.plies = plies;
+        this.openings = openings;
+        this.seed = seed;
+
+        int n = players.length;
+        this.first = new int[n * (n - 1) / 2];
+        this.second = new int[first.length];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                first[k] = i;
+                second[k] = j;
+                k++;
+            }
+        }
+    }
+
+    // makes a computer player with its own search and table
+    private ComputerPlayer player(int i) {
+        return new ComputerPlayer(new AlphaBetaSearch(millis[i], depths[i]), books[i]);
+    }
+
+    /**
+     * run plays the games of the tournament and writes them to the results
+     * file as they end.
+     *
+     * @param games    number of games
+     * @param threads  number of games played at a time
+     * @param fileName results file, replaced if it exists
+     * @return standings after the last game
+     */
+    public Standings run(final int games, int threads, String fileName) {
+        if ((games < 0) || (threads <= 0) || (fileName == null)) {
+            System.out.println("Null input");
+            throw new IllegalArgumentException();
+        }
+        final Standings standings = new Standings(players);
+        final int[][] openingMoves = readOpenings(games);
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (final BufferedWriter out = Files.newBufferedWriter(
+                Paths.get(fileName), StandardCharsets.US_ASCII)) {
+            out.write("# game\tblack\twhite\tblack discs\twhite discs\tmillis"
+                    + "\tblack millis\twhite millis\tblack nodes\twhite nodes\tmoves\n");
+            out.flush();
+
+            // each thread takes the next game until there are none left
+            Future<?>[] workers = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = pool.submit(() -> {
+                    ComputerPlayer[] computers = new ComputerPlayer[players.length];
+                    for (int i = 0; i < computers.length; i++) {
+                        computers[i] = player(i);
+                    }
+                    Othello o = new Othello();
+                    int g;
+                    while ((g = next.getAndIncrement()) < games) {
+                        String line = play(g, o, computers, openingMoves, standings);
+                        synchronized (out) {
+                            out.write(line);
+                            out.flush();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> w : workers) {
+                w.get();
+            }
+        } catch (IOException e) {
+            System.out.println("I/O exception occured");
+            throw new UncheckedIOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                System.out.println("I/O exception occured");
+                throw new UncheckedIOException((IOException) e.getCause());
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            // a thread that failed stops the others after their game
+            next.set(games);
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return standings;
+    }
+
+    /**
+     * play plays one game of the tournament.
+     *
+     * @param g            number of the game
+     * @param o            game to play it in
+     * @param computers    players of this thread, by index
+     * @param openingMoves opening moves of each round, or null for random
+     *                     openings
+     * @param standings    standings to add the result to
+     * @return line for the results file
+     */
+    private String play(
+            int g, Othello o, ComputerPlayer[] computers, int[][] openingMoves,
+            Standings standings
+    ) {
+        // both colors of a pair play an opening before the next pair does
+        int round = g / (2 * first.length);
+        int pair = (g / 2) % first.length;
+        int black = ((g & 1) == 0) ? first[pair] : second[pair];
+        int white = ((g & 1) == 0) ? second[pair] : first[pair];
+
+        long start = System.nanoTime();
+        o.reset();
+        playOpening(round, o, openingMoves);
+        long[] searchMillis = new long[2];
+        long[] nodes = new long[2];
+        while (!o.getGameOver()) {
+            int side = o.getCurrentPlayer() ? 0 : 1;
+            SearchResult r = computers[(side == 0) ? black : white].chooseMove(o);
+            if ((r.getMove() < 0) || !o.playTurn(r.getRow(), r.getColumn())) {
+                break;
+            }
+            searchMillis[side] += r.getMillis();
+            nodes[side] += r.getNodes();
+        }
+        long gameMillis = (System.nanoTime() - start) / 1000000;
+
+        int blackDiscs = Bitboards.count(o.getBlackBoard());
+        int whiteDiscs = Bitboards.count(o.getWhiteBoard());
+        StringBuilder line = new StringBuilder();
+        if (o.getGameOver()) {
+            standings.add(black, white, Integer.signum(blackDiscs - whiteDiscs));
+        } else {
+            standings.addVoid();
+            line.append("# void ");
+        }
+        line.append(g).append('\t').append(black).append('\t').append(white)
+                .append('\t').append(blackDiscs).append('\t').append(whiteDiscs)
+                .append('\t').append(gameMillis).append('\t').append(searchMillis[0])
+                .append('\t').append(searchMillis[1]).append('\t').append(nodes[0])
+                .append('\t').append(nodes[1]).append('\t');
+        for (int i = 0; i < o.getNumTurns(); i++) {
+            int sq = o.getMoveSquare(i);
+            line.append((char) ('a' + (sq & 7))).append((char) ('1' + (sq >>> 3)));
+        }
+        return line.append('\n').toString();
+    }
+
+    // reads the opening moves of every round of a number of games from
+    // the archive, so that the threads playing them do not share it
+    private int[][] readOpenings(int games) {
+        if (openings == null) {
+            return null;
+        }
+        int perRound = 2 * first.length;
+        long rounds = Math.min((games + perRound - 1) / perRound, openings.size());
+        int[][] moves = new int[(int) rounds][];
+        Othello game = new Othello();
+        for (int round = 0; round < rounds; round++) {
+            openings.read(round, game);
+            moves[round] = new int[Math.min(plies, game.getNumTurns())];
+            for (int i = 0; i < moves[round].length; i++) {
+                moves[round][i] = game.getMoveSquare(i);
+            }
+        }
+        return moves;
+    }
+
+    // plays the opening moves of a round
+    private void playOpening(int round, Othello o, int[][] openingMoves) {
+        if (openingMoves != null) {
+            // the first moves of a game of the archive, in turn
+            for (int sq : openingMoves[round % openingMoves.length]) {
+                o.playTurn(sq >>> 3, sq & 7);
+            }
+            return;
+        }
+        SelfPlay.playRandomMoves(o, plies, new Random(seed + round));
+    }
+
+    /**
+     * The results of a tournament so far, for each player and each pair of
+     * players. Results are added by the threads playing the games.
+     */
+    public static final class Standings {
+
+        // players, as given to the tournament
+        private final String[] players;
+
+        // games played and points scored (2 for a win and 1 for a draw)
+        // by player i against player j
+        private final int[][] games;
+        private final int[][] points;
+
+        // games left out because they were not finished
+        private int voided;
+
+        private Standings(String[] players) {
+            this.players = players;
+            this.games = new int[players.length][players.length];
+            this.points = new int[players.length][players.length];
+        }
+
+        // adds a game won by black (1), drawn (0) or won by white (-1)
+        private synchronized void add(int black, int white, int result) {
+            games[black][white]++;
+            games[white][black]++;
+            points[black][white] += result + 1;
+            points[white][black] += 1 - result;
+        }
+
+        // counts a game that was not finished
+        private synchronized void addVoid() {
+            voided++;
+        }
+
+        // getter method for the number of games left out as void
+        public synchronized int getVoided() {
+            return voided;
+        }
+
+        /**
+         * getGames returns the number of games a player has played.
+         *
+         * @param i index of the player
+         * @return number of games
+         */
+        public synchronized int getGames(int i) {
+            int n = 0;
+            for (int j = 0; j < players.length; j++) {
+                n += games[i][j];
+            }
+            return n;
+        }
+
+        /**
+         * getScore returns the score of a player: 1 for each win and 1/2
+         * for each draw.
+         *
+         * @param i index of the player
+         * @return score
+         */
+        public synchronized double getScore(int i) {
+            int n = 0;
+            for (int j = 0; j < players.length; j++) {
+                n += points[i][j];
+            }
+            return n / 2.0;
+        }
+
+        /**
+         * getElo estimates the Elo rating of every player from the results
+         * of all the pairs (the Bradley-Terry model), relative to the first
+         * player. Each pair is counted as having drawn one more game, so
+         * that a player that lost every game still gets a rating.
+         *
+         * @return Elo rating of each player
+         */
+        public synchronized double[] getElo() {
+            int n = players.length;
+            double[] strength = new double[n];
+            Arrays.fill(strength, 1);
+            for (int iteration = 0; iteration < 1000; iteration++) {
+                for (int i = 0; i < n; i++) {
+                    double won = 0;
+                    double expected = 0;
+                    for (int j = 0; j < n; j++) {
+                        if ((j != i) && (games[i][j] > 0)) {
+                            won += (points[i][j] + 1) / 2.0;
+                            expected += (games[i][j] + 1) / (strength[i] + strength[j]);
+                        }
+                    }
+                    if (expected > 0) {
+                        strength[i] = won / expected;
+                    }
+                }
+            }
+            double[] elo = new double[n];
+            for (int i = 0; i < n; i++) {
+                elo[i] = 400 * Math.log10(strength[i] / strength[0]);
+            }
+            return elo;
+        }
+
+        @Override
+        public synchronized String toString() {
+            double[] elo = getElo();
+            StringBuilder s = new StringBuilder("player           games   score      elo\n");
+            for (int i = 0; i < players.length; i++) {
+                s.append(String.format(
+                        "%-16s %6d %7.1f %8.1f%n", players[i], getGames(i), getScore(i), elo[i]
+                ));
+            }
+            if (voided > 0) {
+                s.append(voided).append(" void games left out\n");
+            }
+            return s.toString();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("usage: Tournament results games [-threads n] [-plies k] "
+                    + "[-openings archive] [-seed s] player player...");
+            System.out.println("a player is movetime,depth or movetime,depth,book");
+            return;
+        }
+        int games = Integer.parseInt(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int plies = DEFAULT_OPENING_PLIES;
+        GameArchive openings = null;
+        long seed = System.nanoTime();
+        int i = 2;
+        for (; (i + 1 < args.length) && args[i].startsWith("-"); i += 2) {
+            if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-plies")) {
+                plies = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-openings")) {
+                openings = new GameArchive(args[i + 1], false);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            }
+        }
+        String[] players = Arrays.copyOfRange(args, i, args.length);
+
+        Tournament tournament = new Tournament(players, plies, openings, seed);
+        long start = System.nanoTime();
+        Standings standings = tournament.run(games, threads, args[0]);
+        System.out.println(games + " games on " + threads + " threads in "
+                + (System.nanoTime() - start) / 1000000 + " ms, seed " + seed);
+        System.out.print(standings);
+        if (openings != null) {
+            openings.close();
+        }
+    }
+
+}
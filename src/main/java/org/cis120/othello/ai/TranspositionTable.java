@@ -0,0 +1,183 @@
+package org.cis120.othello.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a fixed-size hash table of search results, indexed by the
+ * Zobrist hash of a position (see Zobrist.java). It lets the search reuse
+ * the result of a position it has already searched when the same position
+ * is reached through a different move order.
+ *
+ * Each entry is two longs in primitive arrays: the position key XORed with
+ * the entry data, and the data itself (score, depth, bound type, best move
+ * and search generation packed into one long). Checking that the key and
+ * data XOR back to the probed key means an entry torn by two threads
+ * writing at once is simply treated as a miss, so the table needs no locks.
+ *
+ * When two positions land in the same slot, the one searched deeper is
+ * kept, unless the stored entry is left over from an earlier search.
+ */
+public class TranspositionTable {
+
+    // bound types: the score is exact, a lower bound, or an upper bound
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    // value returned by probe when there is no entry for the key
+    public static final long MISS = 0L;
+
+    // set in every stored entry so that stored data is never MISS
+    private static final long VALID = 1L << 63;
+
+    // keys (XORed with data) and data for each slot
+    private final long[] keys;
+    private final long[] data;
+
+    // mask turning a key into a slot index
+    private final int mask;
+
+    // generation of the current search, stored in each entry
+    private int generation;
+
+    // statistics
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Constructor sets up an empty table.
+     *
+     * @param log2Entries log base 2 of the number of entries (each entry
+     *                    takes 16 bytes)
+     */
+    public TranspositionTable(int log2Entries) {
+        if ((log2Entries < 1) || (log2Entries > 30)) {
+            throw new IllegalArgumentException();
+        }
+        this.keys = new long[1 << log2Entries];
+        this.data = new long[1 << log2Entries];
+        this.mask = (1 << log2Entries) - 1;
+    }
+
+    /**
+     * probe looks up the entry for a position.
+     *
+     * @param key Zobrist hash of the position
+     * @return packed entry data, or MISS if the position is not stored
+     */
+    public long probe(long key) {
+        probes.increment();
+        int i = (int) key & mask;
+        long d = data[i];
+        if ((d != MISS) && ((keys[i] ^ d) == key)) {
+            hits.increment();
+            return d;
+        }
+        return MISS;
+    }
+
+    /**
+     * store saves the result of searching a position, unless the slot
+     * holds a deeper result from the current search.
+     *
+     * @param key   Zobrist hash of the position
+     * @param depth depth the position was searched to
+     * @param score score of the position
+     * @param bound EXACT, LOWER or UPPER
+     * @param move  best move found (square index), or -1 for none
+     */
+    public void store(long key, int depth, int score, int bound, int move) {
+        int i = (int) key & mask;
+        long old = data[i];
+        if ((old != MISS) && ((keys[i] ^ old) != key)
+                && (generation(old) == (generation & 0xFF))
+                && (depth(old) > depth)) {
+            return;
+        }
+        long d = VALID
+                | ((long) (generation & 0xFF) << 49)
+                | ((long) (move + 1) << 42)
+                | ((long) bound << 40)
+                | ((long) (depth & 0xFF) << 32)
+                | (score & 0xFFFFFFFFL);
+        data[i] = d;
+        keys[i] = key ^ d;
+        stores.increment();
+    }
+
+    /**
+     * newSearch marks the start of a new search, so that entries from
+     * earlier searches can be replaced regardless of their depth.
+     */
+    public void newSearch() {
+        generation++;
+    }
+
+    /**
+     * clear removes every entry and resets the statistics.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    // getter method for the score of an entry
+    public static int score(long d) {
+        return (int) d;
+    }
+
+    // getter method for the depth of an entry
+    public static int depth(long d) {
+        return (int) (d >>> 32) & 0xFF;
+    }
+
+    // getter method for the bound type of an entry
+    public static int bound(long d) {
+        return (int) (d >>> 40) & 0x3;
+    }
+
+    // getter method for the best move of an entry, or -1 for none
+    public static int move(long d) {
+        return ((int) (d >>> 42) & 0x7F) - 1;
+    }
+
+    // getter method for the generation of an entry
+    private static int generation(long d) {
+        return (int) (d >>> 49) & 0xFF;
+    }
+
+    // getter method for the number of entries
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    // getter method for the number of probes
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    // getter method for the number of probes that found an entry
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // getter method for the number of entries written
+    public long getStores() {
+        return stores.sum();
+    }
+
+    // getter method for the fraction of probes that found an entry
+    public double getHitRate() {
+        long p = probes.sum();
+        if (p == 0) {
+            return 0.0;
+        }
+        return (double) hits.sum() / p;
+    }
+
+}
@@ -6,10 +6,36 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.TreeMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.junit.jupiter.api.*;
 
@@ -23,6 +49,32 @@ public class GameTest {
         assertEquals(g.getColor(), 2);
     }
 
+    @Test
+    public void gamePieceIdentityIsSquare() {
+        TreeMap<GamePiece, Integer> pieces = new TreeMap<GamePiece, Integer>();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                GamePiece g = new GamePiece(1, i, j);
+                assertEquals(Bitboards.square(i, j), g.getSquare());
+                assertEquals(g.getSquare(), g.hashCode());
+                pieces.put(g, g.getSquare());
+            }
+        }
+        // every square is a different key, in board order
+        assertEquals(64, pieces.size());
+        int sq = 0;
+        for (Map.Entry<GamePiece, Integer> entry : pieces.entrySet()) {
+            assertEquals(sq, entry.getValue());
+            sq++;
+        }
+
+        // the color does not change which square a piece is on
+        assertEquals(new GamePiece(1, 2, 3), new GamePiece(2, 2, 3));
+        assertEquals(0, new GamePiece(0, 2, 3).compareTo(new GamePiece(1, 2, 3)));
+        assertNotEquals(new GamePiece(1, 2, 3), new GamePiece(1, 3, 2));
+        assertTrue(new GamePiece(1, 2, 7).compareTo(new GamePiece(1, 3, 0)) < 0);
+    }
+
     @Test
     public void invalidColorGamePiece() {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -676,6 +728,1517 @@ public class GameTest {
         assertNotEquals(winner, 2);
     }
 
+    @Test
+    public void initialLegalMovesBitboards() {
+        long moves = Bitboards.legalMoves(
+                Bitboards.START_BLACK, Bitboards.START_WHITE
+        );
+        long expected = (1L << Bitboards.square(2, 3))
+                | (1L << Bitboards.square(3, 2))
+                | (1L << Bitboards.square(4, 5))
+                | (1L << Bitboards.square(5, 4));
+        assertEquals(expected, moves);
+    }
+
+    @Test
+    public void flipsStopAtFirstSameColorPiece() {
+        // row 0: empty, white, black, white, black
+        long own = (1L << Bitboards.square(0, 2)) | (1L << Bitboards.square(0, 4));
+        long opp = (1L << Bitboards.square(0, 1)) | (1L << Bitboards.square(0, 3));
+        long flipped = Bitboards.flips(own, opp, Bitboards.square(0, 0));
+        assertEquals(1L << Bitboards.square(0, 1), flipped);
+    }
+
+    @Test
+    public void flipsDoNotWrapAroundRows() {
+        // white at the end of row 0, black at the start of row 1
+        long own = 1L << Bitboards.square(1, 0);
+        long opp = 1L << Bitboards.square(0, 7);
+        assertEquals(0L, Bitboards.flips(own, opp, Bitboards.square(0, 6)));
+        assertEquals(0L, Bitboards.legalMoves(own, opp));
+    }
+
+    @Test
+    public void canOvertakeMatchesBoardCells() {
+        Othello o = new Othello("files/saveFile.txt");
+        LinkedList<GamePiece> l = o.canOvertake(2, 3, 1);
+        assertEquals(1, l.size());
+        assertEquals(2, l.getFirst().getColor());
+        assertEquals(3, l.getFirst().getX());
+        assertEquals(3, l.getFirst().getY());
+    }
+
+    @Test
+    public void legalMovesMaskOthelloGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        long expected = (1L << Bitboards.square(2, 3))
+                | (1L << Bitboards.square(3, 2))
+                | (1L << Bitboards.square(4, 5))
+                | (1L << Bitboards.square(5, 4));
+        assertEquals(expected, o.getLegalMoves(1));
+        assertEquals(expected, o.getLegalMoves(1));
+
+        // cache is cleared after a turn and after undo
+        o.playTurn(2, 3);
+        assertEquals(0L, o.getLegalMoves(2) & (1L << Bitboards.square(2, 3)));
+        assertNotEquals(0L, o.getLegalMoves(2));
+        o.undo();
+        assertEquals(expected, o.getLegalMoves(1));
+    }
+
+    @Test
+    public void passWhenOpponentHasNoMovesOthelloGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        GamePiece[][] b = o.getBoard();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                b[i][j].setColor(0);
+            }
+        }
+        b[0][0].setColor(1);
+        b[0][1].setColor(2);
+        b[3][0].setColor(1);
+        b[3][1].setColor(2);
+
+        // white cannot answer, so black moves again
+        assertTrue(o.playTurn(0, 2));
+        assertTrue(o.getCurrentPlayer());
+        assertFalse(o.getGameOver());
+        assertEquals(0L, o.getLegalMoves(2));
+
+        // black captures the last white piece
+        assertTrue(o.playTurn(3, 2));
+        assertTrue(o.getGameOver());
+        assertEquals(1, o.checkWinner());
+
+        // undo gives the turn back to the player who made the move
+        o.undo();
+        assertTrue(o.getCurrentPlayer());
+        assertEquals(2, b[3][1].getColor());
+    }
+
+    @Test
+    public void hashKeyIsIncrementalOthelloGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        long start = o.getHashKey();
+        assertEquals(Zobrist.hash(Bitboards.START_BLACK, Bitboards.START_WHITE, true), start);
+
+        o.playTurn(2, 3);
+        assertEquals(Zobrist.hash(o.getBlackBoard(), o.getWhiteBoard(), false), o.getHashKey());
+        o.playTurn(2, 2);
+        assertEquals(Zobrist.hash(o.getBlackBoard(), o.getWhiteBoard(), true), o.getHashKey());
+
+        // overtake through the board cells keeps the hash in step
+        o.overtake(o.canOvertake(2, 1, 1), 1);
+        assertEquals(Zobrist.hash(o.getBlackBoard(), o.getWhiteBoard(), true), o.getHashKey());
+        o.getBoard()[2][2].setColor(2);
+
+        o.undo();
+        o.undo();
+        assertEquals(start, o.getHashKey());
+    }
+
+    @Test
+    public void transposedPositionsShareHashOthelloGame() {
+        Othello a = new Othello("files/saveFile.txt");
+        a.playTurn(2, 3);
+        a.playTurn(2, 2);
+        a.playTurn(3, 2);
+        a.playTurn(4, 2);
+
+        Othello b = new Othello("files/saveFile.txt");
+        b.playTurn(3, 2);
+        b.playTurn(2, 2);
+        b.playTurn(2, 3);
+        b.playTurn(4, 2);
+
+        assertEquals(a.getBlackBoard(), b.getBlackBoard());
+        assertEquals(a.getWhiteBoard(), b.getWhiteBoard());
+        assertEquals(a.getHashKey(), b.getHashKey());
+    }
+
+    @Test
+    public void perftMatchesKnownCounts() {
+        long[] expected = { 1, 4, 12, 56, 244, 1396, 8200, 55092, 390216 };
+        for (int depth = 0; depth < expected.length; depth++) {
+            assertEquals(
+                    expected[depth],
+                    Perft.perft(Bitboards.START_BLACK, Bitboards.START_WHITE, depth)
+            );
+        }
+    }
+
+    @Test
+    public void perftThroughPlayTurnAndUndo() {
+        Othello o = new Othello("files/saveFile.txt");
+        assertEquals(55092, Perft.perft(o, 7));
+
+        // the game is left at the starting position
+        assertEquals(0, o.getNumTurns());
+        assertTrue(o.getCurrentPlayer());
+        assertEquals(Bitboards.START_BLACK, o.getBlackBoard());
+        assertEquals(Bitboards.START_WHITE, o.getWhiteBoard());
+    }
+
+    @Test
+    public void historyMatchesMovesOthelloGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        o.playTurn(2, 3);
+        o.playTurn(2, 2);
+        assertEquals(2, o.getNumTurns());
+        assertEquals(Bitboards.square(2, 3), o.getMoveSquare(0));
+        assertEquals(1, o.getMoveColor(0));
+        assertEquals(1L << Bitboards.square(3, 3), o.getMoveFlips(0));
+        assertEquals(Bitboards.square(2, 2), o.getMoveSquare(1));
+        assertEquals(2, o.getMoveColor(1));
+        assertThrows(IllegalArgumentException.class, () -> {
+            o.getMoveSquare(2);
+        });
+
+        o.undo();
+        assertEquals(1, o.getNumTurns());
+        assertEquals(1, o.getAddedPieces().size());
+        assertEquals(1, o.getMoves().size());
+    }
+
+    @Test
+    public void playTurnAndUndoDoNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+
+        Othello o = new Othello("files/saveFile.txt");
+        // warm up, then count the bytes allocated by many more turns
+        for (int i = 0; i < 10000; i++) {
+            o.playTurn(2, 3);
+            o.playTurn(2, 2);
+            o.undo();
+            o.undo();
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 100000; i++) {
+            o.playTurn(2, 3);
+            o.playTurn(2, 2);
+            o.undo();
+            o.undo();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        // nothing but the Position snapshot each turn publishes (40 bytes)
+        assertTrue(allocated < 400000L * 48, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    public void binaryRecordRoundTripOthelloGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        o.playTurn(4, 5);
+        o.playTurn(5, 3);
+        o.playTurn(4, 2);
+        o.playTurn(5, 5);
+        byte[] data = GameCodec.encode(o);
+        assertEquals(GameCodec.HEADER_SIZE + 4, data.length);
+
+        Othello copy = new Othello("files/saveFile.txt");
+        GameCodec.decode(data, copy);
+        assertEquals(o.getBlackBoard(), copy.getBlackBoard());
+        assertEquals(o.getWhiteBoard(), copy.getWhiteBoard());
+        assertEquals(o.getCurrentPlayer(), copy.getCurrentPlayer());
+        assertEquals(o.getGameOver(), copy.getGameOver());
+        assertEquals(o.getHashKey(), copy.getHashKey());
+        assertEquals(o.getMoves(), copy.getMoves());
+        for (int i = 0; i < o.getNumTurns(); i++) {
+            assertEquals(o.getMoveFlips(i), copy.getMoveFlips(i));
+        }
+
+        // the recomputed history can be undone
+        copy.undo();
+        o.undo();
+        assertEquals(o.getBlackBoard(), copy.getBlackBoard());
+        assertEquals(o.getWhiteBoard(), copy.getWhiteBoard());
+    }
+
+    @Test
+    public void cutOrGarbledSaveIsRejectedOthelloGame() throws IOException {
+        File f = File.createTempFile("othello", ".txt");
+        f.deleteOnExit();
+        Othello saved = new Othello();
+        saved.playTurn(2, 3);
+        saved.playTurn(2, 2);
+        saved.playTurn(3, 2);
+        saved.save(f.getPath());
+        byte[] data = Files.readAllBytes(f.toPath());
+
+        // the game being resumed into is left as it was
+        Othello o = new Othello();
+        o.playTurn(4, 5);
+        int[] cuts = {1, data.length / 4, data.length / 2, 3 * data.length / 4, data.length - 20};
+        for (int cut : cuts) {
+            Files.write(f.toPath(), Arrays.copyOf(data, cut));
+            assertThrows(IllegalArgumentException.class, () -> {
+                o.resume(f.getPath());
+            });
+            assertEquals(1, o.getNumTurns());
+            assertEquals(Bitboards.START_BLACK | (1L << 37) | (1L << 36), o.getBlackBoard());
+            assertEquals(Bitboards.START_WHITE & ~(1L << 36), o.getWhiteBoard());
+            assertFalse(o.getCurrentPlayer());
+        }
+        byte[] garbled = data.clone();
+        garbled[data.length / 2] = 'z';
+        Files.write(f.toPath(), garbled);
+        assertThrows(IllegalArgumentException.class, () -> {
+            o.resume(f.getPath());
+        });
+        assertEquals(1, o.getNumTurns());
+
+        // the whole file resumes
+        Files.write(f.toPath(), data);
+        o.resume(f.getPath());
+        assertEquals(saved.getBlackBoard(), o.getBlackBoard());
+        assertEquals(3, o.getNumTurns());
+    }
+
+    @Test
+    public void saveReplacesFileAtomicallyOthelloGame() throws IOException {
+        File f = File.createTempFile("othello", ".txt");
+        f.deleteOnExit();
+        File tmp = new File(f.getPath() + ".tmp");
+        Othello o = new Othello();
+        o.save(f.getPath());
+        long before = f.length();
+        assertFalse(tmp.exists());
+
+        // a save written over an older one replaces it whole, through the
+        // temporary file, which is gone afterwards
+        o.playTurn(2, 3);
+        o.save(f.getPath());
+        assertFalse(tmp.exists());
+        assertTrue(f.length() > before);
+        Othello resumed = new Othello();
+        resumed.resume(f.getPath());
+        assertEquals(o.getBlackBoard(), resumed.getBlackBoard());
+        assertEquals(1, resumed.getNumTurns());
+    }
+
+    @Test
+    public void binarySaveAndResumeOthelloGame() throws IOException {
+        File f = File.createTempFile("othello", ".bin");
+        f.deleteOnExit();
+        Othello o = new Othello("files/saveFile.txt");
+        playToTheEnd(o);
+        o.saveBinary(f.getPath());
+        assertEquals(GameCodec.size(o), f.length());
+
+        Othello resumed = new Othello("files/saveFile.txt");
+        resumed.resumeBinary(f.getPath());
+        assertEquals(o.getNumTurns(), resumed.getNumTurns());
+        assertEquals(o.getBlackBoard(), resumed.getBlackBoard());
+        assertEquals(o.getWhiteBoard(), resumed.getWhiteBoard());
+        assertEquals(o.getGameOver(), resumed.getGameOver());
+        assertEquals(o.checkWinner(), resumed.checkWinner());
+    }
+
+    @Test
+    public void binarySaveReportsWriteErrorOthelloGame() {
+        // writes to /dev/full fail with no space left on the device
+        Assumptions.assumeTrue(new File("/dev/full").exists());
+        Othello o = new Othello();
+        o.playTurn(2, 3);
+        assertThrows(UncheckedIOException.class, () -> {
+            o.saveBinary("/dev/full");
+        });
+    }
+
+    @Test
+    public void binaryRecordRejectsBadData() {
+        Othello o = new Othello("files/saveFile.txt");
+        o.playTurn(2, 3);
+        byte[] data = GameCodec.encode(o);
+
+        byte[] badMagic = data.clone();
+        badMagic[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> {
+            GameCodec.decode(badMagic, new Othello("files/saveFile.txt"));
+        });
+
+        byte[] badVersion = data.clone();
+        badVersion[2] = GameCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> {
+            GameCodec.decode(badVersion, new Othello("files/saveFile.txt"));
+        });
+
+        byte[] cut = Arrays.copyOf(data, data.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            GameCodec.decode(cut, new Othello("files/saveFile.txt"));
+        });
+
+        // a move that does not lead to the stored bitboards
+        byte[] badMove = data.clone();
+        badMove[GameCodec.HEADER_SIZE] = (byte) Bitboards.square(3, 2);
+        assertThrows(IllegalArgumentException.class, () -> {
+            GameCodec.decode(badMove, new Othello("files/saveFile.txt"));
+        });
+    }
+
+    @Test
+    public void gameArchiveStoresGamesByIdOthelloGame() throws IOException {
+        File f = File.createTempFile("othello", ".archive");
+        f.deleteOnExit();
+        Random rnd = new Random(11);
+        int games = 100;
+        long[] blacks = new long[games];
+        int[] turns = new int[games];
+
+        // small segments so that the games span several of them
+        GameArchive archive = new GameArchive(f.getPath(), true, 16);
+        Othello o = new Othello("files/saveFile.txt");
+        for (int g = 0; g < games; g++) {
+            o.reset("files/saveFile.txt");
+            int plies = rnd.nextInt(70);
+            for (int i = 0; i < plies && !o.getGameOver(); i++) {
+                playRandomMove(o, rnd);
+            }
+            blacks[g] = o.getBlackBoard();
+            turns[g] = o.getNumTurns();
+            assertEquals(g, archive.append(o));
+        }
+        archive.close();
+        assertEquals(GameArchive.HEADER_SIZE + games * GameArchive.RECORD_SIZE, f.length());
+
+        GameArchive reader = new GameArchive(f.getPath(), false, 16);
+        assertEquals(games, reader.size());
+        for (int g = games - 1; g >= 0; g--) {
+            reader.read(g, o);
+            assertEquals(blacks[g], o.getBlackBoard());
+            assertEquals(turns[g], o.getNumTurns());
+            assertEquals(blacks[g], reader.record(g).getLong(5));
+        }
+        int[] seen = new int[1];
+        reader.forEach(r -> {
+            assertEquals(GameArchive.RECORD_SIZE, r.remaining());
+            assertEquals(blacks[seen[0]], r.getLong(r.position() + 5));
+            seen[0]++;
+        });
+        assertEquals(games, seen[0]);
+        assertThrows(IllegalArgumentException.class, () -> {
+            reader.read(games, new Othello("files/saveFile.txt"));
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            reader.append(new Othello("files/saveFile.txt"));
+        });
+        reader.close();
+
+        // appending to an existing archive keeps the games already in it
+        GameArchive more = new GameArchive(f.getPath(), true, 16);
+        assertEquals(games, more.append(o));
+        more.close();
+        GameArchive all = new GameArchive(f.getPath(), false);
+        assertEquals(games + 1, all.size());
+        all.read(games - 1, o);
+        assertEquals(blacks[games - 1], o.getBlackBoard());
+        all.close();
+    }
+
+    @Test
+    public void journalRecoversGameOthelloGame() throws IOException {
+        File f = File.createTempFile("othello", ".journal");
+        f.deleteOnExit();
+        Othello o = new Othello("files/saveFile.txt");
+        o.playTurn(2, 3);
+        o.startJournal(f.getPath());
+        long snapshot = GameCodec.size(o);
+        assertEquals(snapshot, f.length());
+
+        // each move and undo adds one byte
+        o.playTurn(2, 2);
+        o.playTurn(3, 2);
+        o.undo();
+        assertEquals(snapshot + 3, f.length());
+
+        // the game is recovered without stopping the journal
+        Othello resumed = new Othello("files/saveFile.txt");
+        resumed.resumeJournal(f.getPath());
+        assertEquals(2, resumed.getNumTurns());
+        assertEquals(o.getBlackBoard(), resumed.getBlackBoard());
+        assertEquals(o.getWhiteBoard(), resumed.getWhiteBoard());
+        assertEquals(o.getCurrentPlayer(), resumed.getCurrentPlayer());
+        resumed.stopJournal();
+
+        // the journal is compacted instead of growing with every change
+        for (int i = 0; i < 2 * MoveJournal.COMPACT_INTERVAL; i++) {
+            o.playTurn(3, 2);
+            o.undo();
+        }
+        assertTrue(f.length() < GameCodec.size(o) + MoveJournal.COMPACT_INTERVAL);
+        playToTheEnd(o);
+        o.stopJournal();
+        resumed.resumeJournal(f.getPath());
+        resumed.stopJournal();
+        assertEquals(o.getNumTurns(), resumed.getNumTurns());
+        assertEquals(o.getBlackBoard(), resumed.getBlackBoard());
+        assertTrue(resumed.getGameOver());
+
+        // a move by the wrong player is not a valid journal
+        byte[] start = GameCodec.encode(new Othello("files/saveFile.txt"));
+        byte[] bad = Arrays.copyOf(start, start.length + 1);
+        bad[start.length] = (byte) (GameCodec.WHITE_MOVE | Bitboards.square(2, 3));
+        Files.write(f.toPath(), bad);
+        assertThrows(IllegalArgumentException.class, () -> {
+            new Othello("files/saveFile.txt").resumeJournal(f.getPath());
+        });
+    }
+
+    @Test
+    public void savePolicyOthelloGame() throws IOException {
+        // a game made in memory has nowhere to save to
+        Othello o = new Othello();
+        assertEquals(SavePolicy.Mode.NONE, o.getSavePolicy().getMode());
+        assertTrue(o.getCurrentPlayer());
+        assertEquals(0, o.getNumTurns());
+        assertEquals(1, o.getCell(3, 4).getColor());
+        assertThrows(IllegalStateException.class, () -> {
+            o.save();
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            o.resume();
+        });
+
+        // setting an on-demand policy does not clear the save file
+        File f = File.createTempFile("othello", ".txt");
+        f.deleteOnExit();
+        o.playTurn(2, 3);
+        o.save(f.getPath());
+        long saved = f.length();
+        Othello other = new Othello();
+        other.setSavePolicy(SavePolicy.onDemand(f.getPath()));
+        assertEquals(saved, f.length());
+        other.resume();
+        assertEquals(o.getBlackBoard(), other.getBlackBoard());
+        other.playTurn(2, 2);
+        other.save();
+        other.reset();
+        assertEquals(0, other.getNumTurns());
+        assertTrue(f.length() > saved);
+
+        // a journaled game is recovered by resume
+        File j = File.createTempFile("othello", ".journal");
+        j.deleteOnExit();
+        o.setSavePolicy(SavePolicy.journaled(j.getPath()));
+        o.playTurn(2, 2);
+        o.save();
+        Othello recovered = new Othello();
+        recovered.resumeJournal(j.getPath());
+        assertEquals(SavePolicy.Mode.JOURNALED, recovered.getSavePolicy().getMode());
+        assertEquals(o.getBlackBoard(), recovered.getBlackBoard());
+        recovered.stopJournal();
+        assertEquals(SavePolicy.Mode.NONE, recovered.getSavePolicy().getMode());
+        o.stopJournal();
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            o.setSavePolicy(null);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            SavePolicy.journaled(null);
+        });
+    }
+
+    @Test
+    public void importerReplaysGamesOthelloGame() {
+        Random rnd = new Random(14);
+        int games = 2 * GameImporter.BATCH_GAMES + 10;
+        long[] blacks = new long[games];
+        StringBuilder text = new StringBuilder("# random games\n\n");
+        ByteArrayOutputStream wthor = new ByteArrayOutputStream();
+        wthor.write(new byte[GameImporter.WTHOR_HEADER_SIZE], 0, GameImporter.WTHOR_HEADER_SIZE);
+        Othello o = new Othello();
+        for (int g = 0; g < games; g++) {
+            o.reset();
+            int plies = 50 + rnd.nextInt(20);
+            for (int i = 0; i < plies && !o.getGameOver(); i++) {
+                playRandomMove(o, rnd);
+            }
+            blacks[g] = o.getBlackBoard();
+            byte[] record = new byte[GameImporter.WTHOR_RECORD_SIZE];
+            for (int i = 0; i < o.getNumTurns(); i++) {
+                int sq = o.getMoveSquare(i);
+                text.append((char) ('a' + (sq & 7))).append((char) ('1' + (sq >>> 3)));
+                record[8 + i] = (byte) (10 * ((sq >>> 3) + 1) + (sq & 7) + 1);
+            }
+            text.append('\n');
+            wthor.write(record, 0, record.length);
+        }
+
+        // the first move of the standard notation is legal
+        text.append("f5 d6 C3\n");
+        // a move that is not on the board, and a move that is not legal
+        text.append("f5d9\n");
+        text.append("f5a1\n");
+
+        final AtomicLongArray found = new AtomicLongArray(games + 3);
+        final ConcurrentHashMap<Long, String> rejected = new ConcurrentHashMap<Long, String>();
+        GameImporter.Listener listener = new GameImporter.Listener() {
+            @Override
+            public void gameImported(long index, Othello game) {
+                found.set((int) index, game.getBlackBoard());
+            }
+
+            @Override
+            public void gameRejected(long index, int ply, String reason) {
+                rejected.put(index, ply + " " + reason);
+            }
+        };
+        GameImporter importer = new GameImporter(3);
+
+        GameImporter.Summary s = importer.importMoveStrings(
+                new StringReader(text.toString()), listener
+        );
+        assertEquals(games + 3, s.getGames());
+        assertEquals(games + 1, s.getImported());
+        assertEquals(2, s.getRejected());
+        for (int g = 0; g < games; g++) {
+            assertEquals(blacks[g], found.get(g));
+        }
+        assertEquals("1 unreadable move", rejected.get((long) games + 1));
+        assertEquals("1 illegal move", rejected.get((long) games + 2));
+
+        rejected.clear();
+        s = importer.importWthor(new ByteArrayInputStream(wthor.toByteArray()), listener);
+        assertEquals(games, s.getImported());
+        assertTrue(rejected.isEmpty());
+        for (int g = 0; g < games; g++) {
+            assertEquals(blacks[g], found.get(g));
+        }
+
+        // 10 x 10 databases and cut records are not read
+        byte[] big = new byte[GameImporter.WTHOR_HEADER_SIZE];
+        big[12] = 10;
+        assertThrows(IllegalArgumentException.class, () -> {
+            importer.importWthor(new ByteArrayInputStream(big), listener);
+        });
+        byte[] cut = Arrays.copyOf(wthor.toByteArray(), 100);
+        assertThrows(IllegalArgumentException.class, () -> {
+            importer.importWthor(new ByteArrayInputStream(cut), listener);
+        });
+    }
+
+    @Test
+    public void importerStopsWhenInterruptedOthelloGame() {
+        GameImporter.Listener listener = new GameImporter.Listener() {
+            @Override
+            public void gameImported(long index, Othello game) {
+            }
+
+            @Override
+            public void gameRejected(long index, int ply, String reason) {
+            }
+        };
+        GameImporter importer = new GameImporter(2);
+        Thread.currentThread().interrupt();
+        try {
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> {
+                importer.importMoveStrings(new StringReader("f5d6c3\nf5f6\n"), listener);
+            });
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        // the importer still works afterwards
+        GameImporter.Summary s = importer.importMoveStrings(
+                new StringReader("f5d6c3\nf5f6\n"), listener
+        );
+        assertEquals(2, s.getImported());
+    }
+
+    @Test
+    public void symmetriesBitboards() {
+        Random rnd = new Random(15);
+        for (int t = 0; t < 100; t++) {
+            long b = rnd.nextLong();
+            for (int s = 0; s < Bitboards.SYMMETRIES; s++) {
+                // move each square on its own
+                long expected = 0L;
+                for (int sq = 0; sq < 64; sq++) {
+                    if ((b & (1L << sq)) != 0) {
+                        int r = sq >>> 3;
+                        int c = sq & 7;
+                        if ((s & 4) != 0) {
+                            int tmp = r;
+                            r = c;
+                            c = tmp;
+                        }
+                        if ((s & 2) != 0) {
+                            r = 7 - r;
+                        }
+                        if ((s & 1) != 0) {
+                            c = 7 - c;
+                        }
+                        expected |= 1L << Bitboards.square(r, c);
+                    }
+                }
+                assertEquals(expected, Bitboards.symmetry(b, s));
+            }
+        }
+
+        // the legal moves of a position move with it
+        long own = Bitboards.START_BLACK | (1L << Bitboards.square(2, 3));
+        long opp = Bitboards.START_WHITE & ~(1L << Bitboards.square(3, 3));
+        for (int s = 0; s < Bitboards.SYMMETRIES; s++) {
+            assertEquals(
+                    Bitboards.symmetry(Bitboards.legalMoves(opp, own), s),
+                    Bitboards.legalMoves(Bitboards.symmetry(opp, s), Bitboards.symmetry(own, s))
+            );
+        }
+    }
+
+    @Test
+    public void positionExportShardsOthelloGame() throws IOException {
+        File dir = Files.createTempDirectory("othello").toFile();
+        String prefix = new File(dir, "positions").getPath();
+        Othello o = new Othello();
+        playToTheEnd(o);
+        int label = Long.bitCount(o.getBlackBoard()) - Long.bitCount(o.getWhiteBoard());
+
+        PositionExporter exporter = new PositionExporter(prefix, true, 100);
+        exporter.exportGame(o);
+        exporter.exportGame(o);
+        exporter.close();
+        long positions = 2L * 8 * o.getNumTurns();
+        assertEquals(positions, exporter.getPositions());
+        assertEquals((positions + 99) / 100, exporter.getShards());
+
+        long read = 0;
+        for (int k = 0; k < exporter.getShards(); k++) {
+            File shard = new File(PositionExporter.shardName(prefix, k));
+            ByteBuffer in = ByteBuffer.wrap(
+                    Files.readAllBytes(shard.toPath())
+            );
+            assertEquals(PositionExporter.MAGIC_0, in.get());
+            assertEquals(PositionExporter.MAGIC_1, in.get());
+            assertEquals(PositionExporter.VERSION, in.get());
+            assertEquals(PositionExporter.RECORD_SIZE, in.get());
+            in.getInt();
+            long count = in.getLong();
+            assertEquals(PositionExporter.HEADER_SIZE + count * PositionExporter.RECORD_SIZE,
+                    shard.length());
+            for (long i = 0; i < count; i++) {
+                long b = in.getLong();
+                long w = in.getLong();
+                int color = in.get();
+                if (read == 0) {
+                    // the first position is the start, with black to move
+                    assertEquals(Bitboards.START_BLACK, b);
+                    assertEquals(Bitboards.START_WHITE, w);
+                    assertEquals(1, color);
+                }
+                assertEquals(0L, b & w);
+                assertEquals(label, in.get());
+                read++;
+            }
+            shard.delete();
+        }
+        assertEquals(positions, read);
+        dir.delete();
+
+        // a board changed through its cells has no history to export
+        Othello edited = new Othello();
+        edited.getBoard()[0][0].setColor(1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PositionExporter(prefix, false).exportGame(edited);
+        });
+    }
+
+    @Test
+    public void positionExportSkipsUnfinishedGamesOthelloGame() throws IOException {
+        File dir = Files.createTempDirectory("othello").toFile();
+        String prefix = new File(dir, "positions").getPath();
+        Othello o = new Othello();
+        o.playTurn(2, 3);
+        o.playTurn(2, 2);
+        assertTrue(o.historyLeadsToBoard());
+
+        // an unfinished game has no result to label its positions with
+        PositionExporter exporter = new PositionExporter(prefix, false);
+        exporter.exportGame(o);
+        exporter.close();
+        assertEquals(0, exporter.getPositions());
+        assertEquals(1, exporter.getSkipped());
+        assertEquals(0, exporter.getShards());
+        dir.delete();
+    }
+
+    @Test
+    public void replayMoveRebuildsPositionsOthelloGame() {
+        Othello o = new Othello();
+        playToTheEnd(o);
+        long[] board = { Bitboards.START_BLACK, Bitboards.START_WHITE };
+        for (int i = 0; i < o.getNumTurns(); i++) {
+            o.replayMove(i, board);
+        }
+        assertEquals(o.getBlackBoard(), board[0]);
+        assertEquals(o.getWhiteBoard(), board[1]);
+        assertTrue(o.historyLeadsToBoard());
+
+        // undo takes the moves back to the start
+        for (int i = o.getNumTurns() - 1; i >= 0; i--) {
+            Bitboards.undo(board, o.getMoveColor(i), o.getMoveSquare(i), o.getMoveFlips(i));
+        }
+        assertEquals(Bitboards.START_BLACK, board[0]);
+        assertEquals(Bitboards.START_WHITE, board[1]);
+
+        Othello edited = new Othello();
+        edited.getBoard()[0][0].setColor(1);
+        assertFalse(edited.historyLeadsToBoard());
+    }
+
+    @Test
+    public void engineProtocolOthelloGame() {
+        Engine e = new Engine(null, null);
+        assertEquals("readyok", e.execute("isready"));
+        assertEquals("moves d3 c4 f5 e6", e.execute("moves"));
+        assertEquals("ok", e.execute("play f5"));
+        assertEquals("error illegal move a1", e.execute("play a1"));
+        assertEquals("error invalid move z9", e.execute("play z9"));
+        assertEquals("score 4 1", e.execute("score"));
+        assertEquals("ok", e.execute("undo"));
+        assertEquals("error no moves to undo", e.execute("undo"));
+
+        // a position from moves, and the same board set directly
+        assertEquals("ok", e.execute("position startpos moves f5 d6 c3"));
+        String board = e.execute("board");
+        assertTrue(board.endsWith(" white"));
+        assertEquals("ok", e.execute("undo"));
+        assertTrue(e.execute("board").endsWith(" black"));
+        assertEquals("error illegal move a1", e.execute("position startpos moves f5 a1"));
+        assertTrue(e.execute("board").endsWith(" black"));
+        String cells = board.substring(6, 70);
+        assertEquals("ok", e.execute("position board " + cells + " white"));
+        assertEquals(board, e.execute("board"));
+        assertEquals("error no moves to undo", e.execute("undo"));
+
+        // the search answers with one of the legal moves, without playing it
+        String reply = e.execute("go movetime 50 depth 4");
+        assertTrue(reply.startsWith("bestmove "));
+        String move = reply.split(" ")[1];
+        assertTrue(e.execute("moves").contains(" " + move));
+        assertEquals(board, e.execute("board"));
+        assertEquals("ok", e.execute("play " + move));
+
+        // a board where neither player can move is over
+        String wipeout = "x" + String.join("", Collections.nCopies(63, "-"));
+        assertEquals("ok", e.execute("position board " + wipeout + " white"));
+        assertEquals("board " + wipeout + " over", e.execute("board"));
+        assertEquals("moves", e.execute("moves"));
+        assertEquals("bestmove none", e.execute("go"));
+
+        assertEquals("ok", e.execute("new"));
+        assertEquals("error unknown command fly", e.execute("fly"));
+        assertEquals("error usage: go [movetime ms] [depth d]", e.execute("go movetime"));
+        assertEquals(null, e.execute("quit"));
+    }
+
+    @Test
+    public void engineReportsFailedResumeOthelloGame() throws IOException {
+        Path saves = Files.createTempDirectory("othello");
+        Path empty = saves.resolve("empty.game");
+        Files.createFile(empty);
+        try {
+            Engine e = new Engine(null, saves.toString());
+            assertEquals("ok", e.execute("play f5"));
+            String board = e.execute("board");
+
+            // an empty or cut save is an error, and the game is kept
+            assertEquals("error cannot resume empty", e.execute("resume empty"));
+            assertEquals(board, e.execute("board"));
+            assertEquals("ok", e.execute("save cut"));
+            Path cut = saves.resolve("cut.game");
+            byte[] data = Files.readAllBytes(cut);
+            Files.write(cut, Arrays.copyOf(data, data.length - 1));
+            assertEquals("ok", e.execute("undo"));
+            assertEquals("error cannot resume cut", e.execute("resume cut"));
+            assertEquals(0, e.getGame().getNumTurns());
+            Files.delete(cut);
+        } finally {
+            Files.delete(empty);
+            Files.delete(saves);
+        }
+    }
+
+    @Test
+    public void gameServerHostsSessionsOthelloGame() throws Exception {
+        Path saves = Files.createTempDirectory("othello");
+        GameServer server = new GameServer(0, null, saves.toString(), 1);
+        Thread thread = new Thread(server);
+        thread.start();
+        try {
+            int n = 50;
+            Socket[] sockets = new Socket[n];
+            BufferedReader[] in = new BufferedReader[n];
+            PrintStream[] out = new PrintStream[n];
+            for (int i = 0; i < n; i++) {
+                sockets[i] = new Socket("localhost", server.getPort());
+                in[i] = new BufferedReader(
+                        new InputStreamReader(sockets[i].getInputStream())
+                );
+                out[i] = new PrintStream(sockets[i].getOutputStream(), true);
+            }
+
+            // a search in one session does not hold up the others
+            out[0].println("go movetime 1000");
+            for (int i = 1; i < n; i++) {
+                out[i].println((i % 2 == 0) ? "play f5" : "play e6");
+            }
+            for (int i = 1; i < n; i++) {
+                assertEquals("ok", in[i].readLine());
+            }
+            assertFalse(in[0].ready());
+            assertTrue(in[0].readLine().startsWith("bestmove "));
+
+            // each session has its own game, and commands sent together
+            // are answered in order
+            out[1].print("score\nundo\nscore\n");
+            out[1].flush();
+            assertEquals("score 4 1", in[1].readLine());
+            assertEquals("ok", in[1].readLine());
+            assertEquals("score 2 2", in[1].readLine());
+            out[2].println("moves");
+            Engine local = new Engine(null, null);
+            local.execute("play f5");
+            assertEquals(local.execute("moves"), in[2].readLine());
+
+            // a game saved in one session resumes in another
+            out[2].println("save game2");
+            assertEquals("ok", in[2].readLine());
+            out[3].println("resume game2");
+            assertEquals("ok", in[3].readLine());
+            out[2].println("board");
+            out[3].println("board");
+            assertEquals(in[2].readLine(), in[3].readLine());
+            out[3].println("save ../escape");
+            assertEquals("error invalid name ../escape", in[3].readLine());
+
+            // quit ends the session
+            out[4].println("quit");
+            assertEquals(null, in[4].readLine());
+            for (int i = 0; i < n; i++) {
+                sockets[i].close();
+            }
+        } finally {
+            server.close();
+            thread.join(5000);
+            Files.deleteIfExists(saves.resolve("game2.game"));
+            Files.delete(saves);
+        }
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void gameServerStopsReadingUnreadRepliesOthelloGame() throws Exception {
+        GameServer server = new GameServer(0, null, null, 1);
+        Thread thread = new Thread(server);
+        thread.start();
+        try (SocketChannel client = SocketChannel.open()) {
+            client.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+            client.connect(new InetSocketAddress("localhost", server.getPort()));
+            client.configureBlocking(false);
+
+            // send commands without reading the replies until the server
+            // stops taking them
+            byte[] command = "board\n".getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer commands = ByteBuffer.allocate(command.length * 4096);
+            while (commands.hasRemaining()) {
+                commands.put(command);
+            }
+            long limit = 64L << 20;
+            long sent = 0;
+            long idleSince = System.nanoTime();
+            while ((sent < limit) && (System.nanoTime() - idleSince < 1000000000L)) {
+                if (!commands.hasRemaining()) {
+                    commands.clear();
+                }
+                int n = client.write(commands);
+                if (n > 0) {
+                    sent += n;
+                    idleSince = System.nanoTime();
+                } else {
+                    Thread.sleep(10);
+                }
+            }
+            assertTrue(sent < limit);
+            assertTrue(server.getLargestOutput() <= 2 * GameServer.REPLY_BACKLOG);
+
+            // every whole command is answered once the replies are read
+            client.configureBlocking(true);
+            String board = new Engine(null, null).execute("board");
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(client), StandardCharsets.US_ASCII
+            ));
+            for (long i = 0; i < sent / command.length; i++) {
+                assertEquals(board, in.readLine());
+            }
+        } finally {
+            server.close();
+            thread.join(5000);
+        }
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void blockingGameServerSessionsOthelloGame() throws Exception {
+        if (!BlockingGameServer.hasVirtualThreads()) {
+            assertThrows(IllegalStateException.class, () -> {
+                new BlockingGameServer(0, BlockingGameServer.Mode.VIRTUAL, 0, null, null);
+            });
+        }
+        // virtual threads are tested on their own below, where they exist
+        for (BlockingGameServer.Mode mode : BlockingGameServer.Mode.values()) {
+            if (mode == BlockingGameServer.Mode.VIRTUAL) {
+                continue;
+            }
+            BlockingGameServer server = new BlockingGameServer(0, mode, 4, null, null);
+            Thread thread = new Thread(server);
+            thread.start();
+            try {
+                int n = 4;
+                Socket[] sockets = new Socket[n];
+                BufferedReader[] in = new BufferedReader[n];
+                PrintStream[] out = new PrintStream[n];
+                for (int i = 0; i < n; i++) {
+                    sockets[i] = new Socket("localhost", server.getPort());
+                    in[i] = new BufferedReader(
+                            new InputStreamReader(sockets[i].getInputStream())
+                    );
+                    out[i] = new PrintStream(sockets[i].getOutputStream(), true);
+                }
+                // each session has its own game
+                for (int i = 0; i < n; i++) {
+                    out[i].print((i % 2 == 0) ? "play f5\nscore\n" : "score\n");
+                    out[i].flush();
+                }
+                for (int i = 0; i < n; i++) {
+                    if (i % 2 == 0) {
+                        assertEquals("ok", in[i].readLine());
+                        assertEquals("score 4 1", in[i].readLine());
+                    } else {
+                        assertEquals("score 2 2", in[i].readLine());
+                    }
+                }
+                out[0].println("go movetime 20 depth 3");
+                assertTrue(in[0].readLine().startsWith("bestmove "));
+                out[1].println("quit");
+                assertEquals(null, in[1].readLine());
+                for (int i = 0; i < n; i++) {
+                    sockets[i].close();
+                }
+            } finally {
+                server.close();
+                thread.join(5000);
+            }
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    public void blockingGameServerVirtualThreadsOthelloGame() throws Exception {
+        Assumptions.assumeTrue(BlockingGameServer.hasVirtualThreads());
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int platformThreads = threads.getThreadCount();
+        BlockingGameServer server = new BlockingGameServer(
+                0, BlockingGameServer.Mode.VIRTUAL, 0, null, null
+        );
+        Thread thread = new Thread(server);
+        thread.start();
+        int n = 200;
+        Socket[] sockets = new Socket[n];
+        try {
+            BufferedReader[] in = new BufferedReader[n];
+            PrintStream[] out = new PrintStream[n];
+            for (int i = 0; i < n; i++) {
+                sockets[i] = new Socket("localhost", server.getPort());
+                in[i] = new BufferedReader(
+                        new InputStreamReader(sockets[i].getInputStream())
+                );
+                out[i] = new PrintStream(sockets[i].getOutputStream(), true);
+            }
+            // every session is answered, each with its own game
+            for (int i = 0; i < n; i++) {
+                out[i].print((i % 2 == 0) ? "play f5\nscore\n" : "score\n");
+                out[i].flush();
+            }
+            for (int i = 0; i < n; i++) {
+                if (i % 2 == 0) {
+                    assertEquals("ok", in[i].readLine());
+                    assertEquals("score 4 1", in[i].readLine());
+                } else {
+                    assertEquals("score 2 2", in[i].readLine());
+                }
+            }
+            assertEquals(n, server.getSessions());
+
+            // the sessions did not get a platform thread each
+            assertTrue(threads.getThreadCount() - platformThreads < n / 2);
+
+            out[0].println("go movetime 20 depth 3");
+            assertTrue(in[0].readLine().startsWith("bestmove "));
+            out[1].println("quit");
+            assertEquals(null, in[1].readLine());
+        } finally {
+            for (Socket s : sockets) {
+                if (s != null) {
+                    s.close();
+                }
+            }
+            server.close();
+            thread.join(5000);
+        }
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void archiveRejectsGameWithoutIndexingItOthelloGame() throws IOException {
+        File af = File.createTempFile("othello", ".archive");
+        File xf = File.createTempFile("othello", ".index");
+        af.deleteOnExit();
+        xf.deleteOnExit();
+        GameArchive archive = new GameArchive(af.getPath(), true);
+        PositionIndex index = new PositionIndex(xf.getPath(), true);
+        archive.setPositionIndex(index);
+
+        // a history too long for a record, made by setting up the board
+        // through the cells before every move
+        Othello o = new Othello();
+        GamePiece[][] cells = o.getBoard();
+        for (int turn = 0; turn < 256; turn++) {
+            int c = o.getCurrentPlayer() ? 1 : 2;
+            for (int i = 0; i < 8; i++) {
+                for (int j = 0; j < 8; j++) {
+                    cells[i][j].setColor(0);
+                }
+            }
+            cells[0][0].setColor(c);
+            cells[0][1].setColor(3 - c);
+            cells[7][7].setColor(3 - c);
+            cells[7][6].setColor(c);
+            assertTrue(o.playTurn(0, 2));
+        }
+        assertThrows(IllegalArgumentException.class, () -> {
+            archive.append(o);
+        });
+        assertEquals(0, archive.size());
+        assertEquals(0, index.getGames());
+        assertEquals(0, index.size());
+
+        // a history that does not lead to the board is rejected by the
+        // index, and so not stored either
+        o.reset();
+        assertTrue(o.playTurn(2, 3));
+        o.getBoard()[0][0].setColor(1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            archive.append(o);
+        });
+        assertEquals(0, archive.size());
+        assertEquals(0, index.getGames());
+
+        o.reset();
+        archive.append(o);
+        assertEquals(1, archive.size());
+        assertEquals(1, index.getGames());
+        archive.close();
+        index.close();
+    }
+
+    @Test
+    public void positionIndexCountsPositionsOthelloGame() throws IOException {
+        File af = File.createTempFile("othello", ".archive");
+        File xf = File.createTempFile("othello", ".index");
+        af.deleteOnExit();
+        xf.deleteOnExit();
+        Random rnd = new Random(18);
+        int games = 300;
+
+        // enough positions that the table has to grow several times
+        GameArchive archive = new GameArchive(af.getPath(), true);
+        PositionIndex index = new PositionIndex(xf.getPath(), true);
+        archive.setPositionIndex(index);
+        Othello o = new Othello();
+        for (int g = 0; g < games; g++) {
+            o.reset();
+            while (!o.getGameOver()) {
+                playRandomMove(o, rnd);
+            }
+            archive.append(o);
+        }
+        archive.close();
+        index.close();
+
+        // the position after the first 4 moves of game 0, checked against
+        // scanning every game for it or one of its symmetries
+        GameArchive reader = new GameArchive(af.getPath(), false);
+        reader.read(0, o);
+        long black = Bitboards.START_BLACK;
+        long white = Bitboards.START_WHITE;
+        for (int i = 0; i < 4; i++) {
+            long placed = 1L << o.getMoveSquare(i);
+            long f = o.getMoveFlips(i);
+            if (o.getMoveColor(i) == 1) {
+                black |= placed | f;
+                white &= ~f;
+            } else {
+                white |= placed | f;
+                black &= ~f;
+            }
+        }
+        int[] results = new int[3];
+        for (int g = 0; g < games; g++) {
+            reader.read(g, o);
+            long b = Bitboards.START_BLACK;
+            long w = Bitboards.START_WHITE;
+            for (int i = 0; i < 4; i++) {
+                long placed = 1L << o.getMoveSquare(i);
+                long f = o.getMoveFlips(i);
+                if (o.getMoveColor(i) == 1) {
+                    b |= placed | f;
+                    w &= ~f;
+                } else {
+                    w |= placed | f;
+                    b &= ~f;
+                }
+            }
+            for (int s = 0; s < Bitboards.SYMMETRIES; s++) {
+                if ((Bitboards.symmetry(b, s) == black)
+                        && (Bitboards.symmetry(w, s) == white)) {
+                    int diff = Bitboards.count(o.getBlackBoard())
+                            - Bitboards.count(o.getWhiteBoard());
+                    results[(diff > 0) ? 0 : (diff < 0) ? 1 : 2]++;
+                    break;
+                }
+            }
+        }
+        reader.close();
+
+        PositionIndex lookup = new PositionIndex(xf.getPath(), false);
+        assertEquals(games, lookup.getGames());
+        PositionIndex.Stats stats = lookup.lookup(black, white, true);
+        assertTrue(results[0] + results[1] + results[2] > 1);
+        assertEquals(results[0], stats.getBlackWins());
+        assertEquals(results[1], stats.getWhiteWins());
+        assertEquals(results[2], stats.getDraws());
+
+        // symmetries of a position share its entry
+        PositionIndex.Stats mirrored = lookup.lookup(
+                Bitboards.mirrorHorizontal(black), Bitboards.mirrorHorizontal(white), true
+        );
+        assertEquals(stats.getOccurrences(), mirrored.getOccurrences());
+
+        // every game reaches the starting position
+        assertEquals(games, lookup.lookup(new Othello()).getOccurrences());
+        assertEquals(null, lookup.lookup(black, white, false));
+        assertThrows(IllegalStateException.class, () -> {
+            lookup.addGame(new Othello());
+        });
+
+        // building the index from the archive gives the same table, also
+        // when it is mapped in many small segments
+        File yf = File.createTempFile("othello", ".index");
+        yf.deleteOnExit();
+        PositionIndex rebuilt = new PositionIndex(yf.getPath(), true, PositionIndex.MIN_LOG2_SLOTS);
+        GameArchive again = new GameArchive(af.getPath(), false);
+        rebuilt.addArchive(again);
+        again.close();
+        assertEquals(lookup.size(), rebuilt.size());
+        assertEquals(stats.getBlackWins(), rebuilt.lookup(black, white, true).getBlackWins());
+        rebuilt.close();
+        PositionIndex reopened = new PositionIndex(yf.getPath(), false);
+        assertEquals(lookup.size(), reopened.size());
+        assertEquals(stats.getWhiteWins(), reopened.lookup(black, white, true).getWhiteWins());
+        assertEquals(games, reopened.lookup(new Othello()).getOccurrences());
+        reopened.close();
+        lookup.close();
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PositionIndex(af.getPath(), false);
+        });
+    }
+
+    @Test
+    public void positionIndexCountsUnfinishedGamesOthelloGame() throws IOException {
+        File xf = File.createTempFile("othello", ".index");
+        xf.deleteOnExit();
+        PositionIndex index = new PositionIndex(xf.getPath(), true);
+
+        // black is ahead after one move, but the game is not over
+        Othello o = new Othello();
+        o.playTurn(2, 3);
+        index.addGame(o);
+        PositionIndex.Stats stats = index.lookup(o);
+        assertEquals(1, stats.getOccurrences());
+        assertEquals(1, stats.getUnfinished());
+        assertEquals(0, stats.getBlackWins());
+        assertEquals(1, index.lookup(new Othello()).getUnfinished());
+        index.close();
+    }
+
+    @Test
+    public void moveIndexCodecRoundTripOthelloGame() {
+        Random rnd = new Random(17);
+        Othello o = new Othello();
+        Othello decoded = new Othello();
+        int games = 500;
+        int fullGames = 0;
+        int fullBytes = 0;
+        for (int g = 0; g < games; g++) {
+            o.reset();
+            int plies = rnd.nextInt(4) == 0 ? rnd.nextInt(60) : 60;
+            for (int i = 0; i < plies && !o.getGameOver(); i++) {
+                playRandomMove(o, rnd);
+            }
+            byte[] data = MoveIndexCodec.encode(o);
+            assertTrue(data.length <= MoveIndexCodec.MAX_SIZE);
+            MoveIndexCodec.decode(data, decoded);
+            assertEquals(o.getNumTurns(), decoded.getNumTurns());
+            assertEquals(o.getBlackBoard(), decoded.getBlackBoard());
+            assertEquals(o.getWhiteBoard(), decoded.getWhiteBoard());
+            assertEquals(o.getCurrentPlayer(), decoded.getCurrentPlayer());
+            assertEquals(o.getGameOver(), decoded.getGameOver());
+            for (int i = 0; i < o.getNumTurns(); i++) {
+                assertEquals(o.getMoveSquare(i), decoded.getMoveSquare(i));
+                assertEquals(o.getMoveFlips(i), decoded.getMoveFlips(i));
+            }
+            if (o.getGameOver()) {
+                fullGames++;
+                fullBytes += data.length;
+            }
+        }
+        // a finished game takes under 30 bytes on average
+        assertTrue(fullGames > 0);
+        assertTrue(fullBytes < 30 * fullGames);
+
+        // the record of the starting position is just its length
+        o.reset();
+        assertEquals(1, MoveIndexCodec.encode(o).length);
+
+        // cut records and records with padding set are rejected
+        playToTheEnd(o);
+        byte[] data = MoveIndexCodec.encode(o);
+        byte[] cut = Arrays.copyOf(data, data.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            MoveIndexCodec.decode(cut, new Othello());
+        });
+        byte[] longer = Arrays.copyOf(data, data.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            MoveIndexCodec.decode(longer, new Othello());
+        });
+
+        // a board changed through its cells cannot be written
+        Othello edited = new Othello();
+        edited.playTurn(2, 3);
+        edited.getBoard()[0][0].setColor(1);
+        assertThrows(IllegalArgumentException.class, () -> {
+            MoveIndexCodec.encode(edited);
+        });
+    }
+
+    @Test
+    public void undoAfterGameOverOthelloGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        GamePiece[][] b = o.getBoard();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                b[i][j].setColor(0);
+            }
+        }
+        b[0][0].setColor(1);
+        b[0][1].setColor(2);
+
+        // black wipes out white
+        assertTrue(o.playTurn(0, 2));
+        assertTrue(o.getGameOver());
+
+        // the game is back in play after the undo
+        o.undo();
+        assertFalse(o.getGameOver());
+        assertTrue(o.playTurn(0, 2));
+    }
+
+    @Test
+    public void positionSnapshotOthelloGame() throws InterruptedException {
+        Othello o = new Othello();
+        Position start = o.getPosition();
+        assertEquals(Position.START, start);
+        assertEquals(o.getLegalMoves(1), start.getLegalMoves());
+
+        // a snapshot does not change when the game does
+        assertTrue(o.playTurn(2, 3));
+        Position p = o.getPosition();
+        assertEquals(Bitboards.START_BLACK, start.getBlackBoard());
+        assertEquals(0, start.getPly());
+        assertEquals(o.getBlackBoard(), p.getBlackBoard());
+        assertEquals(o.getWhiteBoard(), p.getWhiteBoard());
+        assertFalse(p.getCurrentPlayer());
+        assertEquals(1, p.getPly());
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                assertEquals(o.getBoard()[i][j].getColor(), p.getColor(i, j));
+            }
+        }
+
+        // undo, reset and edits through the cells publish new snapshots
+        o.undo();
+        assertEquals(start, o.getPosition());
+        o.getBoard()[0][0].setColor(2);
+        assertEquals(2, o.getPosition().getColor(0, 0));
+        o.reset();
+        assertEquals(start, o.getPosition());
+
+        // a reader on another thread only ever sees whole moves
+        final Othello game = new Othello();
+        final boolean[] torn = new boolean[1];
+        Thread reader = new Thread(() -> {
+            for (int k = 0; k < 100000; k++) {
+                Position q = game.getPosition();
+                int pieces = Long.bitCount(q.getBlackBoard() | q.getWhiteBoard());
+                if (pieces != 4 + q.getPly()) {
+                    torn[0] = true;
+                }
+            }
+        });
+        reader.start();
+        for (int k = 0; k < 2000; k++) {
+            assertTrue(game.playTurn(2, 3));
+            assertTrue(game.playTurn(2, 2));
+            game.undo();
+            game.undo();
+        }
+        reader.join();
+        assertFalse(torn[0]);
+
+        // a finished game is over in its snapshot too
+        GamePiece[][] cells = o.getBoard();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                cells[i][j].setColor(0);
+            }
+        }
+        cells[0][0].setColor(1);
+        cells[0][1].setColor(2);
+        assertFalse(o.getPosition().isGameOver());
+        assertTrue(o.playTurn(0, 2));
+        assertTrue(o.getPosition().isGameOver());
+    }
+
+    @Test
+    public void broadcastUpdatesOthelloGame() {
+        Othello o = new Othello();
+        Broadcast cast = new Broadcast(o);
+        assertEquals("position 810000000 1008000000 black 0", cast.keyframe());
+        assertEquals(null, cast.poll());
+
+        // the moves since the last poll come in one line
+        long[] boards = new long[2];
+        spectate(boards, cast.keyframe());
+        assertTrue(o.playTurn(2, 3));
+        assertTrue(o.playTurn(2, 2));
+        String line = cast.poll();
+        assertEquals("update xd3:8000000 oc3:8000000 black", line);
+        spectate(boards, line);
+        assertEquals(o.getBlackBoard(), boards[0]);
+        assertEquals(o.getWhiteBoard(), boards[1]);
+        assertEquals(null, cast.poll());
+
+        // undos and moves, also by a spectator that joins late
+        long[] late = new long[2];
+        spectate(late, cast.keyframe());
+        Random rnd = new Random(24);
+        for (int k = 0; k < 200; k++) {
+            if ((o.getNumTurns() > 0) && (rnd.nextInt(3) == 0) || o.getGameOver()) {
+                o.undo();
+            } else {
+                playRandomMove(o, rnd);
+            }
+            if (rnd.nextInt(2) == 0) {
+                line = cast.poll();
+                spectate(boards, line);
+                spectate(late, line);
+                assertEquals(o.getBlackBoard(), boards[0]);
+                assertEquals(o.getWhiteBoard(), late[1]);
+            }
+        }
+
+        // a replaced game is sent as a position
+        o.reset();
+        o.getBoard()[0][0].setColor(1);
+        line = cast.poll();
+        assertTrue(line.startsWith("position 810000001 1008000000 black 0"), line);
+    }
+
+    @Test
+    public void gameServerSpectatorsOthelloGame() throws Exception {
+        GameServer server = new GameServer(0, null, null, 1);
+        Thread thread = new Thread(server);
+        thread.start();
+        try {
+            int n = 4;
+            Socket[] sockets = new Socket[n];
+            BufferedReader[] in = new BufferedReader[n];
+            PrintStream[] out = new PrintStream[n];
+            for (int i = 0; i < n; i++) {
+                sockets[i] = new Socket("localhost", server.getPort());
+                in[i] = new BufferedReader(
+                        new InputStreamReader(sockets[i].getInputStream())
+                );
+                out[i] = new PrintStream(sockets[i].getOutputStream(), true);
+            }
+            out[0].println("game");
+            String game = in[0].readLine().substring(5);
+            out[0].println("play f5");
+            assertEquals("ok", in[0].readLine());
+
+            // spectators start from the game as it is
+            long[][] boards = new long[n][2];
+            for (int i = 1; i < n; i++) {
+                out[i].println("watch " + game);
+                spectate(boards[i], in[i].readLine());
+            }
+            out[1].println("watch 0");
+            assertEquals("error no game 0", in[1].readLine());
+
+            // and follow its moves and undos
+            Othello o = new Othello();
+            assertTrue(o.playTurn(4, 5));
+            out[0].print("play d6\nplay c3\nundo\nplay c5\n");
+            out[0].flush();
+            for (int k = 0; k < 4; k++) {
+                assertEquals("ok", in[0].readLine());
+            }
+            assertTrue(o.playTurn(5, 3));
+            assertTrue(o.playTurn(4, 2));
+            for (int i = 1; i < n; i++) {
+                while (boards[i][0] != o.getBlackBoard()) {
+                    spectate(boards[i], in[i].readLine());
+                }
+                assertEquals(o.getWhiteBoard(), boards[i][1]);
+            }
+
+            // a spectator that stops watching gets no more updates, and the
+            // others are told when the game ends
+            out[3].println("unwatch");
+            assertEquals("ok", in[3].readLine());
+            sockets[0].close();
+            for (int i = 1; i < 3; i++) {
+                assertEquals("ended", in[i].readLine());
+            }
+            out[3].println("isready");
+            assertEquals("readyok", in[3].readLine());
+            for (int i = 1; i < n; i++) {
+                sockets[i].close();
+            }
+        } finally {
+            server.close();
+            thread.join(5000);
+        }
+        assertFalse(thread.isAlive());
+    }
+
     @Test
     public void fileNotFoundTest() {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -748,4 +2311,54 @@ public class GameTest {
         o.printGameState();  
         
     }
+
+    // plays the first legal move in board order until the game is over
+    private static void playToTheEnd(Othello o) {
+        while (!o.getGameOver()) {
+            long moves = o.getLegalMoves(o.getCurrentPlayer() ? 1 : 2);
+            int sq = Long.numberOfTrailingZeros(moves);
+            assertTrue(o.playTurn(sq >>> 3, sq & 7));
+        }
+    }
+
+    // applies a line from Broadcast.java to the bitboards of a spectator
+    private static void spectate(long[] boards, String line) {
+        if (line == null) {
+            return;
+        }
+        String[] words = line.split(" ");
+        if (words[0].equals("position")) {
+            boards[0] = Long.parseUnsignedLong(words[1], 16);
+            boards[1] = Long.parseUnsignedLong(words[2], 16);
+            return;
+        }
+        assertEquals("update", words[0]);
+        for (int i = 1; i < words.length - 1; i++) {
+            String move = words[i];
+            boolean undo = move.startsWith("u");
+            if (undo) {
+                move = move.substring(1);
+            }
+            int own = (move.charAt(0) == 'x') ? 0 : 1;
+            long placed = 1L << Engine.square(move.substring(1, 3));
+            long flips = Long.parseUnsignedLong(move.substring(4), 16);
+            if (undo) {
+                boards[own] &= ~(placed | flips);
+                boards[1 - own] |= flips;
+            } else {
+                boards[own] |= placed | flips;
+                boards[1 - own] &= ~flips;
+            }
+        }
+    }
+
+    // plays a random legal move for the player to move
+    private static void playRandomMove(Othello o, Random rnd) {
+        long moves = o.getLegalMoves(o.getCurrentPlayer() ? 1 : 2);
+        for (int k = rnd.nextInt(Long.bitCount(moves)); k > 0; k--) {
+            moves &= moves - 1;
+        }
+        int sq = Long.numberOfTrailingZeros(moves);
+        assertTrue(o.playTurn(sq >>> 3, sq & 7));
+    }
 }
@@ -0,0 +1,498 @@
+package org.cis120.othello.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.cis120.othello.Bitboards;
+import org.cis120.othello.GameArchive;
+import org.cis120.othello.Othello;
+import org.cis120.othello.Position;
+import org.cis120.othello.PositionIndex;
+import org.junit.jupiter.api.*;
+
+public class SearchTest {
+
+    @Test
+    public void searchFindsWipeout() {
+        long own = 1L << Bitboards.square(0, 0);
+        long opp = 1L << Bitboards.square(0, 1);
+        SearchResult r = new AlphaBetaSearch(1000, 5).search(own, opp);
+        assertEquals(Bitboards.square(0, 2), r.getMove());
+        assertEquals(Evaluator.WIN + 64, r.getScore());
+    }
+
+    @Test
+    public void searchPassesWithNoMoves() {
+        long own = 1L << Bitboards.square(0, 0);
+        long opp = 1L << Bitboards.square(7, 7);
+        SearchResult r = new AlphaBetaSearch(1000, 5).search(own, opp);
+        assertEquals(-1, r.getMove());
+    }
+
+    @Test
+    public void searchReturnsLegalMoveWithinBudget() {
+        long own = Bitboards.START_BLACK;
+        long opp = Bitboards.START_WHITE;
+        SearchResult r = new AlphaBetaSearch(50, 60).search(own, opp);
+        assertNotEquals(0L, Bitboards.legalMoves(own, opp) & (1L << r.getMove()));
+        assertTrue(r.getDepth() >= 1);
+        assertTrue(r.getMillis() < 1000);
+    }
+
+    @Test
+    public void computerPlaysFullGame() {
+        Othello o = new Othello("files/saveFile.txt");
+        ComputerPlayer p = new ComputerPlayer(20, 4);
+        while (!o.getGameOver()) {
+            assertTrue(p.playTurn(o));
+        }
+        assertNotEquals(0, o.checkWinner());
+    }
+
+    @Test
+    public void computerChoosesMoveFromSnapshot() {
+        Othello o = new Othello();
+        SelfPlay.playRandomMoves(o, 8, new Random(3));
+        Position p = o.getPosition();
+        ComputerPlayer player = new ComputerPlayer(new AlphaBetaSearch(10000, 4));
+        SearchResult r = player.chooseMove(p);
+
+        // the game can move on while the snapshot is searched
+        o.undo();
+        assertEquals(r.getMove(), player.chooseMove(p).getMove());
+        assertTrue((p.getLegalMoves() & (1L << r.getMove())) != 0);
+    }
+
+    @Test
+    public void tableStoresAndProbes() {
+        TranspositionTable t = new TranspositionTable(4);
+        assertEquals(TranspositionTable.MISS, t.probe(12345L));
+        t.store(12345L, 7, -321, TranspositionTable.LOWER, 19);
+        long d = t.probe(12345L);
+        assertNotEquals(TranspositionTable.MISS, d);
+        assertEquals(-321, TranspositionTable.score(d));
+        assertEquals(7, TranspositionTable.depth(d));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(d));
+        assertEquals(19, TranspositionTable.move(d));
+        assertEquals(2, t.getProbes());
+        assertEquals(1, t.getHits());
+    }
+
+    @Test
+    public void tableKeepsDeeperEntryInSameSearch() {
+        TranspositionTable t = new TranspositionTable(4);
+        // both keys map to slot 1
+        t.store(1L, 8, 10, TranspositionTable.EXACT, -1);
+        t.store(17L, 3, 20, TranspositionTable.EXACT, -1);
+        assertNotEquals(TranspositionTable.MISS, t.probe(1L));
+        assertEquals(TranspositionTable.MISS, t.probe(17L));
+
+        // a new search may replace it
+        t.newSearch();
+        t.store(17L, 3, 20, TranspositionTable.EXACT, -1);
+        assertEquals(TranspositionTable.MISS, t.probe(1L));
+        assertEquals(20, TranspositionTable.score(t.probe(17L)));
+    }
+
+    @Test
+    public void tableDoesNotChangeSearchResult() {
+        long own = Bitboards.START_BLACK;
+        long opp = Bitboards.START_WHITE;
+        SearchResult small = new AlphaBetaSearch(10000, 6, new TranspositionTable(1)).search(own, opp);
+        SearchResult large = new AlphaBetaSearch(10000, 6).search(own, opp);
+        assertEquals(small.getScore(), large.getScore());
+    }
+
+    @Test
+    public void parallelSearchFindsWipeout() {
+        long own = 1L << Bitboards.square(0, 0);
+        long opp = 1L << Bitboards.square(0, 1);
+        ParallelSearch search = new ParallelSearch(1000, 5, 2);
+        SearchResult r = search.search(own, opp, true);
+        search.shutdown();
+        assertEquals(Bitboards.square(0, 2), r.getMove());
+        assertEquals(Evaluator.WIN + 64, r.getScore());
+    }
+
+    @Test
+    public void parallelSearchMatchesSequentialWithoutTable() {
+        long own = Bitboards.START_BLACK;
+        long opp = Bitboards.START_WHITE;
+        // a one-entry table keeps both searches at plain alpha-beta values
+        ParallelSearch parallel = new ParallelSearch(10000, 6, 3, new TranspositionTable(1));
+        SearchResult p = parallel.search(own, opp, true);
+        parallel.shutdown();
+        SearchResult s = new AlphaBetaSearch(10000, 6, new TranspositionTable(1)).search(own, opp);
+        assertEquals(s.getScore(), p.getScore());
+        assertEquals(6, p.getDepth());
+    }
+
+    @Test
+    public void computerPlaysFullGameInParallel() {
+        Othello o = new Othello("files/saveFile.txt");
+        ParallelSearch search = new ParallelSearch(20, 5, 2);
+        ComputerPlayer p = new ComputerPlayer(search);
+        while (!o.getGameOver()) {
+            assertTrue(p.playTurn(o));
+        }
+        search.shutdown();
+        assertNotEquals(0, o.checkWinner());
+    }
+
+    @Test
+    public void solverFindsWipeout() {
+        long own = 1L << Bitboards.square(0, 0);
+        long opp = 1L << Bitboards.square(0, 1);
+        SearchResult r = new EndgameSolver().solve(own, opp);
+        assertEquals(Bitboards.square(0, 2), r.getMove());
+        assertEquals(64, r.getScore());
+        assertEquals(62, r.getDepth());
+    }
+
+    @Test
+    public void solverScoresFinishedGame() {
+        long own = 1L << Bitboards.square(0, 0);
+        long opp = (1L << Bitboards.square(7, 7)) | (1L << Bitboards.square(7, 6));
+        EndgameSolver solver = new EndgameSolver();
+        SearchResult r = solver.solve(own, opp);
+        assertEquals(-1, r.getMove());
+        // the 61 empty squares go to the winner
+        assertEquals(-62, r.getScore());
+        assertEquals(-1, solver.winLossDraw(own, opp));
+    }
+
+    @Test
+    public void solverMatchesMinimaxNearTheEnd() {
+        long[][] positions = midgamePositions(
+                20, 50, new Random(120)
+        );
+        EndgameSolver solver = new EndgameSolver();
+        for (long[] p : positions) {
+            int expected = minimax(p[0], p[1], false);
+            SearchResult r = solver.solve(p[0], p[1]);
+            assertEquals(expected, r.getScore());
+            assertEquals(expected, solver.score(p[0], p[1]));
+            assertEquals(Integer.signum(expected), solver.winLossDraw(p[0], p[1]));
+            if (r.getMove() >= 0) {
+                long f = Bitboards.flips(p[0], p[1], r.getMove());
+                long nextOwn = p[1] & ~f;
+                long nextOpp = p[0] | f | (1L << r.getMove());
+                assertEquals(expected, -minimax(nextOwn, nextOpp, false));
+            }
+        }
+    }
+
+    @Test
+    public void solverWinLossDrawAgreesWithScore() {
+        long[][] positions = midgamePositions(
+                1, 44, new Random(120)
+        );
+        EndgameSolver solver = new EndgameSolver();
+        int wld = solver.winLossDraw(positions[0][0], positions[0][1]);
+        SearchResult r = solver.solve(positions[0][0], positions[0][1]);
+        assertEquals(Integer.signum(r.getScore()), wld);
+        assertNotEquals(0L, Bitboards.legalMoves(positions[0][0], positions[0][1])
+                & (1L << r.getMove()));
+    }
+
+    @Test
+    public void solverDecidesTwentyEmptiesWithinASecond() {
+        // positions with 20 empties from games between computer players,
+        // the same as in EndgameBenchmark, and whether each is won
+        long[][] positions = {
+            { 0x3f3b232f30201808L, 0x00041c100f1f2161L },
+            { 0x2000733b00002000L, 0x0e3c8c447efc1c7cL },
+            { 0x062c796076040000L, 0x3090869e89f93910L },
+            { 0x0001eb6562e40000L, 0x1818141a1c1b3d7cL },
+            { 0x0000000028140400L, 0xfe7cfcfcd0e8383eL },
+            { 0x2021c38597d78000L, 0x08183c7a68283c20L }
+        };
+        int[] expected = { 1, 1, 1, -1, 0, 1 };
+
+        // let the JIT compile the solver first
+        new EndgameSolver().winLossDraw(positions[0][0], positions[0][1]);
+
+        EndgameSolver solver = new EndgameSolver();
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(20, 64 - Long.bitCount(positions[i][0] | positions[i][1]));
+            long start = System.nanoTime();
+            assertEquals(expected[i], solver.winLossDraw(positions[i][0], positions[i][1]));
+            assertTrue(System.nanoTime() - start < 1000000000L);
+        }
+    }
+
+    @Test
+    public void stablePiecesGrowFromTheCorners() {
+        // a corner and the edge next to it are stable, the piece past an
+        // empty square on that edge is not
+        long own = (1L << Bitboards.square(0, 0)) | (1L << Bitboards.square(0, 1))
+                | (1L << Bitboards.square(0, 3));
+        long opp = 1L << Bitboards.square(1, 1);
+        assertEquals(
+                (1L << Bitboards.square(0, 0)) | (1L << Bitboards.square(0, 1)),
+                EndgameSolver.stable(own, opp)
+        );
+        assertEquals(0L, EndgameSolver.stable(opp, own));
+
+        // on a full board every piece is stable
+        long black = 0x00FF00FF00FF00FFL;
+        assertEquals(black, EndgameSolver.stable(black, ~black));
+        assertEquals(0L, EndgameSolver.stable(Bitboards.START_BLACK, Bitboards.START_WHITE));
+    }
+
+    @Test
+    public void openingBookReplaysBuiltGame() throws IOException {
+        // one game of random moves, as the only game in the book
+        Othello o = new Othello();
+        Random rnd = new Random(19);
+        while (!o.getGameOver()) {
+            long moves = o.getLegalMoves(o.getCurrentPlayer() ? 1 : 2);
+            for (int k = rnd.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            int sq = Long.numberOfTrailingZeros(moves);
+            o.playTurn(sq >>> 3, sq & 7);
+        }
+        OpeningBook.Builder builder = new OpeningBook.Builder(10, 1);
+        builder.addGame(o);
+        File f = File.createTempFile("othello", ".book");
+        f.deleteOnExit();
+        assertEquals(10, builder.write(f.getPath()));
+
+        OpeningBook book = new OpeningBook(f.getPath());
+        assertEquals(10, book.size());
+        long b = Bitboards.START_BLACK;
+        long w = Bitboards.START_WHITE;
+        for (int i = 0; i < 12; i++) {
+            boolean black = o.getMoveColor(i) == 1;
+            long own = black ? b : w;
+            long opp = black ? w : b;
+            int sq = o.getMoveSquare(i);
+            long flips = Bitboards.flips(own, opp, sq);
+            long next = PositionIndex.canonicalKey(
+                    black ? own | flips | (1L << sq) : opp & ~flips,
+                    black ? opp & ~flips : own | flips | (1L << sq), !black
+            );
+
+            // the book move leads to the position the game reached, also
+            // when the board is mirrored
+            for (int s = 0; s < 2; s++) {
+                long sown = (s == 0) ? own : Bitboards.mirrorHorizontal(own);
+                long sopp = (s == 0) ? opp : Bitboards.mirrorHorizontal(opp);
+                SearchResult r = book.probe(sown, sopp, black);
+                if (i >= 10) {
+                    assertEquals(null, r);
+                    continue;
+                }
+                int m = r.getMove();
+                long mf = Bitboards.flips(sown, sopp, m);
+                long key = PositionIndex.canonicalKey(
+                        black ? sown | mf | (1L << m) : sopp & ~mf,
+                        black ? sopp & ~mf : sown | mf | (1L << m), !black
+                );
+                assertEquals(next, key);
+            }
+            if (black) {
+                b = own | flips | (1L << sq);
+                w = opp & ~flips;
+            } else {
+                w = own | flips | (1L << sq);
+                b = opp & ~flips;
+            }
+        }
+
+        // the computer player answers book positions without searching
+        ComputerPlayer p = new ComputerPlayer(new AlphaBetaSearch(1000, 60), book);
+        SearchResult r = p.chooseMove(new Othello());
+        assertEquals(0L, r.getNodes());
+        assertTrue(new Othello().playTurn(r.getRow(), r.getColumn()));
+        book.close();
+    }
+
+    @Test
+    public void tournamentPlaysEveryPairing() throws IOException {
+        File f = File.createTempFile("othello", ".results");
+        f.deleteOnExit();
+        String[] players = {"1000,1", "1000,2", "1000,3"};
+        Tournament t = new Tournament(players, 4, null, 25);
+        Tournament.Standings standings = t.run(12, 2, f.getPath());
+
+        // every player meets both others twice with each color
+        List<String> lines = Files.readAllLines(f.toPath());
+        assertEquals(13, lines.size());
+        assertTrue(lines.get(0).startsWith("#"));
+        boolean[] seen = new boolean[12];
+        String[] moves = new String[12];
+        int[][] games = new int[3][3];
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t");
+            int g = Integer.parseInt(fields[0]);
+            seen[g] = true;
+            moves[g] = fields[10];
+            games[Integer.parseInt(fields[1])][Integer.parseInt(fields[2])]++;
+            // the moves written lead to the discs written
+            Othello o = new Othello();
+            for (int i = 0; i < fields[10].length(); i += 2) {
+                assertTrue(o.playTurn(fields[10].charAt(i + 1) - '1', fields[10].charAt(i) - 'a'));
+            }
+            assertTrue(o.getGameOver());
+            assertEquals(Integer.parseInt(fields[3]), Bitboards.count(o.getBlackBoard()));
+            assertEquals(Integer.parseInt(fields[4]), Bitboards.count(o.getWhiteBoard()));
+        }
+        for (int g = 0; g < 12; g++) {
+            assertTrue(seen[g]);
+            // both colors of a pair play the same opening
+            assertEquals(moves[g & ~1].substring(0, 8), moves[g | 1].substring(0, 8));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(8, standings.getGames(i));
+            for (int j = 0; j < 3; j++) {
+                assertEquals((i == j) ? 0 : 2, games[i][j]);
+            }
+        }
+        assertEquals(12.0, standings.getScore(0) + standings.getScore(1) + standings.getScore(2));
+        assertEquals(0.0, standings.getElo()[0]);
+
+        // players with higher scores have higher ratings
+        double[] elo = standings.getElo();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                if (standings.getScore(i) > standings.getScore(j)) {
+                    assertTrue(elo[i] > elo[j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void selfPlayFinishedGames() throws IOException {
+        int[] games = new int[1];
+        assertTrue(SelfPlay.forEachGame(new String[] { "-selfplay", "2" }, 0, o -> {
+            assertTrue(o.getGameOver());
+            assertTrue(o.getNumTurns() > SelfPlay.SELF_PLAY_OPENING);
+            games[0]++;
+        }));
+        assertEquals(2, games[0]);
+
+        // self-played games stored by main are read back from the archive
+        File af = File.createTempFile("othello", ".archive");
+        af.delete();
+        SelfPlay.main(new String[] { af.getPath(), "2" });
+        assertTrue(SelfPlay.forEachGame(new String[] { "x", af.getPath() }, 1, o -> {
+            assertTrue(o.getGameOver());
+            games[0]++;
+        }));
+        assertEquals(4, games[0]);
+        af.delete();
+
+        // a missing or bad number of games is rejected before playing any
+        String[][] bad = { { "-selfplay" }, { "-selfplay", "x" }, { "-selfplay", "-1" },
+            { "-selfplay", "1", "-selfplay" } };
+        for (String[] args : bad) {
+            assertFalse(SelfPlay.forEachGame(args, 0, o -> games[0]++));
+        }
+        assertEquals(4, games[0]);
+
+        // the same seed plays the same opening
+        Othello a = new Othello();
+        Othello b = new Othello();
+        SelfPlay.playRandomMoves(a, 10, new Random(5));
+        SelfPlay.playRandomMoves(b, 10, new Random(5));
+        assertEquals(10, a.getNumTurns());
+        assertEquals(a.getPosition(), b.getPosition());
+    }
+
+    @Test
+    public void tournamentPlaysArchiveOpenings() throws IOException {
+        File af = File.createTempFile("othello", ".archive");
+        File f = File.createTempFile("othello", ".results");
+        af.deleteOnExit();
+        f.deleteOnExit();
+        GameArchive archive = new GameArchive(af.getPath(), true);
+        Othello o = new Othello();
+        String[] openings = new String[2];
+        for (int g = 0; g < 2; g++) {
+            o.reset();
+            SelfPlay.playRandomMoves(o, 6, new Random(g));
+            archive.append(o);
+            StringBuilder moves = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                int sq = o.getMoveSquare(i);
+                moves.append((char) ('a' + (sq & 7))).append((char) ('1' + (sq >>> 3)));
+            }
+            openings[g] = moves.toString();
+        }
+
+        // the two rounds take their first 4 moves from the two games, in turn
+        String[] players = {"1000,1", "1000,2"};
+        Tournament t = new Tournament(players, 4, archive, 0);
+        Tournament.Standings standings = t.run(4, 2, f.getPath());
+        archive.close();
+        List<String> lines = Files.readAllLines(f.toPath());
+        assertEquals(5, lines.size());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t");
+            int round = Integer.parseInt(fields[0]) / 2;
+            assertTrue(fields[10].startsWith(openings[round]));
+        }
+        assertEquals(0, standings.getVoided());
+        assertEquals(4, standings.getGames(0));
+    }
+
+    // plain minimax over the rest of the game, for checking the solver
+    private static int minimax(long own, long opp, boolean passed) {
+        long moves = Bitboards.legalMoves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return Evaluator.discDifference(own, opp);
+            }
+            return -minimax(opp, own, true);
+        }
+        int best = Integer.MIN_VALUE;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long f = Bitboards.flips(own, opp, sq);
+            best = Math.max(best, -minimax(opp & ~f, own | f | (1L << sq), false));
+        }
+        return best;
+    }
+
+    // random positions a number of moves from the start, {own, opp} with
+    // own to move
+    private static long[][] midgamePositions(int count, int plies, Random rnd) {
+        long[][] positions = new long[count][];
+        for (int i = 0; i < count; i++) {
+            long own = Bitboards.START_BLACK;
+            long opp = Bitboards.START_WHITE;
+            for (int p = 0; p < plies; p++) {
+                long moves = Bitboards.legalMoves(own, opp);
+                if (moves == 0) {
+                    long t = own;
+                    own = opp;
+                    opp = t;
+                    continue;
+                }
+                for (int k = rnd.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                int sq = Long.numberOfTrailingZeros(moves);
+                long f = Bitboards.flips(own, opp, sq);
+                long next = opp & ~f;
+                opp = own | f | (1L << sq);
+                own = next;
+            }
+            positions[i] = new long[] { own, opp };
+        }
+        return positions;
+    }
+
+}